@@ -1,11 +1,35 @@
 package com.cat.application;
 
+import com.cat.data.SecurityRepository;
+import com.cat.data.SecurityRepositoryProvider;
+import com.cat.data.StandbyReplica;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
 /**
  * This is the main class that launches the application.
  */
 public class CatpointApp {
-    public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+    public static void main(String[] args) throws IOException, InterruptedException {
+        //catpoint.replication.primary, e.g. localhost:7700, starts this node as a standby of that primary;
+        //it keeps its copy apart from the primary's store, see SecurityRepositoryProvider.openStandby
+        String primary = System.getProperty("catpoint.replication.primary");
+        if (primary == null) {
+            CatpointGui gui = new CatpointGui();
+            gui.setVisible(true);
+            return;
+        }
+        int colon = primary.lastIndexOf(':');
+        InetSocketAddress address = new InetSocketAddress(primary.substring(0, colon), Integer.parseInt(primary.substring(colon + 1)));
+        CountDownLatch primaryLost = new CountDownLatch(1);
+        StandbyReplica standby = new StandbyReplica(SecurityRepositoryProvider.openStandby(System.getProperties()), address, primaryLost::countDown);
+        primaryLost.await();
+
+        //take over with the state the primary left behind
+        SecurityRepository repository = standby.promote();
+        SwingUtilities.invokeLater(() -> new CatpointGui(repository).setVisible(true));
     }
 }
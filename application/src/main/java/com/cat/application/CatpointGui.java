@@ -1,13 +1,33 @@
 package com.cat.application;
 
-import com.cat.data.PretendDatabaseSecurityRepositoryImpl;
+import com.cat.data.ArmingStatus;
+import com.cat.data.HistoryStore;
+import com.cat.data.ReplicatedSecurityRepository;
 import com.cat.data.SecurityRepository;
-import com.cat.image.service.FakeImageService;
+import com.cat.data.SecurityRepositoryProvider;
+import com.cat.image.service.FrameDirectoryWatcher;
 import com.cat.image.service.ImageService;
+import com.cat.image.service.ImageServiceFallback;
+import com.cat.image.service.ImagePreprocessor;
+import com.cat.image.service.ImageServiceProvider;
+import com.cat.image.service.PreprocessingImageService;
+import com.cat.image.service.RawFrameFormat;
+import com.cat.image.service.ResilientImageService;
+import com.cat.security.service.CatDetectionFilter;
+import com.cat.security.service.EventScheduler;
+import com.cat.security.service.FrameSampler;
+import com.cat.security.service.SecurityEventPublisher;
 import com.cat.security.service.SecurityService;
+import com.cat.security.service.ServiceWarmup;
+import com.cat.security.service.StatusListenerSubscriber;
+import com.cat.security.service.TimingWheel;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -15,15 +35,41 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private transient final SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private transient final ImageService imageService = new FakeImageService();
-    private final SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService, sensorPanel);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private transient final SecurityRepository securityRepository;
+    private transient final ImageService imageService;
+    private final SecurityService securityService;
+    private DisplayPanel displayPanel;
+    private SensorPanel sensorPanel;
+    private ControlPanel controlPanel;
+    private ImagePanel imagePanel;
+    //owner thread of the service once the window is built; panels hand their calls to it
+    private transient final EventScheduler scheduler = new EventScheduler();
+    private transient final UiUpdateScheduler uiUpdates = new UiUpdateScheduler(
+            Integer.getInteger("catpoint.ui.fps", UiUpdateScheduler.DEFAULT_FRAMES_PER_SECOND));
 
     public CatpointGui() {
+        this(openRepository());
+    }
+
+    /**
+     * @param repository Repository to run on, such as one a standby took over from its primary
+     */
+    public CatpointGui(SecurityRepository repository) {
+        securityRepository = replicate(repository);
+        //if recognition stalls, assume a cat while armed at home and otherwise repeat the last answer, as for
+        //frames beyond catpoint.recognition.maxConcurrent; the service already calls it on a virtual thread
+        imageService = new ResilientImageService(preprocess(ImageServiceProvider.open(System.getProperties())),
+                ImageServiceFallback.catPresentWhen(() -> securityRepository.getArmingStatus() == ArmingStatus.ARMED_HOME,
+                        ImageServiceFallback.lastKnownResult()),
+                Integer.getInteger("catpoint.recognition.maxConcurrent", 4));
+        securityService = new SecurityService(securityRepository, imageService);
+        securityService.setFrameSampler(sampling());
+        securityService.setCatDetectionFilter(smoothing());
+        displayPanel = new DisplayPanel(securityService);
+        sensorPanel = new SensorPanel(securityService);
+        controlPanel = new ControlPanel(securityService, sensorPanel);
+        imagePanel = new ImagePanel(securityService);
+
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
@@ -38,5 +84,170 @@ public class CatpointGui extends JFrame {
 
         getContentPane().add(mainPanel);
 
+        //status changes reach the panels coalesced, at most catpoint.ui.fps times a second
+        uiUpdates.addListener(displayPanel);
+        uiUpdates.addListener(imagePanel);
+        uiUpdates.addListener(sensorPanel);
+        SecurityEventPublisher events = new SecurityEventPublisher();
+        events.subscribe(new StatusListenerSubscriber(uiUpdates));
+        securityService.setEventPublisher(events);
+
+        //sensor, arming and image calls queue on their own lanes, so a door opening never waits behind image results;
+        //delay timers take the housekeeping lane and only the panels' updates go back to the event dispatch thread
+        securityService.setTimingWheel(new TimingWheel(Duration.ofMillis(100), scheduler.executor(EventScheduler.Lane.HOUSEKEEPING)));
+        securityService.setExitDelay(Duration.ofSeconds(Long.getLong("catpoint.exit.delay.seconds", 0)));
+        //recognitions run on virtual threads, their results come back on the image lane
+        securityService.setResultExecutor(scheduler.executor(EventScheduler.Lane.IMAGE));
+        sensorPanel.setEventScheduler(scheduler);
+        controlPanel.setEventScheduler(scheduler);
+        imagePanel.setEventScheduler(scheduler);
+        imagePanel.setReleaseAnalyzedFrames(Boolean.getBoolean("catpoint.ui.releaseFrames"));
+        //before any frame or click can reach the service
+        warmUp();
+        openHistory();
+        startFrameWatcher();
+    }
+
+    /**
+     * If the catpoint.warmup.iterations system property is set, runs that many rounds of sensor, arming
+     * and image events through a service wired like this one, over a scratch repository of the same kind,
+     * so the first real event runs compiled code.
+     */
+    private void warmUp() {
+        int iterations = Integer.getInteger(ServiceWarmup.ITERATIONS_PROPERTY, 0);
+        if (iterations <= 0) {
+            return;
+        }
+        SecurityRepository scratchRepository = SecurityRepositoryProvider.openScratch(System.getProperties());
+        SecurityService scratch = new SecurityService(scratchRepository, ServiceWarmup.recognizer());
+        try (SecurityEventPublisher events = new SecurityEventPublisher();
+             TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(100), task -> {
+             })) {
+            scratch.setEventPublisher(events);
+            scratch.setTimingWheel(timingWheel);
+            scratch.setExitDelay(Duration.ofSeconds(Long.getLong("catpoint.exit.delay.seconds", 0)));
+            ServiceWarmup.run(scratch, iterations);
+        } finally {
+            if (scratchRepository instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    //only held scratch data
+                }
+            }
+        }
+    }
+
+    /**
+     * Frames are cropped to catpoint.recognition.roi (x,y,width,height, the whole frame if missing)
+     * and downscaled by catpoint.recognition.downscale (1 if missing) before they are sent for recognition.
+     */
+    private static ImageService preprocess(ImageService imageService) {
+        String roi = System.getProperty("catpoint.recognition.roi");
+        Rectangle region = null;
+        if (roi != null) {
+            String[] bounds = roi.split(",");
+            if (bounds.length != 4) {
+                throw new IllegalArgumentException("catpoint.recognition.roi must be x,y,width,height, was " + roi);
+            }
+            region = new Rectangle(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()),
+                    Integer.parseInt(bounds[2].trim()), Integer.parseInt(bounds[3].trim()));
+        }
+        return new PreprocessingImageService(imageService, new ImagePreprocessor(
+                new ImagePreprocessor.CameraSettings(region, Integer.getInteger("catpoint.recognition.downscale", 1))));
+    }
+
+    /**
+     * Frames are analyzed at most once per catpoint.recognition.sampling intervals, given as
+     * disarmedMillis,idleMillis,holdMillis (5000,1000,30000 if missing; 0,0,0 analyzes every frame).
+     */
+    private static FrameSampler sampling() {
+        String sampling = System.getProperty("catpoint.recognition.sampling", "5000,1000,30000");
+        String[] intervals = sampling.split(",");
+        if (intervals.length != 3) {
+            throw new IllegalArgumentException("catpoint.recognition.sampling must be disarmedMillis,idleMillis,holdMillis, was " + sampling);
+        }
+        return new FrameSampler(Duration.ofMillis(Long.parseLong(intervals[0].trim())),
+                Duration.ofMillis(Long.parseLong(intervals[1].trim())), Duration.ofMillis(Long.parseLong(intervals[2].trim())));
+    }
+
+    /**
+     * A camera reports a cat once catpoint.recognition.smoothing frames out of its recent ones showed one,
+     * given as windowSize,votesToDetect,votesToClear (3,2,2 if missing; 1,1,1 takes every result as is).
+     */
+    private static CatDetectionFilter smoothing() {
+        String smoothing = System.getProperty("catpoint.recognition.smoothing", "3,2,2");
+        String[] votes = smoothing.split(",");
+        if (votes.length != 3) {
+            throw new IllegalArgumentException("catpoint.recognition.smoothing must be windowSize,votesToDetect,votesToClear, was " + smoothing);
+        }
+        return new CatDetectionFilter(Integer.parseInt(votes[0].trim()), Integer.parseInt(votes[1].trim()),
+                Integer.parseInt(votes[2].trim()));
+    }
+
+    /**
+     * Opens the repository the system properties select, see {@link SecurityRepositoryProvider#open}.
+     */
+    private static SecurityRepository openRepository() {
+        return SecurityRepositoryProvider.open(System.getProperties());
+    }
+
+    /**
+     * If the catpoint.replication.port system property is set, every change is streamed to standbys
+     * connecting on that port of the loopback interface.
+     */
+    private static SecurityRepository replicate(SecurityRepository repository) {
+        Integer port = Integer.getInteger("catpoint.replication.port");
+        if (port == null) {
+            return repository;
+        }
+        try {
+            return new ReplicatedSecurityRepository(repository, port);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Unable to accept standbys on port " + port + ".");
+            return repository;
+        }
+    }
+
+    /**
+     * If the catpoint.history.dir system property names a directory, alarm, arming and sensor
+     * changes are recorded there. Buffered history is written out every few seconds and when the JVM exits.
+     */
+    private void openHistory() {
+        String historyDir = System.getProperty("catpoint.history.dir");
+        if (historyDir == null) {
+            return;
+        }
+        try {
+            HistoryStore historyStore = new HistoryStore(Path.of(historyDir));
+            securityService.setHistoryStore(historyStore);
+            Runtime.getRuntime().addShutdownHook(new Thread(historyStore::close, "history-flush"));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Unable to keep history in " + historyDir + ".");
+        }
+    }
+
+    /**
+     * If the catpoint.frames.dir system property names a directory, frames that camera recorders drop
+     * there are memory-mapped and scanned. catpoint.frames.width, catpoint.frames.height and
+     * catpoint.frames.format (a RawFrameFormat) describe single-frame files; ring files describe themselves.
+     */
+    private void startFrameWatcher() {
+        String framesDir = System.getProperty("catpoint.frames.dir");
+        if (framesDir == null) {
+            return;
+        }
+        try {
+            //the watcher hands over copies, so a frame can wait in the image lane while the recorder writes on;
+            //frames arriving while the lane is full are dropped
+            FrameDirectoryWatcher frameWatcher = new FrameDirectoryWatcher(Path.of(framesDir),
+                    Integer.getInteger("catpoint.frames.width", 640),
+                    Integer.getInteger("catpoint.frames.height", 480),
+                    RawFrameFormat.valueOf(System.getProperty("catpoint.frames.format", RawFrameFormat.RGB24.name())),
+                    (cameraId, frame) -> scheduler.offer(EventScheduler.Lane.IMAGE, () -> securityService.processImageAsync(cameraId, frame)));
+            frameWatcher.start();
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(null, "Unable to watch " + framesDir + " for camera frames.");
+        }
     }
 }
@@ -1,6 +1,7 @@
 package com.cat.application;
 
 import com.cat.data.ArmingStatus;
+import com.cat.security.service.EventScheduler;
 import com.cat.security.service.SecurityService;
 import com.cat.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -18,6 +19,7 @@ public class ControlPanel extends JPanel {
     private SecurityService securityService;
     private Map<ArmingStatus, JButton> buttonMap;
     private SensorPanel sensorPanel;
+    private EventScheduler scheduler;
 
 
     public ControlPanel(SecurityService securityService, SensorPanel sensorPanel) {
@@ -35,11 +37,14 @@ public class ControlPanel extends JPanel {
         buttonMap = Arrays.stream(ArmingStatus.values())
                 .collect(Collectors.toMap(status -> status, status -> new JButton(status.getDescription())));
 
-        //add an action listener to each button that applies its arming status and recolors all the buttons
+        //add an action listener to each button that applies its arming status and recolors all the buttons;
+        //arming resets the sensors, so their list is requested once the status has been applied
         buttonMap.forEach((k, v) -> v.addActionListener(e -> {
-            securityService.setArmingStatus(k);
+            ServiceCalls.submit(scheduler, EventScheduler.Lane.ARMING, () -> {
+                securityService.setArmingStatus(k);
+                sensorPanel.sensorStatusChanged();
+            });
             buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
-            sensorPanel.sensorStatusChanged();
         }));
 
         //map order above is arbitrary, so loop again in order to add buttons in enum-order
@@ -48,4 +53,13 @@ public class ControlPanel extends JPanel {
         ArmingStatus currentStatus = securityService.getArmingStatus();
         buttonMap.get(currentStatus).setBackground(currentStatus.getColor());
     }
+
+    /**
+     * Runs arming changes on the scheduler's arming lane instead of the event dispatch thread.
+     *
+     * @param scheduler
+     */
+    public void setEventScheduler(EventScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
 }
@@ -1,7 +1,10 @@
 package com.cat.application;
 
+import com.cat.security.service.EventScheduler;
+import com.cat.security.service.FrameSampler;
 import com.cat.security.service.StatusListener;
 import com.cat.data.AlarmStatus;
+import com.cat.image.service.ImageService;
 import com.cat.security.service.StyleService;
 import com.cat.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
@@ -12,16 +15,24 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletionException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
+    private EventScheduler scheduler;
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
+    private JLabel analysisRateLabel;
+    private File currentCameraFile;
+    //full-resolution frame, loaded from currentCameraFile when needed
     private BufferedImage currentCameraImage;
+    private final ThumbnailCache thumbnails = new ThumbnailCache(16);
+    private boolean releaseAnalyzedFrames;
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
@@ -30,7 +41,6 @@ public class ImagePanel extends JPanel implements StatusListener {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
@@ -40,6 +50,11 @@ public class ImagePanel extends JPanel implements StatusListener {
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
 
+        //the sampler updates its rates every few seconds, they are read where calls into the service run
+        analysisRateLabel = new JLabel();
+        showAnalysisRate();
+        new Timer(1000, e -> ServiceCalls.submit(scheduler, EventScheduler.Lane.HOUSEKEEPING, this::showAnalysisRate)).start();
+
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
         addPictureButton.addActionListener(e -> {
@@ -50,11 +65,15 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
+            File file = chooser.getSelectedFile();
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
+                //a frame is identified by its file and modification time, so a file that changed is loaded again
+                currentCameraImage = null;
+                BufferedImage thumbnail = thumbnails.get(file.getAbsolutePath() + "@" + file.lastModified(),
+                        () -> currentCameraImage = loadFrame(file), IMAGE_WIDTH, IMAGE_HEIGHT);
+                cameraLabel.setIcon(new ImageIcon(thumbnail));
+                currentCameraFile = file;
+            } catch (UncheckedIOException ioe) {
                 JOptionPane.showMessageDialog(null, "Invalid image selected.");
             }
             repaint();
@@ -62,14 +81,78 @@ public class ImagePanel extends JPanel implements StatusListener {
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
-        scanPictureButton.addActionListener(e -> securityService.processImage(currentCameraImage));
+        scanPictureButton.addActionListener(e -> scanPicture());
 
         add(cameraHeader, "span 3, wrap");
         add(cameraLabel, "span 3, wrap");
+        add(analysisRateLabel, "span 3, wrap");
         add(addPictureButton);
         add(scanPictureButton);
     }
 
+    /**
+     * Sends the current frame for analysis, loading it again if it was released.
+     */
+    private void scanPicture() {
+        if (currentCameraImage == null && currentCameraFile != null) {
+            try {
+                currentCameraImage = loadFrame(currentCameraFile);
+            } catch (UncheckedIOException ioe) {
+                JOptionPane.showMessageDialog(null, "Unable to read " + currentCameraFile + ".");
+                return;
+            }
+        }
+        BufferedImage frame = currentCameraImage;
+        //a failed recognition completes the future on the thread that called the image service, not the result executor
+        ServiceCalls.submit(scheduler, EventScheduler.Lane.IMAGE, () ->
+                securityService.processImageAsync(ImageService.DEFAULT_CAMERA, frame).whenCompleteAsync((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        JOptionPane.showMessageDialog(null, "Unable to scan picture: " + cause.getMessage());
+                    }
+                    if (releaseAnalyzedFrames && currentCameraImage == frame) {
+                        currentCameraImage = null;
+                    }
+                }, SwingUtilities::invokeLater));
+    }
+
+    /**
+     * Runs scans on the scheduler's image lane instead of the event dispatch thread.
+     *
+     * @param scheduler
+     */
+    public void setEventScheduler(EventScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    private void showAnalysisRate() {
+        FrameSampler sampler = securityService.getFrameSampler();
+        String rate = String.format("Analyzing %.1f of %.1f frames/s", sampler.getAnalysisRate(), sampler.getOfferedRate());
+        ServiceCalls.onUi(scheduler, () -> analysisRateLabel.setText(rate));
+    }
+
+    private static BufferedImage loadFrame(File file) {
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + file);
+            }
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * If set, the full-resolution frame is dropped once it has been analyzed and only its thumbnail
+     * is kept; scanning it again reloads it.
+     *
+     * @param releaseAnalyzedFrames
+     */
+    public void setReleaseAnalyzedFrames(boolean releaseAnalyzedFrames) {
+        this.releaseAnalyzedFrames = releaseAnalyzedFrames;
+    }
+
     @Override
     public void notify(AlarmStatus status) {
         //no behavior necessary
@@ -3,12 +3,14 @@ package com.cat.application;
 import com.cat.data.AlarmStatus;
 import com.cat.data.Sensor;
 import com.cat.data.SensorType;
+import com.cat.security.service.EventScheduler;
 import com.cat.security.service.StatusListener;
 import com.cat.security.service.StyleService;
 import com.cat.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.util.List;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
@@ -17,6 +19,7 @@ import javax.swing.*;
 public class SensorPanel extends JPanel implements StatusListener {
 
     private SecurityService securityService;
+    private EventScheduler scheduler;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -42,7 +45,7 @@ public class SensorPanel extends JPanel implements StatusListener {
         sensorListPanel = new JPanel();
         sensorListPanel.setLayout(new MigLayout());
 
-        updateSensorList(sensorListPanel);
+        showSensors();
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
@@ -64,18 +67,38 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
+     * Runs the panel's calls into the securityService on the scheduler's lanes instead of the event
+     * dispatch thread.
+     *
+     * @param scheduler
+     */
+    public void setEventScheduler(EventScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Requests the current list of sensors and has the sensor list rebuilt from it. Runs where calls
+     * into the securityService run, so the activation flags are read there.
+     */
+    private void showSensors() {
+        List<SensorState> sensors = securityService.streamSensors().map(s -> new SensorState(s, s.getActive())).toList();
+        ServiceCalls.onUi(scheduler, () -> updateSensorList(sensorListPanel, sensors));
+    }
+
+    /**
+     * Updates the provided panel to display the sensors. Sensors will display in the order that they are created.
      * @param p The Panel to populate with the current list of sensors
+     * @param sensors The sensors and their activation status
      */
-    private void updateSensorList(JPanel p) {
+    private void updateSensorList(JPanel p, List<SensorState> sensors) {
         p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
+        sensors.forEach(state -> {
+            Sensor s = state.sensor();
+            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(state.active() ? "Active" : "Inactive")));
+            JButton sensorToggleButton = new JButton((state.active() ? "Deactivate" : "Activate"));
             JButton sensorRemoveButton = new JButton("Remove Sensor");
 
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
+            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !state.active()) );
             sensorRemoveButton.addActionListener(e -> removeSensor(s));
 
             //hard code some sizes, tsk tsk
@@ -94,8 +117,10 @@ public class SensorPanel extends JPanel implements StatusListener {
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        ServiceCalls.submit(scheduler, EventScheduler.Lane.SENSOR, () -> {
+            securityService.changeSensorActivationStatus(sensor, isActive);
+            showSensors();
+        });
     }
 
     /**
@@ -103,12 +128,14 @@ public class SensorPanel extends JPanel implements StatusListener {
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
-        }
+        ServiceCalls.submit(scheduler, EventScheduler.Lane.SENSOR, () -> {
+            if(securityService.getSensorCount() < 4) {
+                securityService.addSensor(sensor);
+                showSensors();
+            } else {
+                ServiceCalls.onUi(scheduler, () -> JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!"));
+            }
+        });
     }
 
     /**
@@ -116,8 +143,10 @@ public class SensorPanel extends JPanel implements StatusListener {
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        ServiceCalls.submit(scheduler, EventScheduler.Lane.SENSOR, () -> {
+            securityService.removeSensor(sensor);
+            showSensors();
+        });
     }
 
     @Override
@@ -132,6 +161,10 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        ServiceCalls.submit(scheduler, EventScheduler.Lane.SENSOR, this::showSensors);
+    }
+
+    //the activation flag as it was when the list was requested; the sensor itself is changed on the service's thread
+    private record SensorState(Sensor sensor, boolean active) {
     }
 }
@@ -0,0 +1,38 @@
+package com.cat.application;
+
+import com.cat.security.service.EventScheduler;
+
+import javax.swing.*;
+
+/**
+ * Moves the panels' work between threads. Calls into the SecurityService run on the lanes of its
+ * EventScheduler, and what they change on screen runs back on the event dispatch thread. Without a
+ * scheduler, both run right away on the calling thread, as when the panels are built headless.
+ */
+final class ServiceCalls {
+
+    private ServiceCalls() {
+    }
+
+    /**
+     * Queues a call into the service on a lane. If the lane is full the call is dropped and the user told so.
+     */
+    static void submit(EventScheduler scheduler, EventScheduler.Lane lane, Runnable call) {
+        if (scheduler == null) {
+            call.run();
+        } else if (!scheduler.offer(lane, call)) {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "The system is busy, please try again."));
+        }
+    }
+
+    /**
+     * Applies the result of a service call to the UI.
+     */
+    static void onUi(EventScheduler scheduler, Runnable update) {
+        if (scheduler == null) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.cat.application;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.SecurityRepository;
+import com.cat.data.SecurityRepositoryProvider;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import com.cat.image.service.ImageService;
+import com.cat.image.service.ImageServiceProvider;
+import com.cat.security.service.SecurityService;
+import com.cat.security.service.ServiceWarmup;
+import com.cat.security.service.StatusListener;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Measures how long it takes from JVM launch until the system makes its first alarm decision.
+ * Builds the same dependencies and panels as {@link CatpointGui} (without opening a window, so it
+ * also works headless), arms the system and trips a temporary sensor. It doubles as the training
+ * run for the AppCDS archive produced by the {@code startup-image} profile, so every class loaded
+ * here ends up in the archive.
+ *
+ * The service runs over a scratch repository of the configured kind, so a build never touches the
+ * user's sensors or arming status. With catpoint.warmup.iterations set, the hot paths are warmed up
+ * first, as the application does.
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) {
+        Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(null);
+        Instant mainStart = Instant.now();
+
+        SecurityRepository securityRepository = SecurityRepositoryProvider.openScratch(System.getProperties());
+        SecurityRepository warmupRepository = SecurityRepositoryProvider.openScratch(System.getProperties());
+        SecurityService securityService = wire(securityRepository, ImageServiceProvider.open(System.getProperties()));
+        ServiceWarmup.run(wire(warmupRepository, ServiceWarmup.recognizer()),
+                Integer.getInteger(ServiceWarmup.ITERATIONS_PROPERTY, 0));
+
+        FirstDecisionListener firstDecision = new FirstDecisionListener();
+        securityService.addStatusListener(firstDecision);
+
+        Sensor sensor = new Sensor("Startup Benchmark", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+        firstDecision.reset();
+        long tripped = System.nanoTime();
+        securityService.changeSensorActivationStatus(sensor, true);
+        long decisionNanos = System.nanoTime() - tripped;
+
+        close(securityRepository);
+        close(warmupRepository);
+
+        if (firstDecision.decidedAt == null) {
+            System.out.println("No alarm decision was made");
+            return;
+        }
+        if (jvmStart != null) {
+            System.out.printf("jvm-start-to-main: %d ms%n", Duration.between(jvmStart, mainStart).toMillis());
+            System.out.printf("time-to-first-alarm-decision: %d ms%n", Duration.between(jvmStart, firstDecision.decidedAt).toMillis());
+        }
+        System.out.printf("main-to-first-alarm-decision: %d ms%n", Duration.between(mainStart, firstDecision.decidedAt).toMillis());
+        System.out.printf("first-alarm-decision-took: %d us%n", decisionNanos / 1000);
+    }
+
+    /**
+     * Builds a service with the panels listening to it, the warm-up's like the measured one.
+     */
+    private static SecurityService wire(SecurityRepository securityRepository, ImageService imageService) {
+        SecurityService securityService = new SecurityService(securityRepository, imageService);
+        securityService.addStatusListener(new DisplayPanel(securityService));
+        SensorPanel sensorPanel = new SensorPanel(securityService);
+        new ControlPanel(securityService, sensorPanel);
+        securityService.addStatusListener(new ImagePanel(securityService));
+        return securityService;
+    }
+
+    private static void close(SecurityRepository scratchRepository) {
+        if (scratchRepository instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                //only held scratch data
+            }
+        }
+    }
+
+    /**
+     * Records the instant of the first alarm status notification after {@link #reset()}.
+     */
+    private static class FirstDecisionListener implements StatusListener {
+        private Instant decidedAt;
+
+        void reset() {
+            decidedAt = null;
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            if (decidedAt == null) {
+                decidedAt = Instant.now();
+            }
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            // no behavior necessary
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            // no behavior necessary
+        }
+    }
+}
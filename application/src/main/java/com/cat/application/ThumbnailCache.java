@@ -0,0 +1,65 @@
+package com.cat.application;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the scaled thumbnails of the most recently shown frames, so going back to a recent frame
+ * neither reloads nor rescales it. Only thumbnails are kept, never the full-resolution frames.
+ * Meant to be used from the event dispatch thread.
+ */
+public class ThumbnailCache {
+
+    private record Key(Object frame, int width, int height) {
+    }
+
+    private final Map<Key, BufferedImage> thumbnails;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Number of thumbnails kept; the least recently used is evicted first
+     */
+    public ThumbnailCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.thumbnails = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached thumbnail of a frame, scaling it on a miss.
+     *
+     * @param frame Identifies the frame; must not hold on to the full-resolution image
+     * @param loader Supplies the full-resolution frame on a miss
+     * @param width Thumbnail width
+     * @param height Thumbnail height
+     */
+    public BufferedImage get(Object frame, Supplier<BufferedImage> loader, int width, int height) {
+        Key key = new Key(frame, width, height);
+        BufferedImage thumbnail = thumbnails.get(key);
+        if (thumbnail != null) {
+            hits++;
+            return thumbnail;
+        }
+        misses++;
+        thumbnail = ThumbnailScaler.scale(loader.get(), width, height);
+        thumbnails.put(key, thumbnail);
+        return thumbnail;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+}
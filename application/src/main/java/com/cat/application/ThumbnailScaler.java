@@ -0,0 +1,68 @@
+package com.cat.application;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Scales images down for display. Each pass halves the image with bilinear interpolation until it is
+ * within a factor of two of the target size, and a last bilinear pass produces the exact size. This
+ * looks as good as {@link Image#SCALE_SMOOTH} for thumbnails at a fraction of the cost, because every
+ * pass is a single accelerated {@link Graphics2D#drawImage} into an image in the screen's native format.
+ */
+public final class ThumbnailScaler {
+
+    private ThumbnailScaler() {
+    }
+
+    /**
+     * @param source Image to scale
+     * @param width Target width
+     * @param height Target height
+     * @return A new image of the target size, in a format that draws without conversion
+     */
+    public static BufferedImage scale(BufferedImage source, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Target size must be positive");
+        }
+        int transparency = source.getColorModel().getTransparency();
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        while (currentWidth / 2 >= width || currentHeight / 2 >= height) {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(height, currentHeight / 2);
+            //each pass has at most half the pixels of the last, so all passes together cost less than twice the first
+            BufferedImage next = createCompatibleImage(nextWidth, nextHeight, transparency);
+            draw(current, currentWidth, currentHeight, next, nextWidth, nextHeight);
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        }
+        BufferedImage result = createCompatibleImage(width, height, transparency);
+        draw(current, currentWidth, currentHeight, result, width, height);
+        return result;
+    }
+
+    private static void draw(BufferedImage source, int sourceWidth, int sourceHeight, BufferedImage target, int width, int height) {
+        Graphics2D g = target.createGraphics();
+        try {
+            if (target.getColorModel().hasAlpha()) {
+                g.setComposite(AlphaComposite.Src);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, 0, 0, sourceWidth, sourceHeight, null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return configuration.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+}
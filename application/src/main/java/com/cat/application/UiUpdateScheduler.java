@@ -0,0 +1,164 @@
+package com.cat.application;
+
+import com.cat.data.AlarmStatus;
+import com.cat.security.service.StatusListener;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps bursts of status updates from thrashing the UI. Updates may arrive on any thread; they are
+ * coalesced into the latest alarm status, cat detection state and a "sensors changed" flag, and that
+ * snapshot is handed to the registered panels on the event dispatch thread at most a fixed number
+ * of times per second. An update overwritten before it reached the panels counts as dropped.
+ */
+public class UiUpdateScheduler implements StatusListener {
+
+    public static final int DEFAULT_FRAMES_PER_SECOND = 30;
+
+    private final long frameIntervalNanos;
+    private final List<StatusListener> listeners = new CopyOnWriteArrayList<>();
+    private final Timer frameTimer;
+
+    //state not yet applied, guarded by this
+    private AlarmStatus pendingAlarmStatus;
+    private Boolean pendingCatDetected;
+    private boolean pendingSensorChange;
+    private boolean frameScheduled;
+    private long lastFrameNanos;
+
+    private final LongAdder receivedUpdates = new LongAdder();
+    private final LongAdder droppedUpdates = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+
+    public UiUpdateScheduler() {
+        this(DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * @param framesPerSecond Maximum number of times per second the panels are updated
+     */
+    public UiUpdateScheduler(int framesPerSecond) {
+        if (framesPerSecond < 1) {
+            throw new IllegalArgumentException("framesPerSecond must be positive");
+        }
+        this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        this.lastFrameNanos = System.nanoTime() - frameIntervalNanos;
+        this.frameTimer = new Timer(0, e -> applyFrame());
+        frameTimer.setRepeats(false);
+    }
+
+    /**
+     * Registers a panel to receive the coalesced updates on the event dispatch thread.
+     */
+    public void addListener(StatusListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StatusListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        synchronized (this) {
+            if (pendingAlarmStatus != null) {
+                droppedUpdates.increment();
+            }
+            pendingAlarmStatus = status;
+            scheduleFrame();
+        }
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        synchronized (this) {
+            if (pendingCatDetected != null) {
+                droppedUpdates.increment();
+            }
+            pendingCatDetected = catDetected;
+            scheduleFrame();
+        }
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        synchronized (this) {
+            if (pendingSensorChange) {
+                droppedUpdates.increment();
+            }
+            pendingSensorChange = true;
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * @return Number of updates received
+     */
+    public long getReceivedUpdates() {
+        return receivedUpdates.sum();
+    }
+
+    /**
+     * @return Number of updates replaced by a newer one before the panels saw them
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates.sum();
+    }
+
+    /**
+     * @return Number of times the panels were updated
+     */
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    /**
+     * Runs the next frame right away if the last one is long enough ago, otherwise once it is. Caller holds the lock.
+     */
+    private void scheduleFrame() {
+        receivedUpdates.increment();
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+        long waitNanos = lastFrameNanos + frameIntervalNanos - System.nanoTime();
+        if (waitNanos <= 0) {
+            SwingUtilities.invokeLater(this::applyFrame);
+        } else {
+            frameTimer.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+            frameTimer.restart();
+        }
+    }
+
+    private void applyFrame() {
+        AlarmStatus alarmStatus;
+        Boolean catDetected;
+        boolean sensorChange;
+        synchronized (this) {
+            alarmStatus = pendingAlarmStatus;
+            catDetected = pendingCatDetected;
+            sensorChange = pendingSensorChange;
+            pendingAlarmStatus = null;
+            pendingCatDetected = null;
+            pendingSensorChange = false;
+            frameScheduled = false;
+            lastFrameNanos = System.nanoTime();
+        }
+        frames.increment();
+        for (StatusListener listener : listeners) {
+            if (alarmStatus != null) {
+                listener.notify(alarmStatus);
+            }
+            if (catDetected != null) {
+                listener.catDetected(catDetected);
+            }
+            if (sensorChange) {
+                listener.sensorStatusChanged();
+            }
+        }
+    }
+}
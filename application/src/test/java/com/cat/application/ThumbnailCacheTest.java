@@ -0,0 +1,70 @@
+package com.cat.application;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+class ThumbnailCacheTest {
+
+    private final List<String> loaded = new ArrayList<>();
+
+    @Test
+    public void get_sameFrameAgain_servedWithoutLoading() {
+        ThumbnailCache cache = new ThumbnailCache(4);
+
+        BufferedImage first = cache.get("front.png@1", loader("front.png@1"), 30, 20);
+        BufferedImage second = cache.get("front.png@1", loader("front.png@1"), 30, 20);
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(List.of("front.png@1"), loaded);
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertEquals(30, first.getWidth());
+        Assertions.assertEquals(20, first.getHeight());
+    }
+
+    @Test
+    public void get_overCapacity_leastRecentlyUsedEvicted() {
+        ThumbnailCache cache = new ThumbnailCache(2);
+        cache.get("a", loader("a"), 30, 20);
+        cache.get("b", loader("b"), 30, 20);
+        //using a again makes b the least recently used
+        cache.get("a", loader("a"), 30, 20);
+
+        cache.get("c", loader("c"), 30, 20);
+        cache.get("a", loader("a"), 30, 20);
+        cache.get("b", loader("b"), 30, 20);
+
+        Assertions.assertEquals(List.of("a", "b", "c", "b"), loaded);
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void get_otherSize_scaledSeparately() {
+        ThumbnailCache cache = new ThumbnailCache(4);
+
+        BufferedImage small = cache.get("a", loader("a"), 30, 20);
+        BufferedImage large = cache.get("a", loader("a"), 60, 40);
+
+        Assertions.assertEquals(30, small.getWidth());
+        Assertions.assertEquals(60, large.getWidth());
+        Assertions.assertEquals(2, loaded.size());
+    }
+
+    @Test
+    public void create_noCapacity_rejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ThumbnailCache(0));
+    }
+
+    private Supplier<BufferedImage> loader(String frame) {
+        return () -> {
+            loaded.add(frame);
+            return new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        };
+    }
+}
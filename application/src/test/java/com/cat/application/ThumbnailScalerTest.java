@@ -0,0 +1,75 @@
+package com.cat.application;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+class ThumbnailScalerTest {
+
+    @Test
+    public void scale_muchLargerSource_exactTargetSize() {
+        BufferedImage source = new BufferedImage(2000, 1500, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage thumbnail = ThumbnailScaler.scale(source, 300, 225);
+
+        Assertions.assertEquals(300, thumbnail.getWidth());
+        Assertions.assertEquals(225, thumbnail.getHeight());
+    }
+
+    @Test
+    public void scale_sourceSmallerThanTarget_scaledUp() {
+        BufferedImage source = filled(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), Color.BLUE);
+
+        BufferedImage thumbnail = ThumbnailScaler.scale(source, 40, 30);
+
+        Assertions.assertEquals(40, thumbnail.getWidth());
+        Assertions.assertEquals(30, thumbnail.getHeight());
+        Assertions.assertEquals(Color.BLUE.getRGB(), thumbnail.getRGB(20, 15));
+    }
+
+    @Test
+    public void scale_twoColoredHalves_eachHalfKeepsItsColor() {
+        BufferedImage source = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = source.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 800, 1200);
+        g.setColor(Color.GREEN);
+        g.fillRect(800, 0, 800, 1200);
+        g.dispose();
+
+        BufferedImage thumbnail = ThumbnailScaler.scale(source, 200, 150);
+
+        //away from the border the passes only ever average pixels of one color
+        Assertions.assertEquals(Color.RED.getRGB(), thumbnail.getRGB(10, 75));
+        Assertions.assertEquals(Color.RED.getRGB(), thumbnail.getRGB(90, 140));
+        Assertions.assertEquals(Color.GREEN.getRGB(), thumbnail.getRGB(110, 10));
+        Assertions.assertEquals(Color.GREEN.getRGB(), thumbnail.getRGB(190, 75));
+    }
+
+    @Test
+    public void scale_transparentSource_transparencyKept() {
+        BufferedImage source = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage thumbnail = ThumbnailScaler.scale(source, 100, 75);
+
+        Assertions.assertTrue(thumbnail.getColorModel().hasAlpha());
+        Assertions.assertEquals(0, thumbnail.getRGB(50, 37) >>> 24);
+    }
+
+    @Test
+    public void scale_emptyTarget_rejected() {
+        BufferedImage source = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ThumbnailScaler.scale(source, 0, 10));
+    }
+
+    private static BufferedImage filled(BufferedImage image, Color color) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,118 @@
+package com.cat.application;
+
+import com.cat.data.AlarmStatus;
+import com.cat.security.service.StatusListener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class UiUpdateSchedulerTest {
+
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> frameTimes = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void burstWhileFrameQueued_coalescedIntoOneFrameWithLatestState() throws Exception {
+        UiUpdateScheduler scheduler = new UiUpdateScheduler(30);
+        scheduler.addListener(new RecordingListener());
+        //keeps the event dispatch thread busy so the whole burst arrives before the first frame runs
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> awaitQuietly(release));
+
+        AlarmStatus[] statuses = AlarmStatus.values();
+        for (int i = 0; i < 100; i++) {
+            scheduler.notify(statuses[i % statuses.length]);
+            scheduler.catDetected(i % 2 == 0);
+        }
+        scheduler.sensorStatusChanged();
+        scheduler.sensorStatusChanged();
+        release.countDown();
+        awaitFrames(scheduler, 1);
+
+        Assertions.assertEquals(List.of("alarm " + statuses[99 % statuses.length], "cat false", "sensors"), delivered);
+        Assertions.assertEquals(1, scheduler.getFrames());
+        Assertions.assertEquals(202, scheduler.getReceivedUpdates());
+        Assertions.assertEquals(199, scheduler.getDroppedUpdates());
+    }
+
+    @Test
+    public void onlySensorsChanged_onlySensorUpdateDelivered() throws Exception {
+        UiUpdateScheduler scheduler = new UiUpdateScheduler(30);
+        scheduler.addListener(new RecordingListener());
+
+        scheduler.sensorStatusChanged();
+        awaitFrames(scheduler, 1);
+
+        Assertions.assertEquals(List.of("sensors"), delivered);
+        Assertions.assertEquals(0, scheduler.getDroppedUpdates());
+    }
+
+    @Test
+    public void steadyStreamOfUpdates_framesNoMoreOftenThanTheRate() throws Exception {
+        UiUpdateScheduler scheduler = new UiUpdateScheduler(10);
+        scheduler.addListener(new RecordingListener());
+
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(800);
+        for (int i = 0; System.nanoTime() < end; i++) {
+            scheduler.notify(i % 2 == 0 ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+            Thread.sleep(1);
+        }
+        //the last updates are still delivered, one interval later at most
+        Thread.sleep(200);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+
+        long frames = scheduler.getFrames();
+        Assertions.assertTrue(frames >= 4 && frames <= 10, "frames " + frames);
+        Assertions.assertEquals(frames, frameTimes.size());
+        Assertions.assertTrue(scheduler.getDroppedUpdates() > 0);
+        for (int i = 1; i < frameTimes.size(); i++) {
+            //the timer works in whole milliseconds and listeners run a little after the frame starts, so allow some slack
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(frameTimes.get(i) - frameTimes.get(i - 1));
+            Assertions.assertTrue(gapMillis >= 95, "frames " + gapMillis + " ms apart");
+        }
+    }
+
+    private static void awaitFrames(UiUpdateScheduler scheduler, long frames) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getFrames() < frames && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        //the frame is counted before the listeners run on the event dispatch thread
+        SwingUtilities.invokeAndWait(() -> {
+        });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class RecordingListener implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+            Assertions.assertTrue(SwingUtilities.isEventDispatchThread());
+            frameTimes.add(System.nanoTime());
+            delivered.add("alarm " + status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            delivered.add("cat " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            delivered.add("sensors");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.cat.image.service;
+
+import java.util.Properties;
+
+/**
+ * "aws": an {@link AwsImageService} calling Rekognition, set up as described in {@link RekognitionClientHolder}.
+ */
+public class AwsImageServiceProvider implements ImageServiceProvider {
+
+    @Override
+    public String name() {
+        return "aws";
+    }
+
+    @Override
+    public ImageService create(Properties config) {
+        return new AwsImageService();
+    }
+}
@@ -0,0 +1,19 @@
+package com.cat.image.service;
+
+import java.util.Properties;
+
+/**
+ * "fake": a {@link FakeImageService} guessing at random.
+ */
+public class FakeImageServiceProvider implements ImageServiceProvider {
+
+    @Override
+    public String name() {
+        return "fake";
+    }
+
+    @Override
+    public ImageService create(Properties config) {
+        return new FakeImageService();
+    }
+}
@@ -0,0 +1,216 @@
+package com.cat.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Watches the directory camera recorders drop frames into and hands every new frame, read through a
+ * memory mapping rather than decoded, to a consumer together with the id of the camera it came from.
+ * <ul>
+ *     <li>{@code <camera>.ring} files are {@link FrameRingFile}s; they are polled every 20ms (recorders
+ *     writing through a mapping raise no file events) and each new newest frame is delivered. A ring
+ *     whose header isn't written yet is retried on every poll until it opens.</li>
+ *     <li>Any other file is a single raw frame of the configured size and format, for the camera named
+ *     by the file name up to the first dot. Files that aren't complete yet are skipped until written.
+ *     The events one write raises are delivered as one frame, and a file is only delivered again
+ *     once its modification time has changed.</li>
+ * </ul>
+ * Frames are delivered on the watcher thread. They are copies, so the consumer may keep them or
+ * hand them to another thread while the recorder goes on writing.
+ */
+public class FrameDirectoryWatcher implements AutoCloseable {
+
+    private static final String RING_SUFFIX = ".ring";
+    private static final long RING_POLL_MILLIS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(FrameDirectoryWatcher.class);
+
+    private final Path directory;
+    private final int width;
+    private final int height;
+    private final RawFrameFormat format;
+    private final BiConsumer<String, BufferedImage> consumer;
+    private final WatchService watchService;
+    private final Map<Path, FrameRingFile> rings = new HashMap<>();
+    //ring files that couldn't be opened yet, usually because the recorder hasn't written the header
+    private final Set<Path> pendingRings = new LinkedHashSet<>();
+    private final Map<Path, Long> deliveredSequences = new HashMap<>();
+    private final Map<Path, FileTime> deliveredModifiedTimes = new HashMap<>();
+    private Thread thread;
+
+    /**
+     * @param directory Directory to watch
+     * @param width Width of single-frame files
+     * @param height Height of single-frame files
+     * @param format Pixel format of single-frame files
+     * @param consumer Receives the camera id and the frame
+     */
+    public FrameDirectoryWatcher(Path directory, int width, int height, RawFrameFormat format,
+                                 BiConsumer<String, BufferedImage> consumer) throws IOException {
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.consumer = consumer;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Starts delivering frames on a daemon thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "frame-watcher-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        synchronized (this) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try (DirectoryStream<Path> existingRings = Files.newDirectoryStream(directory, "*" + RING_SUFFIX)) {
+            existingRings.forEach(this::deliver);
+        } catch (IOException e) {
+            log.warn("Unable to list {}", directory, e);
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(RING_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    //a write usually raises several events, only the last one per file counts
+                    Map<Path, WatchEvent.Kind<?>> changes = new LinkedHashMap<>();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                            changes.put(directory.resolve((Path) event.context()), event.kind());
+                        }
+                    }
+                    key.reset();
+                    changes.forEach((file, kind) -> {
+                        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                            forget(file);
+                        } else {
+                            deliver(file);
+                        }
+                    });
+                }
+                //writes through a shared mapping raise no file events, so known rings are polled, and
+                //rings that couldn't be opened yet are retried since finishing their header raises none either
+                for (Path ring : List.copyOf(pendingRings)) {
+                    deliver(ring);
+                }
+                for (Path ring : List.copyOf(rings.keySet())) {
+                    deliver(ring);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        } finally {
+            rings.keySet().forEach(this::closeQuietly);
+            rings.clear();
+        }
+    }
+
+    private void deliver(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        String cameraId = dot > 0 ? name.substring(0, dot) : name;
+        try {
+            BufferedImage frame = name.endsWith(RING_SUFFIX) ? latestRingFrame(file) : singleFrame(file);
+            if (frame != null) {
+                consumer.accept(cameraId, frame);
+            }
+        } catch (IOException e) {
+            //usually a recorder that hasn't finished creating the file: a single frame is retried on its
+            //next change, a ring on every poll until it opens
+            log.debug("Unable to read frame from {}", file, e);
+        } catch (RuntimeException e) {
+            log.warn("Unable to read frame from {}", file, e);
+        }
+    }
+
+    private BufferedImage singleFrame(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < format.frameSize(width, height)) {
+            return null;
+        }
+        FileTime modified = Files.getLastModifiedTime(file);
+        if (modified.equals(deliveredModifiedTimes.get(file))) {
+            return null;
+        }
+        BufferedImage frame = MappedFrames.map(file, width, height, format);
+        deliveredModifiedTimes.put(file, modified);
+        return frame;
+    }
+
+    private BufferedImage latestRingFrame(Path file) throws IOException {
+        FrameRingFile ring = rings.get(file);
+        if (ring == null) {
+            try {
+                ring = FrameRingFile.open(file);
+            } catch (IOException e) {
+                pendingRings.add(file);
+                throw e;
+            }
+            pendingRings.remove(file);
+            rings.put(file, ring);
+        }
+        long sequence = ring.latestSequence();
+        Long delivered = deliveredSequences.get(file);
+        if (delivered != null && delivered == sequence) {
+            return null;
+        }
+        deliveredSequences.put(file, sequence);
+        return ring.frame(sequence);
+    }
+
+    private void forget(Path file) {
+        closeQuietly(file);
+        rings.remove(file);
+        pendingRings.remove(file);
+        deliveredSequences.remove(file);
+        deliveredModifiedTimes.remove(file);
+    }
+
+    private void closeQuietly(Path file) {
+        FrameRingFile ring = rings.get(file);
+        if (ring != null) {
+            try {
+                ring.close();
+            } catch (IOException e) {
+                log.debug("Unable to close {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.cat.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ring buffer of raw frames in a memory-mapped file, shared between a recorder process that appends
+ * frames and readers that copy them out. Layout (big-endian):
+ * <pre>
+ *  0  int  magic "CATR"
+ *  4  int  version (1)
+ *  8  int  width
+ * 12  int  height
+ * 16  int  RawFrameFormat ordinal
+ * 20  int  slot count
+ * 24  long sequence of the next frame to be written
+ * 32  slots: long sequence of the frame in the slot (-1 while it is being written), then the frame bytes
+ * </pre>
+ * Slots work like a seqlock: the writer marks the slot -1, fills it, stamps it with the frame's
+ * sequence and only then advances the header sequence. A reader copies the frame and checks the
+ * stamp before and after, so a frame the recorder overwrote during the copy is reported missing
+ * rather than delivered torn.
+ */
+public class FrameRingFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x43415452;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SEQUENCE_OFFSET = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private final RawFrameFormat format;
+    private final int slotCount;
+    private final int frameSize;
+    private final int slotSize;
+
+    private FrameRingFile(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a frame ring file");
+        }
+        this.width = buffer.getInt(8);
+        this.height = buffer.getInt(12);
+        this.format = RawFrameFormat.values()[buffer.getInt(16)];
+        this.slotCount = buffer.getInt(20);
+        this.frameSize = format.frameSize(width, height);
+        this.slotSize = Long.BYTES + frameSize;
+        if (buffer.capacity() < HEADER_SIZE + (long) slotCount * slotSize) {
+            throw new IOException("Frame ring file is incomplete");
+        }
+    }
+
+    /**
+     * Opens an existing ring file for reading.
+     */
+    public static FrameRingFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new FrameRingFile(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates (or truncates) a ring file for a recorder to append frames to.
+     */
+    public static FrameRingFile create(Path file, int width, int height, RawFrameFormat format, int slotCount) throws IOException {
+        long size = HEADER_SIZE + (long) slotCount * (Long.BYTES + format.frameSize(width, height));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, width).putInt(12, height)
+                    .putInt(16, format.ordinal()).putInt(20, slotCount).putLong(SEQUENCE_OFFSET, 0);
+            for (int slot = 0; slot < slotCount; slot++) {
+                buffer.putLong(HEADER_SIZE + slot * (Long.BYTES + format.frameSize(width, height)), -1);
+            }
+            return new FrameRingFile(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a frame, overwriting the oldest slot. Only valid on files opened with {@link #create}.
+     *
+     * @param frame Exactly one frame of pixels, read from its position
+     */
+    public void append(ByteBuffer frame) {
+        long sequence = buffer.getLong(SEQUENCE_OFFSET);
+        int slot = slotOffset(sequence);
+        buffer.putLong(slot, -1);
+        VarHandle.storeStoreFence();
+        buffer.put(slot + Long.BYTES, frame, frame.position(), frameSize);
+        VarHandle.storeStoreFence();
+        buffer.putLong(slot, sequence);
+        buffer.putLong(SEQUENCE_OFFSET, sequence + 1);
+    }
+
+    /**
+     * @return Sequence number of the most recently completed frame, -1 if none has been written
+     */
+    public long latestSequence() {
+        return buffer.getLong(SEQUENCE_OFFSET) - 1;
+    }
+
+    /**
+     * Copies a frame out of the ring.
+     *
+     * @return The frame, or null if it hasn't been written yet or its slot has been reused, also while copying
+     */
+    public BufferedImage frame(long sequence) {
+        if (sequence < 0) {
+            return null;
+        }
+        int slot = slotOffset(sequence);
+        if (buffer.getLong(slot) != sequence) {
+            return null;
+        }
+        VarHandle.loadLoadFence();
+        byte[] pixels = new byte[width * height * format.bytesPerPixel()];
+        buffer.get(slot + Long.BYTES, pixels);
+        VarHandle.loadLoadFence();
+        if (buffer.getLong(slot) != sequence) {
+            return null;
+        }
+        return MappedFrames.wrap(pixels, width, height, format);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public RawFrameFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int slotOffset(long sequence) {
+        return HEADER_SIZE + (int) (sequence % slotCount) * slotSize;
+    }
+}
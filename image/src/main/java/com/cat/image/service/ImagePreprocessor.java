@@ -0,0 +1,294 @@
+package com.cat.image.service;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Shrinks camera frames before they are sent for recognition. For each camera it crops the
+ * configured region of interest, averages every {@code downscaleFactor x downscaleFactor} block of
+ * pixels into one, and normalizes the result to packed 8-bit sRGB ({@link BufferedImage#TYPE_INT_RGB}),
+ * which every recognition backend can encode. Frames backed by {@link DataBufferInt} or
+ * {@link DataBufferByte} in an sRGB or gray color space are read straight from the raster arrays;
+ * anything else goes through {@link BufferedImage#getRGB}.
+ *
+ * The output image and working buffers of each camera are reused from frame to frame, so the image
+ * returned by {@link #process(String, BufferedImage)} is only valid until the next frame of the same
+ * camera is processed. Callers that hand the frame on to another thread or may overlap with each
+ * other use {@link #process(String, BufferedImage, Function)}, which holds the camera's buffers
+ * until they are done with it.
+ */
+public class ImagePreprocessor {
+
+    /**
+     * Preprocessing settings for one camera.
+     *
+     * @param regionOfInterest Part of the frame to keep, or null for the whole frame. Clipped to the frame;
+     *                         frames it misses entirely are rejected.
+     * @param downscaleFactor Width and height of the pixel blocks averaged into one output pixel, 1 to keep full resolution
+     */
+    public record CameraSettings(Rectangle regionOfInterest, int downscaleFactor) {
+        public CameraSettings {
+            if (downscaleFactor < 1) {
+                throw new IllegalArgumentException("downscaleFactor must be at least 1");
+            }
+            if (regionOfInterest != null && (regionOfInterest.isEmpty() || regionOfInterest.x < 0 || regionOfInterest.y < 0)) {
+                throw new IllegalArgumentException("regionOfInterest must be a non-empty area at non-negative coordinates, was " + regionOfInterest);
+            }
+            regionOfInterest = regionOfInterest == null ? null : new Rectangle(regionOfInterest);
+        }
+
+        @Override
+        public Rectangle regionOfInterest() {
+            return regionOfInterest == null ? null : new Rectangle(regionOfInterest);
+        }
+    }
+
+    private final CameraSettings defaultSettings;
+    private final Map<String, CameraSettings> cameraSettings = new ConcurrentHashMap<>();
+    private final Map<String, CameraBuffers> cameraBuffers = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultSettings Settings for cameras without their own
+     */
+    public ImagePreprocessor(CameraSettings defaultSettings) {
+        this.defaultSettings = defaultSettings;
+    }
+
+    public void setCameraSettings(String cameraId, CameraSettings settings) {
+        cameraSettings.put(cameraId, settings);
+    }
+
+    public void removeCameraSettings(String cameraId) {
+        cameraSettings.remove(cameraId);
+        cameraBuffers.remove(cameraId);
+    }
+
+    /**
+     * Crops, downscales and normalizes a frame from the given camera.
+     *
+     * @param cameraId Camera the frame came from
+     * @param source Full frame
+     * @return The preprocessed frame, valid until the next call for the same camera
+     * @throws IllegalArgumentException if the camera's region of interest lies outside the frame
+     */
+    public BufferedImage process(String cameraId, BufferedImage source) {
+        return process(cameraId, source, Function.identity());
+    }
+
+    /**
+     * Crops, downscales and normalizes a frame from the given camera and passes it to the action.
+     * Other frames of the same camera wait until the action returns, so the frame can't be
+     * overwritten while it is in use.
+     *
+     * @param cameraId Camera the frame came from
+     * @param source Full frame
+     * @param action Uses the preprocessed frame, which must not be kept after it returns
+     * @return What the action returned
+     * @throws IllegalArgumentException if the camera's region of interest lies outside the frame
+     */
+    public <T> T process(String cameraId, BufferedImage source, Function<? super BufferedImage, T> action) {
+        CameraSettings settings = cameraSettings.getOrDefault(cameraId, defaultSettings);
+        Rectangle region = new Rectangle(0, 0, source.getWidth(), source.getHeight());
+        if (settings.regionOfInterest != null) {
+            region = region.intersection(settings.regionOfInterest);
+            if (region.isEmpty()) {
+                throw new IllegalArgumentException("Region of interest " + settings.regionOfInterest + " of camera "
+                        + cameraId + " lies outside its " + source.getWidth() + "x" + source.getHeight() + " frame");
+            }
+        }
+        int factor = Math.min(settings.downscaleFactor, Math.min(region.width, region.height));
+        int outWidth = region.width / factor;
+        int outHeight = region.height / factor;
+
+        CameraBuffers buffers = cameraBuffers.computeIfAbsent(cameraId, id -> new CameraBuffers());
+        //a lock rather than synchronized, the action may block on I/O in a virtual thread
+        buffers.lock.lock();
+        try {
+            BufferedImage target = buffers.target(outWidth, outHeight, region.width);
+            downscale(source, region, factor, buffers, ((DataBufferInt) target.getRaster().getDataBuffer()).getData(), outWidth, outHeight);
+            return action.apply(target);
+        } finally {
+            buffers.lock.unlock();
+        }
+    }
+
+    private static void downscale(BufferedImage source, Rectangle region, int factor, CameraBuffers buffers,
+                                  int[] out, int outWidth, int outHeight) {
+        RowReader reader = RowReader.forImage(source);
+        int[] row = buffers.row;
+        int[] sumR = buffers.sumR;
+        int[] sumG = buffers.sumG;
+        int[] sumB = buffers.sumB;
+        int rowWidth = outWidth * factor;
+        int area = factor * factor;
+
+        for (int oy = 0; oy < outHeight; oy++) {
+            Arrays.fill(sumR, 0, outWidth, 0);
+            Arrays.fill(sumG, 0, outWidth, 0);
+            Arrays.fill(sumB, 0, outWidth, 0);
+            int y0 = region.y + oy * factor;
+            for (int dy = 0; dy < factor; dy++) {
+                reader.read(source, region.x, y0 + dy, rowWidth, row);
+                for (int x = 0, ox = 0; ox < outWidth; ox++) {
+                    int r = 0, g = 0, b = 0;
+                    for (int dx = 0; dx < factor; dx++, x++) {
+                        int rgb = row[x];
+                        r += (rgb >> 16) & 0xFF;
+                        g += (rgb >> 8) & 0xFF;
+                        b += rgb & 0xFF;
+                    }
+                    sumR[ox] += r;
+                    sumG[ox] += g;
+                    sumB[ox] += b;
+                }
+            }
+            int base = oy * outWidth;
+            for (int ox = 0; ox < outWidth; ox++) {
+                out[base + ox] = (sumR[ox] / area) << 16 | (sumG[ox] / area) << 8 | (sumB[ox] / area);
+            }
+        }
+    }
+
+    /**
+     * Output image and scratch arrays kept per camera.
+     */
+    private static class CameraBuffers {
+        private final ReentrantLock lock = new ReentrantLock();
+        private BufferedImage target;
+        private int[] row = new int[0];
+        private int[] sumR = new int[0];
+        private int[] sumG = new int[0];
+        private int[] sumB = new int[0];
+
+        BufferedImage target(int width, int height, int sourceRowWidth) {
+            if (target == null || target.getWidth() != width || target.getHeight() != height) {
+                target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            if (row.length < sourceRowWidth) {
+                row = new int[sourceRowWidth];
+            }
+            if (sumR.length < width) {
+                sumR = new int[width];
+                sumG = new int[width];
+                sumB = new int[width];
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Reads a horizontal run of pixels as packed 0xRRGGBB values.
+     */
+    private interface RowReader {
+        void read(BufferedImage image, int x, int y, int width, int[] rgb);
+
+        RowReader GENERIC = (image, x, y, width, rgb) -> image.getRGB(x, y, width, 1, rgb, 0, width);
+
+        static RowReader forImage(BufferedImage image) {
+            Raster raster = image.getRaster();
+            SampleModel sampleModel = raster.getSampleModel();
+            ColorModel colorModel = image.getColorModel();
+            DataBuffer dataBuffer = raster.getDataBuffer();
+            if (colorModel.isAlphaPremultiplied() || dataBuffer.getNumBanks() != 1) {
+                return GENERIC;
+            }
+            if (dataBuffer instanceof DataBufferInt ints
+                    && sampleModel instanceof SinglePixelPackedSampleModel packed
+                    && colorModel instanceof DirectColorModel
+                    && colorModel.getColorSpace().isCS_sRGB()) {
+                return packedIntReader(raster, ints, packed);
+            }
+            if (dataBuffer instanceof DataBufferByte bytes
+                    && sampleModel instanceof ComponentSampleModel component
+                    && colorModel instanceof ComponentColorModel
+                    && bitsAreBytes(colorModel)) {
+                int colorBands = colorModel.getNumColorComponents();
+                int type = colorModel.getColorSpace().getType();
+                if ((colorBands == 3 && colorModel.getColorSpace().isCS_sRGB())
+                        || (colorBands == 1 && type == ColorSpace.TYPE_GRAY)) {
+                    return interleavedByteReader(raster, colorModel, bytes, component, colorBands);
+                }
+            }
+            return GENERIC;
+        }
+
+        private static boolean bitsAreBytes(ColorModel colorModel) {
+            for (int bits : colorModel.getComponentSize()) {
+                if (bits != 8) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static RowReader packedIntReader(Raster raster, DataBufferInt buffer, SinglePixelPackedSampleModel sampleModel) {
+            int[] data = buffer.getData();
+            int[] masks = sampleModel.getBitMasks();
+            int[] shifts = sampleModel.getBitOffsets();
+            for (int band = 0; band < 3; band++) {
+                if (masks[band] >>> shifts[band] != 0xFF) {
+                    return GENERIC;
+                }
+            }
+            int rShift = shifts[0], gShift = shifts[1], bShift = shifts[2];
+            int stride = sampleModel.getScanlineStride();
+            int offset = buffer.getOffset();
+            int tx = raster.getSampleModelTranslateX();
+            int ty = raster.getSampleModelTranslateY();
+            return (image, x, y, width, rgb) -> {
+                int index = offset + (y - ty) * stride + (x - tx);
+                for (int i = 0; i < width; i++) {
+                    int p = data[index + i];
+                    rgb[i] = ((p >>> rShift) & 0xFF) << 16 | ((p >>> gShift) & 0xFF) << 8 | ((p >>> bShift) & 0xFF);
+                }
+            };
+        }
+
+        private static RowReader interleavedByteReader(Raster raster, ColorModel colorModel, DataBufferByte buffer, ComponentSampleModel sampleModel, int colorBands) {
+            byte[] data = buffer.getData();
+            int[] bandOffsets = sampleModel.getBandOffsets();
+            int pixelStride = sampleModel.getPixelStride();
+            int stride = sampleModel.getScanlineStride();
+            int offset = buffer.getOffset();
+            int tx = raster.getSampleModelTranslateX();
+            int ty = raster.getSampleModelTranslateY();
+            if (colorBands == 1) {
+                //gray levels go through the color model once so they match what getRGB would return
+                int[] levels = new int[256];
+                for (int v = 0; v < levels.length; v++) {
+                    levels[v] = colorModel.getRGB(v) & 0xFFFFFF;
+                }
+                int grayOffset = bandOffsets[0];
+                return (image, x, y, width, rgb) -> {
+                    int index = offset + (y - ty) * stride + (x - tx) * pixelStride + grayOffset;
+                    for (int i = 0; i < width; i++, index += pixelStride) {
+                        rgb[i] = levels[data[index] & 0xFF];
+                    }
+                };
+            }
+            int rOffset = bandOffsets[0], gOffset = bandOffsets[1], bOffset = bandOffsets[2];
+            return (image, x, y, width, rgb) -> {
+                int index = offset + (y - ty) * stride + (x - tx) * pixelStride;
+                for (int i = 0; i < width; i++, index += pixelStride) {
+                    rgb[i] = (data[index + rOffset] & 0xFF) << 16 | (data[index + gOffset] & 0xFF) << 8 | (data[index + bOffset] & 0xFF);
+                }
+            };
+        }
+    }
+}
@@ -3,5 +3,16 @@ package com.cat.image.service;
 import java.awt.image.BufferedImage;
 
 public interface ImageService {
+    /** Camera id used for images that don't say which camera they came from */
+    String DEFAULT_CAMERA = "default";
+
     boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Same as {@link #imageContainsCat(BufferedImage, float)} for an image from a known camera, so
+     * implementations can apply per-camera processing. Ignores the camera by default.
+     */
+    default boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(image, confidenceThreshhold);
+    }
 }
@@ -0,0 +1,50 @@
+package com.cat.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Answer used by {@link ResilientImageService} when the real image service can't be asked
+ * (circuit open, bulkhead full) or didn't answer in time.
+ */
+@FunctionalInterface
+public interface ImageServiceFallback {
+
+    /**
+     * @param image Image that was to be scanned
+     * @param confidenceThreshhold Threshold that was requested
+     * @param lastKnownResult Result of the most recent successful recognition, false if there was none
+     * @return Whether to treat the image as containing a cat
+     */
+    boolean imageContainsCat(BufferedImage image, float confidenceThreshhold, boolean lastKnownResult);
+
+    /**
+     * Always gives the same answer.
+     */
+    static ImageServiceFallback constant(boolean catPresent) {
+        return (image, confidenceThreshhold, lastKnownResult) -> catPresent;
+    }
+
+    /**
+     * Repeats the result of the most recent successful recognition.
+     */
+    static ImageServiceFallback lastKnownResult() {
+        return (image, confidenceThreshhold, lastKnownResult) -> lastKnownResult;
+    }
+
+    /**
+     * Asks a cheaper local detector instead. The detector must be fast, it runs on the caller's thread.
+     */
+    static ImageServiceFallback localDetector(ImageService detector) {
+        return (image, confidenceThreshhold, lastKnownResult) -> detector.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    /**
+     * Fail-safe: reports a cat whenever the condition holds (for example while the system is armed
+     * at home), otherwise defers to the given fallback.
+     */
+    static ImageServiceFallback catPresentWhen(BooleanSupplier condition, ImageServiceFallback otherwise) {
+        return (image, confidenceThreshhold, lastKnownResult) ->
+                condition.getAsBoolean() || otherwise.imageContainsCat(image, confidenceThreshhold, lastKnownResult);
+    }
+}
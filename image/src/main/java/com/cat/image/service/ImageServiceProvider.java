@@ -0,0 +1,44 @@
+package com.cat.image.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.ServiceLoader;
+
+/**
+ * Creates one kind of ImageService. Providers are found with {@link ServiceLoader}, so a module can
+ * add its own with a {@code provides} clause and a node picks one by name in its configuration,
+ * without code changes. Built in are "fake" and "aws".
+ */
+public interface ImageServiceProvider {
+
+    /** Configuration key naming the provider to use */
+    String PROVIDER_PROPERTY = "catpoint.imageService";
+
+    /**
+     * @return Name the provider is selected by
+     */
+    String name();
+
+    /**
+     * @param config Settings of the node, such as the system properties
+     */
+    ImageService create(Properties config);
+
+    /**
+     * Creates the image service the configuration selects with catpoint.imageService, "fake" if it isn't set.
+     *
+     * @throws IllegalArgumentException if no provider has the name
+     */
+    static ImageService open(Properties config) {
+        String name = config.getProperty(PROVIDER_PROPERTY, "fake");
+        List<String> names = new ArrayList<>();
+        for (ImageServiceProvider provider : ServiceLoader.load(ImageServiceProvider.class)) {
+            if (provider.name().equals(name)) {
+                return provider.create(config);
+            }
+            names.add(provider.name());
+        }
+        throw new IllegalArgumentException("No image service provider named " + name + ", only " + names);
+    }
+}
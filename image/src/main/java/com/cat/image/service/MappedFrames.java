@@ -0,0 +1,72 @@
+package com.cat.image.service;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads raw frames held in memory-mapped files or byte buffers into BufferedImages. The pixels are
+ * copied out of the mapping in one bulk transfer into a {@link DataBufferByte}, which is what
+ * {@link ImagePreprocessor} reads without going through the color model, and the image no longer
+ * changes when the recorder overwrites the file.
+ */
+public final class MappedFrames {
+
+    private MappedFrames() {
+    }
+
+    /**
+     * Maps a file holding exactly one raw frame and copies the frame out of it.
+     *
+     * @throws IOException if the file can't be mapped or is smaller than one frame
+     */
+    public static BufferedImage map(Path file, int width, int height, RawFrameFormat format) throws IOException {
+        int frameSize = format.frameSize(width, height);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < frameSize) {
+                throw new IOException(file + " holds " + channel.size() + " bytes, expected " + frameSize);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, frameSize);
+            return read(buffer, width, height, format);
+        }
+    }
+
+    /**
+     * Copies the frame starting at the buffer's current position, without moving the position.
+     */
+    public static BufferedImage read(ByteBuffer frame, int width, int height, RawFrameFormat format) {
+        if (frame.remaining() < format.frameSize(width, height)) {
+            throw new IllegalArgumentException("Buffer holds " + frame.remaining() + " bytes, expected "
+                    + format.frameSize(width, height));
+        }
+        //only the pixels of the wrapped image, YUV chroma planes are left out
+        byte[] pixels = new byte[width * height * format.bytesPerPixel()];
+        frame.get(frame.position(), pixels);
+        return wrap(pixels, width, height, format);
+    }
+
+    /**
+     * Wraps pixels already in an array, without copying them.
+     */
+    static BufferedImage wrap(byte[] pixels, int width, int height, RawFrameFormat format) {
+        int pixelStride = format.bytesPerPixel();
+        PixelInterleavedSampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+                width, height, pixelStride, width * pixelStride, format.bandOffsets());
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new DataBufferByte(pixels, pixels.length), null);
+        ColorSpace colorSpace = ColorSpace.getInstance(format.isGray() ? ColorSpace.CS_GRAY : ColorSpace.CS_sRGB);
+        ComponentColorModel colorModel = new ComponentColorModel(colorSpace, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+}
@@ -0,0 +1,32 @@
+package com.cat.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Decorator that runs every frame through an {@link ImagePreprocessor} before handing it to the
+ * real image service, so only the downscaled region of interest is encoded and sent for recognition.
+ * Frames without a camera id use the settings of {@link ImageService#DEFAULT_CAMERA}. The
+ * preprocessed frame is reused for the camera's next one, so calls for the same camera wait for
+ * the delegate to finish with it.
+ */
+public class PreprocessingImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final ImagePreprocessor preprocessor;
+
+    public PreprocessingImageService(ImageService delegate, ImagePreprocessor preprocessor) {
+        this.delegate = delegate;
+        this.preprocessor = preprocessor;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(DEFAULT_CAMERA, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return preprocessor.process(cameraId, image,
+                preprocessed -> delegate.imageContainsCat(cameraId, preprocessed, confidenceThreshhold));
+    }
+}
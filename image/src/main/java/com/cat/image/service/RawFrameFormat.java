@@ -0,0 +1,52 @@
+package com.cat.image.service;
+
+/**
+ * Pixel layouts of the raw frames written by camera recorders. For the YUV formats only the
+ * full-resolution luma plane is exposed, as a gray image, which is what recognition needs and
+ * can be wrapped without converting.
+ */
+public enum RawFrameFormat {
+    RGB24(3, new int[]{0, 1, 2}),
+    BGR24(3, new int[]{2, 1, 0}),
+    GRAY8(1, new int[]{0}),
+    /** Planar Y, U, V with quarter-size chroma planes (I420) */
+    YUV420P(1, new int[]{0}),
+    /** Y plane followed by an interleaved quarter-size UV plane */
+    NV12(1, new int[]{0});
+
+    private final int bytesPerPixel;
+    private final int[] bandOffsets;
+
+    RawFrameFormat(int bytesPerPixel, int[] bandOffsets) {
+        this.bytesPerPixel = bytesPerPixel;
+        this.bandOffsets = bandOffsets;
+    }
+
+    /**
+     * @return Size in bytes of one complete frame, including chroma planes
+     */
+    public int frameSize(int width, int height) {
+        if (this == YUV420P || this == NV12) {
+            return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+        }
+        return width * height * bytesPerPixel;
+    }
+
+    /**
+     * @return Bytes per pixel of the wrapped image
+     */
+    int bytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    /**
+     * @return Offset of the red, green and blue (or gray) sample within a pixel
+     */
+    int[] bandOffsets() {
+        return bandOffsets.clone();
+    }
+
+    boolean isGray() {
+        return bandOffsets.length == 1;
+    }
+}
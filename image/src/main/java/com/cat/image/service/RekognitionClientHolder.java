@@ -0,0 +1,131 @@
+package com.cat.image.service;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Holds the single RekognitionClient shared by every AwsImageService. The client is built on first
+ * use from config.properties, so constructing an AwsImageService is cheap and a missing or incomplete
+ * configuration surfaces as an IllegalStateException at the first call instead of a NullPointerException.
+ *
+ * Every key may be overridden with a system property of the same name. Optional keys and their defaults:
+ *      aws.endpoint=[override endpoint, e.g. http://localhost:8089 for a local WireMock stand-in]
+ *      aws.maxConnections=50
+ *      aws.connectionTimeoutMillis=2000
+ *      aws.socketTimeoutMillis=5000
+ *      aws.connectionMaxIdleMillis=60000
+ *      aws.apiCallTimeoutMillis=10000
+ *      aws.apiCallAttemptTimeoutMillis=4000
+ *      aws.maxRetries=2
+ *      aws.retryBaseDelayMillis=100
+ *      aws.retryMaxBackoffMillis=2000
+ * When aws.endpoint is set, aws.id and aws.secret may be omitted and dummy credentials are used.
+ */
+final class RekognitionClientHolder {
+
+    private static final String CONFIG_FILE = "config.properties";
+
+    private static volatile RekognitionClient client;
+
+    private RekognitionClientHolder() {
+    }
+
+    /**
+     * Returns the shared client, building it on the first call.
+     * @throws IllegalStateException if the configuration is missing or incomplete
+     */
+    static RekognitionClient get() {
+        RekognitionClient result = client;
+        if (result == null) {
+            synchronized (RekognitionClientHolder.class) {
+                result = client;
+                if (result == null) {
+                    result = build(loadProperties());
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Properties loadProperties() {
+        Properties props = new Properties();
+        try (InputStream is = RekognitionClientHolder.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to read " + CONFIG_FILE, ioe);
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("aws.")) {
+                props.setProperty(key, System.getProperty(key));
+            }
+        }
+        return props;
+    }
+
+    private static RekognitionClient build(Properties props) {
+        String endpoint = props.getProperty("aws.endpoint");
+        String awsId = props.getProperty("aws.id", endpoint == null ? null : "local");
+        String awsSecret = props.getProperty("aws.secret", endpoint == null ? null : "local");
+        String awsRegion = props.getProperty("aws.region", endpoint == null ? null : "us-east-1");
+        if (awsId == null || awsSecret == null || awsRegion == null) {
+            throw new IllegalStateException("Unable to initialize AWS Rekognition, aws.id, aws.secret and aws.region must be set in "
+                    + CONFIG_FILE + " or as system properties");
+        }
+
+        ApacheHttpClient.Builder httpClient = ApacheHttpClient.builder()
+                .maxConnections(intProperty(props, "aws.maxConnections", 50))
+                .connectionTimeout(millisProperty(props, "aws.connectionTimeoutMillis", 2_000))
+                .socketTimeout(millisProperty(props, "aws.socketTimeoutMillis", 5_000))
+                .connectionMaxIdleTime(millisProperty(props, "aws.connectionMaxIdleMillis", 60_000))
+                .tcpKeepAlive(true)
+                .useIdleConnectionReaper(true);
+
+        RetryPolicy retryPolicy = RetryPolicy.builder()
+                .numRetries(intProperty(props, "aws.maxRetries", 2))
+                .backoffStrategy(FullJitterBackoffStrategy.builder()
+                        .baseDelay(millisProperty(props, "aws.retryBaseDelayMillis", 100))
+                        .maxBackoffTime(millisProperty(props, "aws.retryMaxBackoffMillis", 2_000))
+                        .build())
+                .build();
+
+        RekognitionClientBuilder builder = RekognitionClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(awsId, awsSecret)))
+                .region(Region.of(awsRegion))
+                .httpClientBuilder(httpClient)
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .apiCallTimeout(millisProperty(props, "aws.apiCallTimeoutMillis", 10_000))
+                        .apiCallAttemptTimeout(millisProperty(props, "aws.apiCallAttemptTimeoutMillis", 4_000))
+                        .retryPolicy(retryPolicy)
+                        .build());
+        if (endpoint != null) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static Duration millisProperty(Properties props, String key, long defaultMillis) {
+        String value = props.getProperty(key);
+        return Duration.ofMillis(value == null ? defaultMillis : Long.parseLong(value.trim()));
+    }
+}
@@ -0,0 +1,312 @@
+package com.cat.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorator that keeps a slow or failing image service from stalling the alarm path.
+ * Each call runs on its own virtual thread and is abandoned after the call timeout, so an abandoned
+ * call stuck in remote I/O doesn't hold on to a platform thread. Calls that fail,
+ * time out or take longer than the slow-call threshold count against a circuit breaker; once the
+ * failure rate over the last {@code windowSize} calls reaches the threshold the circuit opens and the
+ * delegate isn't called at all until the open duration has passed, after which a single trial call
+ * decides whether to close it again; calls that started before the circuit opened don't count
+ * once it has. A bulkhead caps the number of calls in flight, including ones that have been
+ * abandoned but are still running. Whenever the delegate can't answer, the
+ * {@link ImageServiceFallback} does. A caller interrupted while waiting gets the fallback's answer
+ * too, without counting against the delegate.
+ */
+public class ResilientImageService implements ImageService {
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Point-in-time copy of the counters kept by this service.
+     */
+    public record Metrics(CircuitState state, long calls, long successes, long failures, long timeouts,
+                          long interrupted, long slowCalls, long rejectedByCircuit, long rejectedByBulkhead,
+                          long fallbacks) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService delegate;
+    private final ImageServiceFallback fallback;
+    private final long callTimeoutNanos;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final float failureRateThreshold;
+    private final Semaphore bulkhead;
+    private final ExecutorService executor;
+
+    //circuit breaker state, guarded by this
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+    private CircuitState state = CircuitState.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private volatile boolean lastKnownResult;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder interrupted = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder rejectedByCircuit = new LongAdder();
+    private final LongAdder rejectedByBulkhead = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * Uses a 2 second call timeout, 1 second slow-call threshold, at most 4 concurrent calls, opens at a
+     * 50% failure rate over the last 10 calls and stays open for 30 seconds.
+     */
+    public ResilientImageService(ImageService delegate, ImageServiceFallback fallback) {
+        this(delegate, fallback, 4);
+    }
+
+    /**
+     * Same defaults as {@link #ResilientImageService(ImageService, ImageServiceFallback)}, with the given bulkhead size.
+     */
+    public ResilientImageService(ImageService delegate, ImageServiceFallback fallback, int maxConcurrentCalls) {
+        this(delegate, fallback, Duration.ofSeconds(2), Duration.ofSeconds(1), maxConcurrentCalls, 10, 0.5f, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param delegate The image service to protect
+     * @param fallback Answers when the delegate can't
+     * @param callTimeout How long a caller waits for the delegate
+     * @param slowCallThreshold Calls slower than this count as failures even though their result is used
+     * @param maxConcurrentCalls Bulkhead size
+     * @param windowSize Number of recent calls the failure rate is computed over
+     * @param failureRateThreshold Failure rate (0..1) at which the circuit opens
+     * @param openDuration How long the circuit stays open before a trial call is let through
+     */
+    public ResilientImageService(ImageService delegate, ImageServiceFallback fallback, Duration callTimeout,
+                                 Duration slowCallThreshold, int maxConcurrentCalls, int windowSize,
+                                 float failureRateThreshold, Duration openDuration) {
+        this(delegate, fallback, callTimeout, slowCallThreshold, maxConcurrentCalls, windowSize, failureRateThreshold,
+                openDuration, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("image-recognition-", 1).factory()));
+    }
+
+    /**
+     * @param executor Runs the calls to the delegate; shut down with this service
+     */
+    ResilientImageService(ImageService delegate, ImageServiceFallback fallback, Duration callTimeout,
+                          Duration slowCallThreshold, int maxConcurrentCalls, int windowSize,
+                          float failureRateThreshold, Duration openDuration, ExecutorService executor) {
+        if (maxConcurrentCalls < 1 || windowSize < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls and windowSize must be positive");
+        }
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.callTimeoutNanos = callTimeout.toNanos();
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.failureRateThreshold = failureRateThreshold;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.window = new boolean[windowSize];
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(DEFAULT_CAMERA, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        calls.increment();
+        boolean trial;
+        synchronized (this) {
+            trial = tryEnterCircuit();
+            if (!trial && state != CircuitState.CLOSED) {
+                rejectedByCircuit.increment();
+                return fallback(image, confidenceThreshhold);
+            }
+        }
+        if (!bulkhead.tryAcquire()) {
+            rejectedByBulkhead.increment();
+            if (trial) {
+                synchronized (this) {
+                    trialInFlight = false;
+                }
+            }
+            return fallback(image, confidenceThreshhold);
+        }
+
+        long start = System.nanoTime();
+        //the permit belongs to whichever side claims the call first: the task when it starts, or the caller
+        //when it gives up on a task that hasn't started, which a cancelled FutureTask never will
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return false;
+                }
+                try {
+                    return delegate.imageContainsCat(cameraId, image, confidenceThreshhold);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            recordOutcome(trial, true);
+            return fallback(image, confidenceThreshhold);
+        }
+
+        try {
+            boolean result = future.get(callTimeoutNanos, TimeUnit.NANOSECONDS);
+            boolean slow = System.nanoTime() - start > slowCallNanos;
+            if (slow) {
+                slowCalls.increment();
+            }
+            successes.increment();
+            lastKnownResult = result;
+            recordOutcome(trial, slow);
+            return result;
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            timeouts.increment();
+        } catch (ExecutionException e) {
+            failures.increment();
+            log.warn("Image recognition failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(future, claimed);
+            interrupted.increment();
+            //says nothing about the delegate, only frees the trial slot
+            if (trial) {
+                synchronized (this) {
+                    trialInFlight = false;
+                }
+            }
+            return fallback(image, confidenceThreshhold);
+        }
+        recordOutcome(trial, true);
+        return fallback(image, confidenceThreshhold);
+    }
+
+    /**
+     * Cancels a call the caller no longer waits for. A call that is already running keeps its permit
+     * until it returns; one that never started gives it back here.
+     */
+    private void abandon(Future<Boolean> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * @return The current breaker state and counters
+     */
+    public Metrics getMetrics() {
+        CircuitState currentState;
+        synchronized (this) {
+            currentState = state;
+        }
+        return new Metrics(currentState, calls.sum(), successes.sum(), failures.sum(), timeouts.sum(),
+                interrupted.sum(), slowCalls.sum(), rejectedByCircuit.sum(), rejectedByBulkhead.sum(), fallbacks.sum());
+    }
+
+    /**
+     * Stops the recognition threads. Calls made afterwards are answered by the fallback.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Moves an expired OPEN circuit to HALF_OPEN and claims its single trial call.
+     * @return true if the caller is the trial call
+     */
+    private boolean tryEnterCircuit() {
+        if (state == CircuitState.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transitionTo(CircuitState.HALF_OPEN);
+        }
+        if (state == CircuitState.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param trial Whether the call was the half-open trial; other calls only count while the circuit is closed
+     */
+    private synchronized void recordOutcome(boolean trial, boolean failed) {
+        if (trial) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                resetWindow();
+                transitionTo(CircuitState.CLOSED);
+            }
+            return;
+        }
+        if (state != CircuitState.CLOSED) {
+            return;
+        }
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+        if (windowCount == window.length && windowFailures >= failureRateThreshold * window.length) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        resetWindow();
+        transitionTo(CircuitState.OPEN);
+    }
+
+    private void resetWindow() {
+        windowPosition = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private void transitionTo(CircuitState newState) {
+        if (state != newState) {
+            log.warn("Image recognition circuit {} -> {}", state, newState);
+            state = newState;
+        }
+    }
+
+    private boolean fallback(BufferedImage image, float confidenceThreshhold) {
+        fallbacks.increment();
+        return fallback.imageContainsCat(image, confidenceThreshhold, lastKnownResult);
+    }
+}
@@ -0,0 +1,91 @@
+package com.cat.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Decorator that runs recognition calls for one backend on virtual threads. A blocked remote call
+ * parks its virtual thread instead of holding a platform thread, so thousands of calls can be in
+ * flight across cameras on a handful of carrier threads. A semaphore caps how many of them actually
+ * reach the backend at once; the rest wait for a permit. Use one instance per backend, and keep the
+ * limit no higher than the backend's connection pool (aws.maxConnections for AwsImageService).
+ */
+public class VirtualThreadImageService implements ImageService, AutoCloseable {
+
+    private final ImageService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final ExecutorService executor;
+
+    /**
+     * @param delegate The backend doing the blocking recognition
+     * @param maxConcurrentCalls How many calls may reach the backend at once
+     */
+    public VirtualThreadImageService(ImageService delegate, int maxConcurrentCalls) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be positive");
+        }
+        this.delegate = delegate;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("image-recognition-", 1).factory());
+    }
+
+    /**
+     * Calls the backend on the current thread once a permit is free.
+     * @throws IllegalStateException if interrupted while waiting for a permit
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(DEFAULT_CAMERA, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for image recognition", e);
+        }
+        try {
+            return delegate.imageContainsCat(cameraId, image, confidenceThreshhold);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Starts a recognition on a new virtual thread.
+     *
+     * @return Completes with the result, or exceptionally if the backend fails
+     */
+    public CompletableFuture<Boolean> submit(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return CompletableFuture.supplyAsync(() -> imageContainsCat(cameraId, image, confidenceThreshhold), executor);
+    }
+
+    /**
+     * @return Number of calls currently inside the backend
+     */
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * @return Approximate number of calls waiting for a permit
+     */
+    public int getWaitingCalls() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Stops accepting submissions and waits for the ones already running to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
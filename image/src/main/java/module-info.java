@@ -4,7 +4,13 @@ module image {
     requires org.slf4j;
     requires software.amazon.awssdk.auth;
     requires software.amazon.awssdk.core;
+    requires software.amazon.awssdk.http;
+    requires software.amazon.awssdk.http.apache;
     requires software.amazon.awssdk.regions;
     requires software.amazon.awssdk.services.rekognition;
     exports com.cat.image.service;
+    uses com.cat.image.service.ImageServiceProvider;
+    provides com.cat.image.service.ImageServiceProvider with
+            com.cat.image.service.FakeImageServiceProvider,
+            com.cat.image.service.AwsImageServiceProvider;
 }
\ No newline at end of file
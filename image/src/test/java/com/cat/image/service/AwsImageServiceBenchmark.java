@@ -0,0 +1,81 @@
+package com.cat.image.service;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Offline throughput benchmark for AwsImageService. Starts a WireMock stand-in for the Rekognition
+ * DetectLabels endpoint and points the shared client at it through the aws.endpoint system property.
+ *
+ * Arguments (all optional): [threads=8] [requestsPerThread=200] [stubLatencyMillis=20]
+ */
+public class AwsImageServiceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int requestsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+        WireMockServer server = new WireMockServer(options().dynamicPort().containerThreads(threads + 10));
+        server.start();
+        try {
+            server.stubFor(post(urlEqualTo("/"))
+                    .withHeader("X-Amz-Target", equalTo("RekognitionService.DetectLabels"))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withFixedDelay(latencyMillis)
+                            .withHeader("Content-Type", "application/x-amz-json-1.1")
+                            .withBody("{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":97.5}],\"LabelModelVersion\":\"3.0\"}")));
+            System.setProperty("aws.endpoint", "http://localhost:" + server.port());
+            System.setProperty("aws.maxConnections", Integer.toString(threads));
+
+            ImageService imageService = new AwsImageService();
+            BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+
+            //warm up the client, connection pool and JIT
+            for (int i = 0; i < 50; i++) {
+                imageService.imageContainsCat(image, 50.0f);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    int cats = 0;
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        if (imageService.imageContainsCat(image, 50.0f)) {
+                            cats++;
+                        }
+                    }
+                    return cats;
+                }));
+            }
+            int cats = 0;
+            for (Future<Integer> result : results) {
+                cats += result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+
+            int total = threads * requestsPerThread;
+            System.out.printf("%d recognitions (%d cats) on %d threads in %.2f s: %.1f req/s%n",
+                    total, cats, threads, seconds, total / seconds);
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.cat.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class FrameDirectoryWatcherTest {
+
+    private final BlockingQueue<Map.Entry<String, BufferedImage>> delivered = new LinkedBlockingQueue<>();
+
+    @Test
+    public void singleFrameFile_writtenOnce_deliveredOnceUntilRewritten(@TempDir Path directory) throws Exception {
+        try (FrameDirectoryWatcher watcher = new FrameDirectoryWatcher(directory, 2, 2, RawFrameFormat.GRAY8,
+                (cameraId, frame) -> delivered.add(Map.entry(cameraId, frame)))) {
+            watcher.start();
+            Path file = directory.resolve("garage.0001.raw");
+            Files.write(file, new byte[]{1, 2, 3, 4});
+
+            Map.Entry<String, BufferedImage> first = delivered.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(first);
+            Assertions.assertEquals("garage", first.getKey());
+            Assertions.assertEquals(4, first.getValue().getRaster().getSample(1, 1, 0));
+            //the create and modify events of the same write, or a later event without a change, bring nothing new
+            Assertions.assertNull(delivered.poll(300, TimeUnit.MILLISECONDS));
+
+            Files.write(file, new byte[]{5, 6, 7, 8});
+            Map.Entry<String, BufferedImage> second = delivered.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(second);
+            Assertions.assertEquals(8, second.getValue().getRaster().getSample(1, 1, 0));
+        }
+    }
+
+    @Test
+    public void ringFile_framesAppended_newestDeliveredOnce(@TempDir Path directory) throws Exception {
+        try (FrameRingFile ring = FrameRingFile.create(directory.resolve("porch.ring"), 2, 2, RawFrameFormat.GRAY8, 4);
+             FrameDirectoryWatcher watcher = new FrameDirectoryWatcher(directory, 640, 480, RawFrameFormat.RGB24,
+                     (cameraId, frame) -> delivered.add(Map.entry(cameraId, frame)))) {
+            watcher.start();
+            ring.append(ByteBuffer.wrap(new byte[]{9, 9, 9, 9}));
+
+            Map.Entry<String, BufferedImage> frame = delivered.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(frame);
+            Assertions.assertEquals("porch", frame.getKey());
+            Assertions.assertEquals(9, frame.getValue().getRaster().getSample(0, 0, 0));
+            Assertions.assertNull(delivered.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void ringFileCreatedBeforeItsHeader_deliveredOnceWrittenThroughTheMapping(@TempDir Path directory,
+                                                                                     @TempDir Path recorderDirectory) throws Exception {
+        Path finished = recorderDirectory.resolve("side.ring");
+        try (FrameRingFile ring = FrameRingFile.create(finished, 2, 2, RawFrameFormat.GRAY8, 2)) {
+            ring.append(ByteBuffer.wrap(new byte[]{6, 6, 6, 6}));
+        }
+        byte[] contents = Files.readAllBytes(finished);
+        try (FrameDirectoryWatcher watcher = new FrameDirectoryWatcher(directory, 640, 480, RawFrameFormat.RGB24,
+                (cameraId, frame) -> delivered.add(Map.entry(cameraId, frame)))) {
+            watcher.start();
+            //sized, but nothing written yet: the file events come and go before the ring can be opened
+            Path file = directory.resolve("side.ring");
+            Files.write(file, new byte[contents.length]);
+            Assertions.assertNull(delivered.poll(300, TimeUnit.MILLISECONDS));
+
+            //the recorder writes header and frame through its mapping, which raises no further events
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, contents.length).put(contents);
+            }
+
+            Map.Entry<String, BufferedImage> frame = delivered.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(frame);
+            Assertions.assertEquals("side", frame.getKey());
+            Assertions.assertEquals(6, frame.getValue().getRaster().getSample(1, 1, 0));
+        }
+    }
+
+    @Test
+    public void incompleteFile_skippedUntilComplete(@TempDir Path directory) throws Exception {
+        try (FrameDirectoryWatcher watcher = new FrameDirectoryWatcher(directory, 2, 2, RawFrameFormat.GRAY8,
+                (cameraId, frame) -> delivered.add(Map.entry(cameraId, frame)))) {
+            watcher.start();
+            Path file = directory.resolve("yard.raw");
+            Files.write(file, new byte[]{1, 2});
+            Assertions.assertNull(delivered.poll(300, TimeUnit.MILLISECONDS));
+
+            Files.write(file, new byte[]{1, 2, 3, 4});
+            Assertions.assertNotNull(delivered.poll(5, TimeUnit.SECONDS));
+        }
+    }
+}
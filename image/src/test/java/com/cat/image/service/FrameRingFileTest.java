@@ -0,0 +1,95 @@
+package com.cat.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class FrameRingFileTest {
+
+    @Test
+    public void append_moreFramesThanSlots_oldestOverwritten(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("front.ring");
+        try (FrameRingFile writer = FrameRingFile.create(file, 2, 2, RawFrameFormat.GRAY8, 3);
+             FrameRingFile reader = FrameRingFile.open(file)) {
+            Assertions.assertEquals(-1, reader.latestSequence());
+            Assertions.assertNull(reader.frame(0));
+
+            for (int i = 0; i < 5; i++) {
+                writer.append(filled(4, i));
+            }
+
+            Assertions.assertEquals(4, reader.latestSequence());
+            Assertions.assertEquals(4, reader.frame(4).getRaster().getSample(1, 1, 0));
+            Assertions.assertEquals(2, reader.frame(2).getRaster().getSample(0, 0, 0));
+            Assertions.assertNull(reader.frame(1));
+            Assertions.assertEquals(RawFrameFormat.GRAY8, reader.getFormat());
+            Assertions.assertEquals(2, reader.getWidth());
+        }
+    }
+
+    @Test
+    public void frame_slotReusedAfterCopy_copyKeepsPixels(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("front.ring");
+        try (FrameRingFile ring = FrameRingFile.create(file, 2, 2, RawFrameFormat.GRAY8, 1)) {
+            ring.append(filled(4, 7));
+            BufferedImage frame = ring.frame(0);
+
+            ring.append(filled(4, 8));
+
+            Assertions.assertEquals(7, frame.getRaster().getSample(0, 0, 0));
+            Assertions.assertNull(ring.frame(0));
+        }
+    }
+
+    @Test
+    public void frame_recorderWritingConcurrently_neverTorn(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("front.ring");
+        int size = 64;
+        try (FrameRingFile writer = FrameRingFile.create(file, size, size, RawFrameFormat.GRAY8, 2);
+             FrameRingFile reader = FrameRingFile.open(file)) {
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread recorder = new Thread(() -> {
+                for (int i = 0; !stop.get(); i++) {
+                    writer.append(filled(size * size, i & 0x7F));
+                }
+            });
+            recorder.start();
+            try {
+                long deadline = System.nanoTime() + 300_000_000L;
+                while (System.nanoTime() < deadline) {
+                    BufferedImage frame = reader.frame(reader.latestSequence());
+                    if (frame == null) {
+                        continue;
+                    }
+                    int first = frame.getRaster().getSample(0, 0, 0);
+                    Assertions.assertEquals(first, frame.getRaster().getSample(size - 1, size - 1, 0), "torn frame");
+                }
+            } finally {
+                stop.set(true);
+                recorder.join();
+            }
+        }
+    }
+
+    @Test
+    public void open_notARingFile_rejected(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("other.ring");
+        Files.write(file, new byte[64]);
+
+        Assertions.assertThrows(IOException.class, () -> FrameRingFile.open(file));
+    }
+
+    private static ByteBuffer filled(int size, int value) {
+        byte[] pixels = new byte[size];
+        Arrays.fill(pixels, (byte) value);
+        return ByteBuffer.wrap(pixels);
+    }
+}
@@ -0,0 +1,113 @@
+package com.cat.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ImagePreprocessorTest {
+
+    @Test
+    public void process_regionAndFactor_blocksAveragedWithinRegion() {
+        BufferedImage frame = new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                frame.setRGB(x, y, (x * 10) << 16 | (y * 10) << 8 | 0x40);
+            }
+        }
+        ImagePreprocessor preprocessor = new ImagePreprocessor(
+                new ImagePreprocessor.CameraSettings(new Rectangle(2, 2, 4, 4), 2));
+
+        BufferedImage out = preprocessor.process("front", frame);
+
+        Assertions.assertEquals(2, out.getWidth());
+        Assertions.assertEquals(2, out.getHeight());
+        //block x 2..3, y 2..3: red (20+30)/2, green (20+30)/2
+        Assertions.assertEquals(25 << 16 | 25 << 8 | 0x40, out.getRGB(0, 0) & 0xFFFFFF);
+        //block x 4..5, y 4..5
+        Assertions.assertEquals(45 << 16 | 45 << 8 | 0x40, out.getRGB(1, 1) & 0xFFFFFF);
+    }
+
+    @Test
+    public void process_byteAndIntFrames_sameResult() {
+        BufferedImage ints = new BufferedImage(16, 12, BufferedImage.TYPE_INT_RGB);
+        BufferedImage bytes = new BufferedImage(16, 12, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < ints.getHeight(); y++) {
+            for (int x = 0; x < ints.getWidth(); x++) {
+                int rgb = (x * 13) << 16 | (y * 17) << 8 | (x * y) & 0xFF;
+                ints.setRGB(x, y, rgb);
+                bytes.setRGB(x, y, rgb);
+            }
+        }
+        ImagePreprocessor preprocessor = new ImagePreprocessor(new ImagePreprocessor.CameraSettings(null, 4));
+
+        int[] fromInts = preprocessor.process("a", ints).getRGB(0, 0, 4, 3, null, 0, 4);
+        int[] fromBytes = preprocessor.process("b", bytes).getRGB(0, 0, 4, 3, null, 0, 4);
+
+        Assertions.assertArrayEquals(fromInts, fromBytes);
+    }
+
+    @Test
+    public void process_regionOutsideFrame_rejected() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(new ImagePreprocessor.CameraSettings(null, 1));
+        preprocessor.setCameraSettings("side", new ImagePreprocessor.CameraSettings(new Rectangle(700, 500, 100, 100), 1));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> preprocessor.process("side", new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ImagePreprocessor.CameraSettings(new Rectangle(10, 10, 0, 5), 1));
+    }
+
+    @Test
+    public void preprocessingImageService_delegateStillUsingFrame_nextFrameOfCameraWaits() throws Exception {
+        CountDownLatch firstCallEntered = new CountDownLatch(1);
+        CountDownLatch releaseFirstCall = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ImageService delegate = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                int pixel = image.getRGB(0, 0);
+                if (calls.getAndIncrement() == 0) {
+                    firstCallEntered.countDown();
+                    try {
+                        releaseFirstCall.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                //a cat is a frame still showing the pixel it had on entry
+                return image.getRGB(0, 0) == pixel;
+            }
+        };
+        ImageService service = new PreprocessingImageService(delegate,
+                new ImagePreprocessor(new ImagePreprocessor.CameraSettings(null, 1)));
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(
+                () -> service.imageContainsCat("front", filled(0x112233), 50.0f));
+        Assertions.assertTrue(firstCallEntered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(
+                () -> service.imageContainsCat("front", filled(0x445566), 50.0f));
+        Thread.sleep(100);
+        Assertions.assertFalse(second.isDone());
+        releaseFirstCall.countDown();
+
+        Assertions.assertTrue(first.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(second.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    private static BufferedImage filled(int rgb) {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+}
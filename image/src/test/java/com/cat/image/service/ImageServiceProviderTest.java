@@ -0,0 +1,18 @@
+package com.cat.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+class ImageServiceProviderTest {
+
+    @Test
+    public void open_selectedByConfiguration_fakeByDefault() {
+        Properties config = new Properties();
+        Assertions.assertInstanceOf(FakeImageService.class, ImageServiceProvider.open(config));
+
+        config.setProperty(ImageServiceProvider.PROVIDER_PROPERTY, "missing");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ImageServiceProvider.open(config));
+    }
+}
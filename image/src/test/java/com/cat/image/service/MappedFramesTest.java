@@ -0,0 +1,64 @@
+package com.cat.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class MappedFramesTest {
+
+    @Test
+    public void map_rgbAndBgrFiles_samePixels(@TempDir Path directory) throws IOException {
+        Path rgb = directory.resolve("rgb.raw");
+        Path bgr = directory.resolve("bgr.raw");
+        Files.write(rgb, new byte[]{10, 20, 30, 40, 50, 60});
+        Files.write(bgr, new byte[]{30, 20, 10, 60, 50, 40});
+
+        BufferedImage fromRgb = MappedFrames.map(rgb, 2, 1, RawFrameFormat.RGB24);
+        BufferedImage fromBgr = MappedFrames.map(bgr, 2, 1, RawFrameFormat.BGR24);
+
+        Assertions.assertEquals(0x0A141E, fromRgb.getRGB(0, 0) & 0xFFFFFF);
+        Assertions.assertEquals(0x28323C, fromRgb.getRGB(1, 0) & 0xFFFFFF);
+        Assertions.assertEquals(fromRgb.getRGB(0, 0), fromBgr.getRGB(0, 0));
+        Assertions.assertEquals(fromRgb.getRGB(1, 0), fromBgr.getRGB(1, 0));
+        Assertions.assertInstanceOf(DataBufferByte.class, fromRgb.getRaster().getDataBuffer());
+    }
+
+    @Test
+    public void map_fileRewrittenAfterwards_imageKeepsPixels(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("front.raw");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        BufferedImage frame = MappedFrames.map(file, 2, 2, RawFrameFormat.GRAY8);
+
+        Files.write(file, new byte[]{9, 9, 9, 9});
+
+        Assertions.assertEquals(4, frame.getRaster().getSample(1, 1, 0));
+    }
+
+    @Test
+    public void read_yuvFrame_lumaPlaneAsGray() {
+        //2x2 luma followed by one U and one V sample
+        ByteBuffer frame = ByteBuffer.wrap(new byte[]{0, 0, 100, (byte) 200, 77, 88, 99});
+        frame.position(1);
+
+        BufferedImage image = MappedFrames.read(frame.slice(), 2, 2, RawFrameFormat.YUV420P);
+
+        Assertions.assertEquals(0, image.getRaster().getSample(0, 0, 0));
+        Assertions.assertEquals(200, image.getRaster().getSample(0, 1, 0));
+        Assertions.assertEquals(1, image.getRaster().getNumBands());
+    }
+
+    @Test
+    public void map_fileShorterThanFrame_rejected(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("short.raw");
+        Files.write(file, new byte[5]);
+
+        Assertions.assertThrows(IOException.class, () -> MappedFrames.map(file, 2, 1, RawFrameFormat.RGB24));
+    }
+}
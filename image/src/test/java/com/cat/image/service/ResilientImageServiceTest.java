@@ -0,0 +1,198 @@
+package com.cat.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ResilientImageServiceTest {
+
+    private static final BufferedImage FRAME = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private static final Duration OPEN_DURATION = Duration.ofMillis(100);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch releaseTrial = new CountDownLatch(1);
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    //the camera id says how the backend behaves: "cat", "fail", "blocked-cat", "blocked-fail", "trial-cat" or "hang"
+    private final ImageService backend = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            throw new UnsupportedOperationException("camera id expected");
+        }
+
+        @Override
+        public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+            delegateCalls.incrementAndGet();
+            try {
+                if (cameraId.startsWith("blocked")) {
+                    release.await();
+                } else if (cameraId.startsWith("trial")) {
+                    releaseTrial.await();
+                } else if (cameraId.equals("hang")) {
+                    Thread.sleep(10_000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted", e);
+            }
+            if (cameraId.endsWith("fail")) {
+                throw new IllegalStateException("backend down");
+            }
+            return true;
+        }
+    };
+    private ResilientImageService service;
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        releaseTrial.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    public void failureRateReached_circuitOpensThenTrialClosesIt() throws InterruptedException {
+        service = create(4);
+
+        Assertions.assertTrue(call("cat"));
+        Assertions.assertTrue(call("cat"));
+        Assertions.assertFalse(call("fail"));
+        Assertions.assertFalse(call("fail"));
+        Assertions.assertEquals(ResilientImageService.CircuitState.OPEN, service.getMetrics().state());
+
+        //while open, the fallback answers without asking the backend
+        int callsBefore = delegateCalls.get();
+        Assertions.assertFalse(call("cat"));
+        Assertions.assertEquals(callsBefore, delegateCalls.get());
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        Assertions.assertFalse(call("fail"));
+        Assertions.assertEquals(ResilientImageService.CircuitState.OPEN, service.getMetrics().state());
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        Assertions.assertTrue(call("cat"));
+        ResilientImageService.Metrics metrics = service.getMetrics();
+        Assertions.assertEquals(ResilientImageService.CircuitState.CLOSED, metrics.state());
+        Assertions.assertEquals(7, metrics.calls());
+        Assertions.assertEquals(3, metrics.successes());
+        Assertions.assertEquals(3, metrics.failures());
+        Assertions.assertEquals(1, metrics.rejectedByCircuit());
+        Assertions.assertEquals(4, metrics.fallbacks());
+    }
+
+    @Test
+    public void bulkheadFull_fallbackAnswersRightAway() throws Exception {
+        service = create(1);
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> call("blocked-cat"));
+        while (delegateCalls.get() == 0) {
+            Thread.onSpinWait();
+        }
+
+        Assertions.assertFalse(call("cat"));
+        Assertions.assertEquals(1, service.getMetrics().rejectedByBulkhead());
+        release.countDown();
+        Assertions.assertTrue(first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, delegateCalls.get());
+    }
+
+    @Test
+    public void callTimesOut_countedAndFallbackAnswers() {
+        service = new ResilientImageService(backend, (image, threshold, last) -> false, Duration.ofMillis(50),
+                Duration.ofMillis(40), 2, 4, 0.5f, OPEN_DURATION);
+
+        Assertions.assertFalse(call("hang"));
+
+        ResilientImageService.Metrics metrics = service.getMetrics();
+        Assertions.assertEquals(1, metrics.timeouts());
+        Assertions.assertEquals(1, metrics.fallbacks());
+        Assertions.assertEquals(0, metrics.successes());
+    }
+
+    @Test
+    public void callerInterrupted_countedWithoutBlamingTheBackend() throws Exception {
+        service = create(2);
+        Thread caller = new Thread(() -> call("blocked-cat"));
+        caller.start();
+        while (delegateCalls.get() == 0) {
+            Thread.onSpinWait();
+        }
+
+        caller.interrupt();
+        caller.join(5_000);
+
+        ResilientImageService.Metrics metrics = service.getMetrics();
+        Assertions.assertEquals(1, metrics.interrupted());
+        Assertions.assertEquals(1, metrics.fallbacks());
+        Assertions.assertEquals(0, metrics.failures());
+        Assertions.assertEquals(ResilientImageService.CircuitState.CLOSED, metrics.state());
+    }
+
+    @Test
+    public void callFromBeforeOpeningEndsDuringHalfOpen_notTakenForTheTrial() throws Exception {
+        service = create(4);
+        //started while closed, fails only once the circuit is half open
+        CompletableFuture<Boolean> late = CompletableFuture.supplyAsync(() -> call("blocked-fail"));
+        while (delegateCalls.get() == 0) {
+            Thread.onSpinWait();
+        }
+        for (int i = 0; i < 4; i++) {
+            call("fail");
+        }
+        Assertions.assertEquals(ResilientImageService.CircuitState.OPEN, service.getMetrics().state());
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        Thread trial = new Thread(() -> call("trial-cat"));
+        trial.start();
+        while (service.getMetrics().state() != ResilientImageService.CircuitState.HALF_OPEN) {
+            Thread.onSpinWait();
+        }
+
+        release.countDown();
+        Assertions.assertFalse(late.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(ResilientImageService.CircuitState.HALF_OPEN, service.getMetrics().state());
+        releaseTrial.countDown();
+        trial.join(5_000);
+
+        Assertions.assertEquals(ResilientImageService.CircuitState.CLOSED, service.getMetrics().state());
+    }
+
+    @Test
+    public void queuedCallTimesOutBeforeStarting_permitGivenBack() throws Exception {
+        //a single thread kept busy, so the call is still queued when its caller gives up on it
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.submit(() -> {
+            busy.countDown();
+            release.await();
+            return null;
+        });
+        busy.await();
+        service = new ResilientImageService(backend, (image, threshold, last) -> false, Duration.ofMillis(200),
+                Duration.ofSeconds(5), 1, 4, 0.5f, OPEN_DURATION, executor);
+
+        Assertions.assertFalse(call("cat"));
+        Assertions.assertEquals(1, service.getMetrics().timeouts());
+        release.countDown();
+
+        Assertions.assertTrue(call("cat"));
+        Assertions.assertEquals(0, service.getMetrics().rejectedByBulkhead());
+        //the cancelled call never reached the backend
+        Assertions.assertEquals(1, delegateCalls.get());
+    }
+
+    private ResilientImageService create(int maxConcurrentCalls) {
+        return new ResilientImageService(backend, (image, threshold, last) -> false, Duration.ofSeconds(5),
+                Duration.ofSeconds(5), maxConcurrentCalls, 4, 0.5f, OPEN_DURATION);
+    }
+
+    private boolean call(String behaviour) {
+        return service.imageContainsCat(behaviour, FRAME, 50.0f);
+    }
+}
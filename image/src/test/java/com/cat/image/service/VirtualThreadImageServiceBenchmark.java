@@ -0,0 +1,109 @@
+package com.cat.image.service;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Offline benchmark comparing ways of keeping many recognitions in flight against a WireMock stand-in
+ * for the Rekognition DetectLabels endpoint: a platform thread per in-flight call, and a virtual
+ * thread per call behind a VirtualThreadImageService limited to the connection pool size. Reports
+ * throughput and the peak number of live threads for each.
+ *
+ * Arguments (all optional): [inFlight=2000] [maxConnections=50] [stubLatencyMillis=50]
+ */
+public class VirtualThreadImageServiceBenchmark {
+
+    private static final float THRESHOLD = 50.0f;
+
+    public static void main(String[] args) throws Exception {
+        int inFlight = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int maxConnections = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+        WireMockServer server = new WireMockServer(options().dynamicPort().containerThreads(maxConnections + 10));
+        server.start();
+        try {
+            server.stubFor(post(urlEqualTo("/"))
+                    .withHeader("X-Amz-Target", equalTo("RekognitionService.DetectLabels"))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withFixedDelay(latencyMillis)
+                            .withHeader("Content-Type", "application/x-amz-json-1.1")
+                            .withBody("{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":97.5}],\"LabelModelVersion\":\"3.0\"}")));
+            System.setProperty("aws.endpoint", "http://localhost:" + server.port());
+            System.setProperty("aws.maxConnections", Integer.toString(maxConnections));
+
+            ImageService backend = new AwsImageService();
+            BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+
+            //warm up the client, connection pool and JIT
+            for (int i = 0; i < 50; i++) {
+                backend.imageContainsCat(image, THRESHOLD);
+            }
+
+            System.out.printf("%d recognitions in flight, %d connections, %d ms stub latency%n",
+                    inFlight, maxConnections, latencyMillis);
+            platformThreads(backend, image, inFlight);
+            virtualThreads(backend, image, inFlight, maxConnections);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void platformThreads(ImageService backend, BufferedImage image, int inFlight) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        ExecutorService executor = Executors.newFixedThreadPool(inFlight);
+        long start = System.nanoTime();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < inFlight; i++) {
+            results.add(executor.submit(() -> backend.imageContainsCat(image, THRESHOLD)));
+        }
+        int cats = 0;
+        for (Future<Boolean> result : results) {
+            cats += result.get() ? 1 : 0;
+        }
+        report("platform thread per call", inFlight, cats, start, threads.getPeakThreadCount());
+        executor.shutdown();
+    }
+
+    private static void virtualThreads(ImageService backend, BufferedImage image, int inFlight, int maxConnections) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        try (VirtualThreadImageService imageService = new VirtualThreadImageService(backend, maxConnections)) {
+            long start = System.nanoTime();
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < inFlight; i++) {
+                results.add(imageService.submit("camera-" + i, image, THRESHOLD));
+            }
+            int cats = 0;
+            for (CompletableFuture<Boolean> result : results) {
+                cats += result.join() ? 1 : 0;
+            }
+            //virtual threads aren't counted by ThreadMXBean, so this is carriers plus everything else
+            report("virtual threads, " + maxConnections + " permits", inFlight, cats, start, threads.getPeakThreadCount());
+        }
+    }
+
+    private static void report(String mode, int total, int cats, long start, int peakThreads) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-30s %d (%d cats) in %.2f s: %8.1f req/s, peak %d platform threads%n",
+                mode, total, cats, seconds, total / seconds, peakThreads);
+    }
+}
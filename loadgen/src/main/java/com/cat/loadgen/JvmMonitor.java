@@ -0,0 +1,101 @@
+package com.cat.loadgen;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows garbage collections and heap use while a run is in progress. Every stop-the-world collection
+ * is recorded with its duration and the heap left in use after it, which over a soak run shows both
+ * pause times and whether the live set keeps growing. Collectors that report whole concurrent cycles,
+ * such as "G1 Concurrent GC" or "ZGC Cycles", are left out since their durations aren't pauses.
+ */
+class JvmMonitor implements AutoCloseable {
+
+    /**
+     * Collections and heap use over one interval.
+     *
+     * @param collections Number of collections
+     * @param totalPauseMillis Summed collection durations
+     * @param maxPauseMillis Longest collection
+     * @param heapUsed Heap in use at the end of the interval
+     * @param heapCommitted Heap committed at the end of the interval
+     * @param heapAfterLastGc Heap in use after the last collection, or -1 if there was none
+     */
+    record Interval(long collections, long totalPauseMillis, long maxPauseMillis, long heapUsed, long heapCommitted,
+                    long heapAfterLastGc) {
+    }
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::handleNotification;
+
+    //guarded by this
+    private long collections;
+    private long totalPauseMillis;
+    private long maxPauseMillis;
+    private long heapAfterLastGc = -1;
+
+    JvmMonitor() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = collector.getName();
+            if (name.contains("Concurrent") || name.contains("Cycles")) {
+                continue;
+            }
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = info.getGcInfo().getMemoryUsageAfterGc().values().stream().mapToLong(MemoryUsage::getUsed).sum();
+        long duration = info.getGcInfo().getDuration();
+        synchronized (this) {
+            collections++;
+            totalPauseMillis += duration;
+            maxPauseMillis = Math.max(maxPauseMillis, duration);
+            heapAfterLastGc = used;
+        }
+    }
+
+    /**
+     * Returns what happened since the last call and starts a new interval.
+     */
+    synchronized Interval nextInterval() {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        Interval interval = new Interval(collections, totalPauseMillis, maxPauseMillis, heap.getUsed(),
+                heap.getCommitted(), heapAfterLastGc);
+        collections = 0;
+        totalPauseMillis = 0;
+        maxPauseMillis = 0;
+        heapAfterLastGc = -1;
+        return interval;
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                //already removed
+            }
+        }
+    }
+}
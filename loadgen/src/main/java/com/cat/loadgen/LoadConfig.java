@@ -0,0 +1,93 @@
+package com.cat.loadgen;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings of a load run. Each component is given on the command line as {@code --name=value};
+ * durations take a number followed by ms, s, m or h.
+ *
+ * @param premises Number of independent installations, each with its own SecurityService and repository
+ * @param sensorsPerPremises Sensors per installation
+ * @param camerasPerPremises Cameras per installation
+ * @param sensorEventsPerSecond Mean sensor changes per second per installation; arrivals are Poisson
+ * @param sensorSkew Zipf exponent of how busy sensors are, 0 for all alike; the first sensor is the busiest
+ * @param framesPerSecond Frames per second per camera
+ * @param armingChangesPerHour Mean arming status changes per hour per installation
+ * @param imageLatency Median latency of the stub image service
+ * @param imageLatencySpread Log-normal sigma of the stub latency, 0 for a fixed latency
+ * @param catProbability Chance that the stub sees a cat in a frame
+ * @param warmup Time run before measuring starts
+ * @param duration Measured time
+ * @param reportInterval Time between progress reports
+ */
+public record LoadConfig(int premises, int sensorsPerPremises, int camerasPerPremises, double sensorEventsPerSecond,
+                         double sensorSkew, double framesPerSecond, double armingChangesPerHour,
+                         Duration imageLatency, double imageLatencySpread, double catProbability,
+                         Duration warmup, Duration duration, Duration reportInterval) {
+
+    private static final Set<String> OPTIONS = Set.of("premises", "sensorsPerPremises", "camerasPerPremises",
+            "sensorEventsPerSecond", "sensorSkew", "framesPerSecond", "armingChangesPerHour", "imageLatency", "imageLatencySpread",
+            "catProbability", "warmup", "duration", "reportInterval");
+
+    public LoadConfig {
+        if (premises < 1 || sensorsPerPremises < 1 || camerasPerPremises < 0) {
+            throw new IllegalArgumentException("Need at least one premises with one sensor");
+        }
+        if (sensorEventsPerSecond <= 0 || framesPerSecond < 0 || armingChangesPerHour < 0) {
+            throw new IllegalArgumentException("Rates must not be negative, and sensor events must happen");
+        }
+        if (catProbability < 0 || catProbability > 1) {
+            throw new IllegalArgumentException("catProbability must be between 0 and 1");
+        }
+    }
+
+    /**
+     * Reads the options given on the command line; anything not given keeps its default.
+     *
+     * @throws IllegalArgumentException for unknown options or values that don't parse
+     */
+    public static LoadConfig parse(String... args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0 || !OPTIONS.contains(arg.substring(2, eq))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected --name=value with name one of " + OPTIONS);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return new LoadConfig(
+                Integer.parseInt(options.getOrDefault("premises", "50")),
+                Integer.parseInt(options.getOrDefault("sensorsPerPremises", "32")),
+                Integer.parseInt(options.getOrDefault("camerasPerPremises", "2")),
+                Double.parseDouble(options.getOrDefault("sensorEventsPerSecond", "5")),
+                Double.parseDouble(options.getOrDefault("sensorSkew", "1.0")),
+                Double.parseDouble(options.getOrDefault("framesPerSecond", "2")),
+                Double.parseDouble(options.getOrDefault("armingChangesPerHour", "60")),
+                parseDuration(options.getOrDefault("imageLatency", "100ms")),
+                Double.parseDouble(options.getOrDefault("imageLatencySpread", "0.5")),
+                Double.parseDouble(options.getOrDefault("catProbability", "0.05")),
+                parseDuration(options.getOrDefault("warmup", "10s")),
+                parseDuration(options.getOrDefault("duration", "60s")),
+                parseDuration(options.getOrDefault("reportInterval", "5s")));
+    }
+
+    static Duration parseDuration(String value) {
+        String unit = value.replaceAll("^[0-9]+", "");
+        long amount;
+        try {
+            amount = Long.parseLong(value.substring(0, value.length() - unit.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration " + value);
+        }
+        return switch (unit) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Invalid duration " + value + ", expected a unit of ms, s, m or h");
+        };
+    }
+}
@@ -0,0 +1,196 @@
+package com.cat.loadgen;
+
+import com.cat.image.service.ImageService;
+import com.cat.security.service.EventScheduler;
+import com.cat.security.service.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Drives many simulated installations ({@link Premises}) at once against the real SecurityService,
+ * PretendDatabaseSecurityRepositoryImpl and a stub image service with realistic latency, and reports
+ * throughput, latency percentiles, GC pauses and heap use every report interval and for the whole run.
+ * Run with {@code --name=value} options as described in {@link LoadConfig}, e.g. a soak run:
+ * <pre>
+ *     java -jar loadgen-1.0-SNAPSHOT-jar-with-dependencies.jar --premises=200 --duration=8h --reportInterval=1m
+ * </pre>
+ * Each installation is stored in its own preferences node, which is removed at the end of the run.
+ */
+public class LoadGenerator {
+
+    /**
+     * Latencies recorded by every premises, in microseconds, and events no lane had room for.
+     */
+    static class Metrics {
+        final LatencyHistogram sensorLatency = new LatencyHistogram();
+        final LatencyHistogram armingLatency = new LatencyHistogram();
+        final LatencyHistogram imageLatency = new LatencyHistogram();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    public static void main(String[] args) throws InterruptedException, BackingStoreException {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println(config);
+        new LoadGenerator().run(config);
+    }
+
+    void run(LoadConfig config) throws InterruptedException, BackingStoreException {
+        Metrics metrics = new Metrics();
+        ImageService imageService = new StubImageService(config.imageLatency(), config.imageLatencySpread(),
+                config.catProbability());
+        Preferences storage = Preferences.userNodeForPackage(LoadGenerator.class)
+                .node("run-" + ProcessHandle.current().pid());
+        List<Premises> premises = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try (JvmMonitor jvm = new JvmMonitor()) {
+            long setupStart = System.nanoTime();
+            for (int i = 0; i < config.premises(); i++) {
+                premises.add(new Premises(i, config, imageService, metrics, storage.node("premises-" + i)));
+            }
+            System.out.printf("Set up %d premises with %d sensors and %d cameras each in %d ms%n", config.premises(),
+                    config.sensorsPerPremises(), config.camerasPerPremises(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - setupStart));
+
+            //premises spend most of their time waiting for the next event, so a virtual thread each is plenty
+            for (Premises p : premises) {
+                threads.add(Thread.ofVirtual().name("premises-", threads.size()).start(p));
+            }
+            report(config, metrics, jvm);
+        } finally {
+            premises.forEach(Premises::stop);
+            //wakes premises waiting for an event that is far off
+            threads.forEach(Thread::interrupt);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            premises.forEach(Premises::close);
+            storage.removeNode();
+        }
+        reportLanes(premises, metrics);
+    }
+
+    /**
+     * Prints the scheduler counts of every lane, summed over the premises, for the whole run including warmup.
+     */
+    private void reportLanes(List<Premises> premises, Metrics metrics) {
+        System.out.printf("  %d events dropped by full lanes%n", metrics.dropped.sum());
+        for (EventScheduler.Lane lane : EventScheduler.Lane.values()) {
+            long completed = 0;
+            long rejected = 0;
+            long misses = 0;
+            int maxQueued = 0;
+            for (Premises p : premises) {
+                EventScheduler.LaneMetrics laneMetrics = p.getScheduler().getMetrics(lane);
+                completed += laneMetrics.completed();
+                rejected += laneMetrics.rejected();
+                misses += laneMetrics.latencyObjectiveMisses();
+                maxQueued = Math.max(maxQueued, laneMetrics.maxQueued());
+            }
+            System.out.printf("  lane %-12s %d run, %d rejected, %d over %d ms, at most %d queued%n", lane.name().toLowerCase(),
+                    completed, rejected, misses, lane.getDefaults().latencyObjective().toMillis(), maxQueued);
+        }
+    }
+
+    private void report(LoadConfig config, Metrics metrics, JvmMonitor jvm) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+        long interval = config.reportInterval().toNanos();
+
+        LatencyHistogram.Snapshot sensorTotal = new LatencyHistogram.Snapshot();
+        LatencyHistogram.Snapshot armingTotal = new LatencyHistogram.Snapshot();
+        LatencyHistogram.Snapshot imageTotal = new LatencyHistogram.Snapshot();
+        long collections = 0;
+        long pauseMillis = 0;
+        long maxPauseMillis = 0;
+        long minLiveHeap = Long.MAX_VALUE;
+        long maxLiveHeap = 0;
+        boolean measuring = measureFrom <= start;
+
+        long last = start;
+        while (last < end) {
+            long next = Math.min(last + interval, end);
+            if (!measuring && next > measureFrom) {
+                //end the warmup interval on time so everything after it is measured
+                next = measureFrom;
+            }
+            TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+            long now = System.nanoTime();
+            double seconds = (now - last) / 1e9;
+            last = now;
+
+            LatencyHistogram.Snapshot sensors = new LatencyHistogram.Snapshot();
+            LatencyHistogram.Snapshot arming = new LatencyHistogram.Snapshot();
+            LatencyHistogram.Snapshot images = new LatencyHistogram.Snapshot();
+            metrics.sensorLatency.drainTo(sensors);
+            metrics.armingLatency.drainTo(arming);
+            metrics.imageLatency.drainTo(images);
+            JvmMonitor.Interval gc = jvm.nextInterval();
+
+            System.out.printf("%s %s | %s | %s | %s%n",
+                    measuring ? String.format("%7s", elapsed(now - measureFrom)) : " warmup",
+                    latency("sensor", sensors, seconds), latency("arming", arming, seconds),
+                    latency("image", images, seconds), gc(gc));
+
+            if (measuring) {
+                sensorTotal.add(sensors);
+                armingTotal.add(arming);
+                imageTotal.add(images);
+                collections += gc.collections();
+                pauseMillis += gc.totalPauseMillis();
+                maxPauseMillis = Math.max(maxPauseMillis, gc.maxPauseMillis());
+                if (gc.heapAfterLastGc() >= 0) {
+                    minLiveHeap = Math.min(minLiveHeap, gc.heapAfterLastGc());
+                    maxLiveHeap = Math.max(maxLiveHeap, gc.heapAfterLastGc());
+                }
+            }
+            measuring = now >= measureFrom;
+        }
+
+        double seconds = config.duration().toNanos() / 1e9;
+        System.out.printf("%nTotal over %s%n", elapsed(config.duration().toNanos()));
+        System.out.println("  " + latency("sensor", sensorTotal, seconds));
+        System.out.println("  " + latency("arming", armingTotal, seconds));
+        System.out.println("  " + latency("image", imageTotal, seconds));
+        System.out.printf("  gc %d collections, %d ms paused (%.2f%%), longest %d ms%n", collections, pauseMillis,
+                pauseMillis / 10.0 / seconds, maxPauseMillis);
+        if (maxLiveHeap > 0) {
+            System.out.printf("  heap after gc between %d and %d MB%n", minLiveHeap >> 20, maxLiveHeap >> 20);
+        }
+    }
+
+    private static String latency(String name, LatencyHistogram.Snapshot snapshot, double seconds) {
+        return String.format("%s %8.1f/s p50 %s p99 %s p99.9 %s max %s", name, snapshot.count() / seconds,
+                millis(snapshot.percentile(50)), millis(snapshot.percentile(99)), millis(snapshot.percentile(99.9)),
+                millis(snapshot.percentile(100)));
+    }
+
+    private static String gc(JvmMonitor.Interval gc) {
+        return String.format("gc %d (%d ms, max %d ms) heap %d/%d MB", gc.collections(), gc.totalPauseMillis(),
+                gc.maxPauseMillis(), gc.heapUsed() >> 20, gc.heapCommitted() >> 20);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%7.2fms", micros / 1000.0);
+    }
+
+    private static String elapsed(long nanos) {
+        Duration duration = Duration.ofNanos(nanos);
+        return duration.toHours() > 0
+                ? String.format("%dh%02dm", duration.toHours(), duration.toMinutesPart())
+                : String.format("%dm%02ds", duration.toMinutes(), duration.toSecondsPart());
+    }
+}
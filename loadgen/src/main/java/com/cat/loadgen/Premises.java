@@ -0,0 +1,167 @@
+package com.cat.loadgen;
+
+import com.cat.data.ArmingStatus;
+import com.cat.data.PretendDatabaseSecurityRepositoryImpl;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import com.cat.image.service.ImageService;
+import com.cat.security.service.EventScheduler;
+import com.cat.security.service.SecurityService;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.Preferences;
+
+/**
+ * One simulated installation: a SecurityService over its own repository, owned by an EventScheduler
+ * so sensor events are handled ahead of queued image work. Sensor changes and arming changes arrive
+ * as Poisson processes, with some sensors (the front door) much busier than others; every camera sends
+ * frames at a fixed rate. A generator thread hands each event to its lane when it is due; recognition
+ * results come back through the image lane.
+ *
+ * Latencies are measured from when an event was due, not from when the scheduler got round to it, so
+ * time spent queued behind earlier events counts. Events a full lane rejects are counted as dropped.
+ */
+class Premises implements Runnable {
+
+    //every frame is the same image; the stub image service doesn't look at it
+    private static final BufferedImage FRAME = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private final LoadConfig config;
+    private final LoadGenerator.Metrics metrics;
+    private final SecurityService securityService;
+    private final List<Sensor> sensors = new ArrayList<>();
+    //cumulative Zipf weights of the sensors, normalized to end at 1
+    private final double[] sensorWeights;
+    private final EventScheduler scheduler;
+    private final Random random;
+    private final long frameIntervalNanos;
+    private long frames;
+
+    private volatile boolean running = true;
+
+    Premises(int number, LoadConfig config, ImageService imageService, LoadGenerator.Metrics metrics, Preferences storage) {
+        this.config = config;
+        this.metrics = metrics;
+        this.random = new Random(number);
+        this.securityService = new SecurityService(new PretendDatabaseSecurityRepositoryImpl(storage), imageService);
+        scheduler = new EventScheduler(Thread.ofVirtual().name("premises-" + number + "-events").factory(), Map.of());
+        securityService.setResultExecutor(scheduler.executor(EventScheduler.Lane.IMAGE));
+
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < config.sensorsPerPremises(); i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        sensorWeights = new double[sensors.size()];
+        double sum = 0;
+        for (int i = 0; i < sensorWeights.length; i++) {
+            sum += 1 / Math.pow(i + 1, config.sensorSkew());
+            sensorWeights[i] = sum;
+        }
+        for (int i = 0; i < sensorWeights.length; i++) {
+            sensorWeights[i] /= sum;
+        }
+        double framesPerSecond = config.framesPerSecond() * config.camerasPerPremises();
+        frameIntervalNanos = framesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        long nextSensorEvent = after(now, arrival(config.sensorEventsPerSecond()));
+        long nextArmingChange = after(now, arrival(config.armingChangesPerHour() / 3600));
+        //cameras of different premises don't start in step
+        long nextFrame = after(now, frameIntervalNanos == Long.MAX_VALUE
+                ? Long.MAX_VALUE : (long) (random.nextDouble() * frameIntervalNanos));
+        try {
+            while (running) {
+                long next = Math.min(nextSensorEvent, Math.min(nextArmingChange, nextFrame));
+                TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+                now = System.nanoTime();
+                if (now >= nextSensorEvent) {
+                    changeSensor(nextSensorEvent);
+                    nextSensorEvent = after(nextSensorEvent, arrival(config.sensorEventsPerSecond()));
+                }
+                if (now >= nextArmingChange) {
+                    changeArming(nextArmingChange);
+                    nextArmingChange = after(nextArmingChange, arrival(config.armingChangesPerHour() / 3600));
+                }
+                if (now >= nextFrame) {
+                    sendFrame(nextFrame);
+                    nextFrame = after(nextFrame, frameIntervalNanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Waits for the events already handed to the scheduler; called once the generator thread has stopped.
+     */
+    void close() {
+        scheduler.close();
+    }
+
+    EventScheduler getScheduler() {
+        return scheduler;
+    }
+
+    private void changeSensor(long due) {
+        int index = Arrays.binarySearch(sensorWeights, random.nextDouble());
+        Sensor sensor = sensors.get(Math.min(index < 0 ? -index - 1 : index, sensors.size() - 1));
+        submit(EventScheduler.Lane.SENSOR, () -> {
+            securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+            metrics.sensorLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+        });
+    }
+
+    private void changeArming(long due) {
+        //any status but the current one
+        int offset = 1 + random.nextInt(ARMING_STATUSES.length - 1);
+        submit(EventScheduler.Lane.ARMING, () -> {
+            ArmingStatus next = ARMING_STATUSES[(securityService.getArmingStatus().ordinal() + offset) % ARMING_STATUSES.length];
+            securityService.setArmingStatus(next);
+            metrics.armingLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+        });
+    }
+
+    private void sendFrame(long due) {
+        String cameraId = "camera-" + frames++ % config.camerasPerPremises();
+        submit(EventScheduler.Lane.IMAGE, () -> securityService.processImageAsync(cameraId, FRAME)
+                .thenRun(() -> metrics.imageLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due))));
+    }
+
+    private void submit(EventScheduler.Lane lane, Runnable event) {
+        if (!scheduler.offer(lane, event)) {
+            metrics.dropped.increment();
+        }
+    }
+
+    /**
+     * @return Nanoseconds until the next event of a Poisson process with the given rate per second,
+     * or Long.MAX_VALUE for never
+     */
+    private long arrival(double perSecond) {
+        if (perSecond <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (-Math.log(1 - random.nextDouble()) / perSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static long after(long time, long delay) {
+        return delay == Long.MAX_VALUE || time > Long.MAX_VALUE - delay ? Long.MAX_VALUE : time + delay;
+    }
+}
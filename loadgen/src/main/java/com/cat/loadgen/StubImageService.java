@@ -0,0 +1,36 @@
+package com.cat.loadgen;
+
+import com.cat.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Image service standing in for a remote backend: each call blocks for a log-normally distributed
+ * time around the median latency and then sees a cat with a fixed probability.
+ */
+class StubImageService implements ImageService {
+
+    private final long medianNanos;
+    private final double spread;
+    private final double catProbability;
+
+    StubImageService(Duration medianLatency, double spread, double catProbability) {
+        this.medianNanos = medianLatency.toNanos();
+        this.spread = spread;
+        this.catProbability = catProbability;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = (long) (medianNanos * Math.exp(spread * random.nextGaussian()));
+        long deadline = System.nanoTime() + latency;
+        for (long remaining = latency; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+        return random.nextDouble() < catProbability;
+    }
+}
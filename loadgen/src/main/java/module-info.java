@@ -0,0 +1,8 @@
+module loadgen {
+    requires security;
+    requires image;
+    requires java.desktop;
+    requires java.management;
+    requires java.prefs;
+    requires jdk.management;
+}
@@ -0,0 +1,30 @@
+package com.cat.data;
+
+import java.util.UUID;
+
+/**
+ * One recorded transition: an alarm or arming status change, or a sensor being activated or deactivated.
+ *
+ * @param timestamp Milliseconds since the epoch
+ * @param kind What changed
+ * @param value AlarmStatus or ArmingStatus ordinal, or 1/0 for a sensor activation/deactivation
+ * @param sensorId The sensor, for sensor activations only
+ */
+public record HistoryEvent(long timestamp, Kind kind, int value, UUID sensorId) {
+
+    public enum Kind {
+        ALARM_STATUS, ARMING_STATUS, SENSOR_ACTIVATION
+    }
+
+    public static HistoryEvent alarmStatus(long timestamp, AlarmStatus alarmStatus) {
+        return new HistoryEvent(timestamp, Kind.ALARM_STATUS, alarmStatus.ordinal(), null);
+    }
+
+    public static HistoryEvent armingStatus(long timestamp, ArmingStatus armingStatus) {
+        return new HistoryEvent(timestamp, Kind.ARMING_STATUS, armingStatus.ordinal(), null);
+    }
+
+    public static HistoryEvent sensorActivation(long timestamp, UUID sensorId, boolean active) {
+        return new HistoryEvent(timestamp, Kind.SENSOR_ACTIVATION, active ? 1 : 0, sensorId);
+    }
+}
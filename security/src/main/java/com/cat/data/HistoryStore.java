@@ -0,0 +1,592 @@
+package com.cat.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Append-only history of alarm status, arming status and sensor activation changes.
+ *
+ * Events are partitioned by UTC day into {@code yyyy-MM-dd.hist} files. Each file is a sequence of
+ * blocks of up to {@code blockEvents} events, stored column by column: timestamps as varint deltas
+ * from the block's first timestamp, then kinds, then values, then sensor ids as references into a
+ * per-block dictionary. Every block header carries its time range, its event count and the alarm
+ * status at its start and end; the headers of all blocks are kept in memory as a sparse index, so
+ * queries binary search for the blocks overlapping the requested range and only decode those, and
+ * time-in-alarm knows the status at the start of the range without replaying older history.
+ *
+ * Events are buffered until a block is full, the day changes, {@link #flush()} is called, or they
+ * have waited for the maximum buffer age, so a crash loses at most that much history.
+ */
+public class HistoryStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x43415448; //"CATH"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    //count, min time, max time, alarm status at start and at end, body length
+    private static final int BLOCK_HEADER_SIZE = 4 + 8 + 8 + 1 + 1 + 4;
+    private static final String SUFFIX = ".hist";
+    private static final int DEFAULT_BLOCK_EVENTS = 4096;
+    private static final Duration DEFAULT_MAX_BUFFER_AGE = Duration.ofSeconds(5);
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final HistoryEvent.Kind[] KINDS = HistoryEvent.Kind.values();
+
+    private final Path directory;
+    private final int blockEvents;
+    private final Duration maxBufferAge;
+    private final BlockIndex index = new BlockIndex();
+    private final List<HistoryEvent> buffer = new ArrayList<>();
+    private LocalDate bufferDay;
+    private AlarmStatus alarmAtBufferStart = AlarmStatus.NO_ALARM;
+    private AlarmStatus currentAlarm = AlarmStatus.NO_ALARM;
+    private boolean closed;
+
+    /**
+     * Opens the history in a directory, creating it if needed.
+     */
+    public HistoryStore(Path directory) throws IOException {
+        this(directory, DEFAULT_BLOCK_EVENTS);
+    }
+
+    /**
+     * @param directory Directory holding the partition files
+     * @param blockEvents Maximum number of events per block
+     */
+    public HistoryStore(Path directory, int blockEvents) throws IOException {
+        this(directory, blockEvents, DEFAULT_MAX_BUFFER_AGE);
+    }
+
+    /**
+     * @param directory Directory holding the partition files
+     * @param blockEvents Maximum number of events per block
+     * @param maxBufferAge How long events may stay buffered before a background thread writes them out
+     */
+    public HistoryStore(Path directory, int blockEvents, Duration maxBufferAge) throws IOException {
+        if (maxBufferAge.isZero() || maxBufferAge.isNegative()) {
+            throw new IllegalArgumentException("Maximum buffer age must be positive");
+        }
+        this.directory = directory;
+        this.blockEvents = blockEvents;
+        this.maxBufferAge = maxBufferAge;
+        Files.createDirectories(directory);
+        List<Path> partitions = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            files.forEach(partitions::add);
+        }
+        //file names sort by date
+        partitions.sort(null);
+        for (Path partition : partitions) {
+            loadIndex(partition);
+        }
+        if (index.size() > 0) {
+            currentAlarm = index.get(index.size() - 1).alarmAtEnd();
+            alarmAtBufferStart = currentAlarm;
+        }
+        Thread flusher = new Thread(this::flushPeriodically, "history-flush-timer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Reads the block headers of a partition, cutting off a block left half-written by a crash. A file
+     * too short for its header, left by a crash right after it was created, is started over as empty.
+     */
+    private void loadIndex(Path partition) throws IOException {
+        try (FileChannel channel = FileChannel.open(partition, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            if (channel.size() < FILE_HEADER_SIZE) {
+                channel.truncate(0);
+                writeFully(channel, ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+                return;
+            }
+            readFully(channel, header.limit(FILE_HEADER_SIZE), 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(partition + " is not a history partition");
+            }
+            long position = FILE_HEADER_SIZE;
+            while (position + BLOCK_HEADER_SIZE <= channel.size()) {
+                header.clear();
+                readFully(channel, header, position);
+                Block block = new Block(partition, position + BLOCK_HEADER_SIZE, header.getInt(0), header.getLong(4),
+                        header.getLong(12), ALARM_STATUSES[header.get(20)], ALARM_STATUSES[header.get(21)], header.getInt(22));
+                if (block.offset() + block.bodyLength() > channel.size()) {
+                    break;
+                }
+                index.add(block);
+                position = block.offset() + block.bodyLength();
+            }
+            if (position < channel.size()) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    /**
+     * Appends an event. Events are expected in roughly increasing time order.
+     *
+     * @throws UncheckedIOException if a completed block can't be written
+     */
+    public synchronized void record(HistoryEvent event) {
+        LocalDate day = day(event.timestamp());
+        if (!buffer.isEmpty() && !day.equals(bufferDay)) {
+            seal();
+        }
+        bufferDay = day;
+        buffer.add(event);
+        if (event.kind() == HistoryEvent.Kind.ALARM_STATUS) {
+            currentAlarm = ALARM_STATUSES[event.value()];
+        }
+        if (buffer.size() >= blockEvents) {
+            seal();
+        }
+    }
+
+    /**
+     * Writes buffered events out as a block.
+     */
+    public synchronized void flush() {
+        if (!buffer.isEmpty()) {
+            seal();
+        }
+    }
+
+    /**
+     * Writes the buffer out every maxBufferAge until closed. Waiting on the monitor instead of sleeping
+     * lets close() stop the thread without interrupting it, which would close a channel mid-write.
+     */
+    private synchronized void flushPeriodically() {
+        long interval = maxBufferAge.toMillis();
+        while (!closed) {
+            try {
+                wait(Math.max(1, interval));
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!closed && !buffer.isEmpty()) {
+                try {
+                    seal();
+                } catch (UncheckedIOException e) {
+                    //still buffered; the next record or flush retries and reports it to its caller
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Events with from &lt;= timestamp &lt; to, in the order they were recorded
+     */
+    public synchronized List<HistoryEvent> query(Instant from, Instant to) {
+        long start = from.toEpochMilli();
+        long end = to.toEpochMilli();
+        List<HistoryEvent> events = new ArrayList<>();
+        for (int b = index.first(start), last = index.end(end); b < last; b++) {
+            Block block = index.get(b);
+            if (block.overlaps(start, end)) {
+                Columns columns = decode(block);
+                for (int i = 0; i < columns.count; i++) {
+                    if (columns.times[i] >= start && columns.times[i] < end) {
+                        events.add(columns.event(i));
+                    }
+                }
+            }
+        }
+        for (HistoryEvent event : buffer) {
+            if (event.timestamp() >= start && event.timestamp() < end) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Counts sensor activations per sensor and hour.
+     *
+     * @return For each sensor activated in the range, an array whose element i counts the activations
+     * in the i-th hour starting from {@code from} truncated to the hour
+     */
+    public synchronized Map<UUID, long[]> activationsPerHour(Instant from, Instant to) {
+        long start = from.toEpochMilli();
+        long end = to.toEpochMilli();
+        long firstHour = Math.floorDiv(start, HOUR_MILLIS);
+        int hours = (int) (Math.floorDiv(end - 1, HOUR_MILLIS) - firstHour + 1);
+        Map<UUID, long[]> counts = new HashMap<>();
+        for (int b = index.first(start), last = index.end(end); b < last; b++) {
+            Block block = index.get(b);
+            if (block.overlaps(start, end)) {
+                Columns columns = decode(block);
+                for (int i = 0; i < columns.count; i++) {
+                    countActivation(counts, columns.times[i], KINDS[columns.kinds[i]], columns.values[i],
+                            columns.sensors[i], start, end, firstHour, hours);
+                }
+            }
+        }
+        for (HistoryEvent event : buffer) {
+            countActivation(counts, event.timestamp(), event.kind(), event.value(), event.sensorId(), start, end, firstHour, hours);
+        }
+        return counts;
+    }
+
+    private static void countActivation(Map<UUID, long[]> counts, long time, HistoryEvent.Kind kind, int value, UUID sensorId,
+                                        long start, long end, long firstHour, int hours) {
+        if (kind != HistoryEvent.Kind.SENSOR_ACTIVATION || value != 1 || time < start || time >= end) {
+            return;
+        }
+        counts.computeIfAbsent(sensorId, id -> new long[hours])[(int) (Math.floorDiv(time, HOUR_MILLIS) - firstHour)]++;
+    }
+
+    /**
+     * @return How long the alarm status was ALARM between from and to (or now, if earlier)
+     */
+    public synchronized Duration timeInAlarm(Instant from, Instant to) {
+        long start = from.toEpochMilli();
+        long end = Math.min(to.toEpochMilli(), System.currentTimeMillis());
+        AlarmTimer timer = new AlarmTimer(start, end);
+        int first = index.first(start);
+        if (first > 0) {
+            //every block before the first candidate ended before the range
+            timer.status = index.get(first - 1).alarmAtEnd();
+        }
+        for (int b = first, last = index.end(end); b < last; b++) {
+            Block block = index.get(b);
+            if (block.maxTime() < start) {
+                //the block's closing status carries over, nothing inside it needs decoding
+                timer.status = block.alarmAtEnd();
+            } else if (block.minTime() < end) {
+                Columns columns = decode(block);
+                for (int i = 0; i < columns.count; i++) {
+                    if (columns.kinds[i] == HistoryEvent.Kind.ALARM_STATUS.ordinal()) {
+                        timer.change(columns.times[i], ALARM_STATUSES[columns.values[i]]);
+                    }
+                }
+            }
+        }
+        for (HistoryEvent event : buffer) {
+            if (event.kind() == HistoryEvent.Kind.ALARM_STATUS) {
+                timer.change(event.timestamp(), ALARM_STATUSES[event.value()]);
+            }
+        }
+        return Duration.ofMillis(timer.finish());
+    }
+
+    /**
+     * Deletes whole partitions older than the given day.
+     */
+    public synchronized void dropBefore(LocalDate day) throws IOException {
+        Set<Path> dropped = new TreeSet<>();
+        for (int i = 0; i < index.size(); i++) {
+            Path partition = index.get(i).file();
+            if (partitionDay(partition).isBefore(day)) {
+                dropped.add(partition);
+            }
+        }
+        index.removeIf(block -> dropped.contains(block.file()));
+        for (Path partition : dropped) {
+            Files.deleteIfExists(partition);
+        }
+    }
+
+    /**
+     * Writes the buffered events out and stops the background flushing.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+        flush();
+    }
+
+    private void seal() {
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (HistoryEvent event : buffer) {
+            minTime = Math.min(minTime, event.timestamp());
+            maxTime = Math.max(maxTime, event.timestamp());
+        }
+        byte[] body = encode(buffer, minTime);
+        Path partition = directory.resolve(bufferDay + SUFFIX);
+        try (FileChannel channel = FileChannel.open(partition, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = channel.size();
+            if (position == 0) {
+                writeFully(channel, ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+                position = FILE_HEADER_SIZE;
+            }
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).putInt(buffer.size()).putLong(minTime).putLong(maxTime)
+                    .put((byte) alarmAtBufferStart.ordinal()).put((byte) currentAlarm.ordinal()).putInt(body.length).flip();
+            writeFully(channel, header, position);
+            writeFully(channel, ByteBuffer.wrap(body), position + BLOCK_HEADER_SIZE);
+            index.add(new Block(partition, position + BLOCK_HEADER_SIZE, buffer.size(), minTime, maxTime,
+                    alarmAtBufferStart, currentAlarm, body.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write history to " + partition, e);
+        }
+        alarmAtBufferStart = currentAlarm;
+        buffer.clear();
+    }
+
+    private static byte[] encode(List<HistoryEvent> events, long minTime) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events.size() * 4);
+        for (HistoryEvent event : events) {
+            writeVarLong(out, zigZag(event.timestamp() - minTime));
+        }
+        for (HistoryEvent event : events) {
+            out.write(event.kind().ordinal());
+        }
+        for (HistoryEvent event : events) {
+            out.write(event.value());
+        }
+        Map<UUID, Integer> dictionary = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        for (HistoryEvent event : events) {
+            if (event.sensorId() != null && dictionary.putIfAbsent(event.sensorId(), ids.size()) == null) {
+                ids.add(event.sensorId());
+            }
+        }
+        writeVarLong(out, ids.size());
+        ByteBuffer longs = ByteBuffer.allocate(ids.size() * 16);
+        for (UUID id : ids) {
+            longs.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        }
+        out.write(longs.array(), 0, longs.capacity());
+        //0 means no sensor
+        for (HistoryEvent event : events) {
+            writeVarLong(out, event.sensorId() == null ? 0 : dictionary.get(event.sensorId()) + 1);
+        }
+        return out.toByteArray();
+    }
+
+    private Columns decode(Block block) {
+        ByteBuffer body = ByteBuffer.allocate(block.bodyLength());
+        try (FileChannel channel = FileChannel.open(block.file(), StandardOpenOption.READ)) {
+            readFully(channel, body, block.offset());
+            body.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read history from " + block.file(), e);
+        }
+        int count = block.count();
+        Columns columns = new Columns(count);
+        for (int i = 0; i < count; i++) {
+            columns.times[i] = block.minTime() + unZigZag(readVarLong(body));
+        }
+        body.get(columns.kinds);
+        body.get(columns.values);
+        UUID[] ids = new UUID[(int) readVarLong(body)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new UUID(body.getLong(), body.getLong());
+        }
+        for (int i = 0; i < count; i++) {
+            int ref = (int) readVarLong(body);
+            columns.sensors[i] = ref == 0 ? null : ids[ref - 1];
+        }
+        return columns;
+    }
+
+    private static LocalDate day(long timestamp) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.UTC);
+    }
+
+    private static LocalDate partitionDay(Path partition) {
+        String name = partition.getFileName().toString();
+        return LocalDate.parse(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of history file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Sparse index entry: where a block is and what it covers.
+     */
+    private record Block(Path file, long offset, int count, long minTime, long maxTime,
+                         AlarmStatus alarmAtStart, AlarmStatus alarmAtEnd, int bodyLength) {
+
+        boolean overlaps(long start, long end) {
+            return maxTime >= start && minTime < end;
+        }
+    }
+
+    /**
+     * The block headers in the order they were written. Events arrive roughly, not strictly, in time
+     * order, so block time ranges may overlap a little; the running latest time up to each block and
+     * earliest time from each block on never decrease, and bound the blocks a range can touch.
+     */
+    private static final class BlockIndex {
+        private final List<Block> blocks = new ArrayList<>();
+        private long[] maxTimeUpTo = new long[16];
+        private long[] minTimeFrom = new long[16];
+
+        int size() {
+            return blocks.size();
+        }
+
+        Block get(int i) {
+            return blocks.get(i);
+        }
+
+        void add(Block block) {
+            int n = blocks.size();
+            if (n == maxTimeUpTo.length) {
+                maxTimeUpTo = Arrays.copyOf(maxTimeUpTo, n * 2);
+                minTimeFrom = Arrays.copyOf(minTimeFrom, n * 2);
+            }
+            blocks.add(block);
+            maxTimeUpTo[n] = n == 0 ? block.maxTime() : Math.max(maxTimeUpTo[n - 1], block.maxTime());
+            minTimeFrom[n] = block.minTime();
+            //only walks back over blocks holding events later than this block's earliest one
+            for (int i = n - 1; i >= 0 && minTimeFrom[i] > block.minTime(); i--) {
+                minTimeFrom[i] = block.minTime();
+            }
+        }
+
+        void removeIf(Predicate<Block> filter) {
+            List<Block> kept = new ArrayList<>(blocks);
+            kept.removeIf(filter);
+            blocks.clear();
+            kept.forEach(this::add);
+        }
+
+        /**
+         * @return Position of the first block that may hold events at or after start
+         */
+        int first(long start) {
+            return firstAtLeast(maxTimeUpTo, start);
+        }
+
+        /**
+         * @return Position after the last block that may hold events before end
+         */
+        int end(long end) {
+            return firstAtLeast(minTimeFrom, end);
+        }
+
+        private int firstAtLeast(long[] times, long key) {
+            int low = 0;
+            int high = blocks.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * A decoded block, one array per column.
+     */
+    private static final class Columns {
+        private final int count;
+        private final long[] times;
+        private final byte[] kinds;
+        private final byte[] values;
+        private final UUID[] sensors;
+
+        Columns(int count) {
+            this.count = count;
+            times = new long[count];
+            kinds = new byte[count];
+            values = new byte[count];
+            sensors = new UUID[count];
+        }
+
+        HistoryEvent event(int i) {
+            return new HistoryEvent(times[i], KINDS[kinds[i]], values[i], sensors[i]);
+        }
+    }
+
+    /**
+     * Adds up the time spent in ALARM between two instants from a sequence of status changes.
+     */
+    private static final class AlarmTimer {
+        private final long start;
+        private final long end;
+        private long position;
+        private long total;
+        private AlarmStatus status = AlarmStatus.NO_ALARM;
+
+        AlarmTimer(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+
+        void change(long time, AlarmStatus next) {
+            if (time >= end) {
+                return;
+            }
+            if (time > position) {
+                if (status == AlarmStatus.ALARM) {
+                    total += time - position;
+                }
+                position = time;
+            }
+            status = next;
+        }
+
+        long finish() {
+            if (status == AlarmStatus.ALARM && end > position) {
+                total += end - position;
+            }
+            return Math.max(0, total);
+        }
+    }
+}
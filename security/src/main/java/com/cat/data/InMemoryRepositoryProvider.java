@@ -0,0 +1,19 @@
+package com.cat.data;
+
+import java.util.Properties;
+
+/**
+ * "memory": an {@link InMemorySecurityRepository}, whose state is gone when the node stops.
+ */
+public class InMemoryRepositoryProvider implements SecurityRepositoryProvider {
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public SecurityRepository create(Properties config) {
+        return new InMemorySecurityRepository();
+    }
+}
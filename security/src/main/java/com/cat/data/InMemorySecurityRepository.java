@@ -0,0 +1,73 @@
+package com.cat.data;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Repository that keeps its state in memory only, in display order. Meant for nodes whose state is
+ * kept safe elsewhere, such as shard workers that hand premises over as snapshots.
+ */
+public class InMemorySecurityRepository implements SecurityRepository {
+
+    private final TreeSet<Sensor> sensors = new TreeSet<>();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+    }
+
+    /**
+     * Replaces the stored copy of the sensor. The stored instance itself needs no work, so the
+     * common case of updating a sensor the caller got from this repository allocates nothing.
+     */
+    @Override
+    public void updateSensor(Sensor sensor) {
+        if (sensors.floor(sensor) != sensor) {
+            sensors.remove(sensor);
+            sensors.add(sensor);
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public boolean isSensorActive(Sensor sensor) {
+        return SortedSensors.isActive(sensors, sensor);
+    }
+
+    @Override
+    public List<Sensor> getSensorsPage(Sensor after, int limit) {
+        return SortedSensors.page(sensors, after, limit);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
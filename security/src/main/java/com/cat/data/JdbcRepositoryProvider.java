@@ -0,0 +1,36 @@
+package com.cat.data;
+
+import java.util.Properties;
+
+/**
+ * "jdbc": a {@link JdbcSecurityRepository} on the database catpoint.db.url names, e.g. jdbc:h2:~/catpoint.
+ */
+public class JdbcRepositoryProvider implements SecurityRepositoryProvider {
+
+    public static final String URL_PROPERTY = "catpoint.db.url";
+
+    @Override
+    public String name() {
+        return "jdbc";
+    }
+
+    @Override
+    public SecurityRepository create(Properties config) {
+        String url = config.getProperty(URL_PROPERTY);
+        if (url == null) {
+            throw new IllegalArgumentException(URL_PROPERTY + " must name the database");
+        }
+        return new JdbcSecurityRepository(url);
+    }
+
+    /**
+     * A private in-memory database if catpoint.db.url names an H2 database, so the same driver code
+     * runs; otherwise one kept in memory. Close it once done.
+     */
+    @Override
+    public SecurityRepository createScratch(Properties config) {
+        String url = config.getProperty(URL_PROPERTY);
+        return url != null && url.startsWith("jdbc:h2:")
+                ? new JdbcSecurityRepository("jdbc:h2:mem:") : SecurityRepositoryProvider.super.createScratch(config);
+    }
+}
@@ -0,0 +1,327 @@
+package com.cat.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository backed by an embedded SQL database, e.g. an H2 file ({@code jdbc:h2:~/catpoint}).
+ * Sensors live in an indexed table so the query methods only read the rows they return, and every
+ * alarm status, arming status and sensor activation change is appended to a history table.
+ *
+ * Sensor ids are stored as two signed longs and the display order index matches
+ * {@link Sensor#compareTo}, so pages come back in the same order the UI sorts them in.
+ * Access is serialized on one connection.
+ */
+public class JdbcSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    private static final String SENSOR_COLUMNS = "id_msb, id_lsb, name, sensor_type, active";
+    private static final String DISPLAY_ORDER = " ORDER BY name, sensor_type, id_msb, id_lsb";
+
+    private final Connection connection;
+    private final PreparedStatement insertSensor;
+    private final PreparedStatement updateSensor;
+    private final PreparedStatement deleteSensor;
+    private final PreparedStatement insertHistory;
+    private final PreparedStatement updateState;
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+
+    /**
+     * Opens the database, creating the tables if needed.
+     *
+     * @param jdbcUrl JDBC url of the database
+     * @throws IllegalStateException if the database can't be opened
+     */
+    public JdbcSecurityRepository(String jdbcUrl) {
+        try {
+            connection = DriverManager.getConnection(jdbcUrl);
+            createSchema();
+            insertSensor = connection.prepareStatement("INSERT INTO sensor (" + SENSOR_COLUMNS + ") VALUES (?, ?, ?, ?, ?)");
+            updateSensor = connection.prepareStatement("UPDATE sensor SET name = ?, sensor_type = ?, active = ? WHERE id_msb = ? AND id_lsb = ?");
+            deleteSensor = connection.prepareStatement("DELETE FROM sensor WHERE id_msb = ? AND id_lsb = ?");
+            insertHistory = connection.prepareStatement("INSERT INTO state_history (changed_at, kind, status, sensor_msb, sensor_lsb) VALUES (?, ?, ?, ?, ?)");
+            updateState = connection.prepareStatement("UPDATE system_state SET alarm_status = ?, arming_status = ? WHERE id = 0");
+            loadState();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to open " + jdbcUrl, e);
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS sensor (id_msb BIGINT NOT NULL, id_lsb BIGINT NOT NULL, "
+                    + "name VARCHAR(255) NOT NULL, sensor_type VARCHAR(16) NOT NULL, active BOOLEAN NOT NULL, "
+                    + "PRIMARY KEY (id_msb, id_lsb))");
+            statement.execute("CREATE INDEX IF NOT EXISTS sensor_display_order ON sensor (name, sensor_type, id_msb, id_lsb)");
+            statement.execute("CREATE INDEX IF NOT EXISTS sensor_by_type ON sensor (sensor_type, name)");
+            statement.execute("CREATE INDEX IF NOT EXISTS sensor_by_active ON sensor (active, name)");
+            statement.execute("CREATE TABLE IF NOT EXISTS system_state (id INT PRIMARY KEY, "
+                    + "alarm_status VARCHAR(16) NOT NULL, arming_status VARCHAR(16) NOT NULL)");
+            statement.execute("CREATE TABLE IF NOT EXISTS state_history (seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "changed_at TIMESTAMP NOT NULL, kind VARCHAR(16) NOT NULL, status VARCHAR(16) NOT NULL, "
+                    + "sensor_msb BIGINT, sensor_lsb BIGINT)");
+            statement.execute("CREATE INDEX IF NOT EXISTS state_history_by_time ON state_history (changed_at)");
+        }
+    }
+
+    private void loadState() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT alarm_status, arming_status FROM system_state WHERE id = 0")) {
+            if (rs.next()) {
+                alarmStatus = AlarmStatus.valueOf(rs.getString(1));
+                armingStatus = ArmingStatus.valueOf(rs.getString(2));
+                return;
+            }
+        }
+        alarmStatus = AlarmStatus.NO_ALARM;
+        armingStatus = ArmingStatus.DISARMED;
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO system_state VALUES (0, ?, ?)")) {
+            insert.setString(1, alarmStatus.name());
+            insert.setString(2, armingStatus.name());
+            insert.executeUpdate();
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        addSensors(List.of(sensor));
+    }
+
+    /**
+     * Inserts all sensors in one batch.
+     */
+    @Override
+    public synchronized void addSensors(Collection<Sensor> sensors) {
+        try {
+            for (Sensor sensor : sensors) {
+                UUID id = sensor.getSensorId();
+                insertSensor.setLong(1, id.getMostSignificantBits());
+                insertSensor.setLong(2, id.getLeastSignificantBits());
+                insertSensor.setString(3, sensor.getName());
+                insertSensor.setString(4, sensor.getSensorType().name());
+                insertSensor.setBoolean(5, sensor.getActive());
+                insertSensor.addBatch();
+            }
+            insertSensor.executeBatch();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to add sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        try {
+            deleteSensor.setLong(1, sensor.getSensorId().getMostSignificantBits());
+            deleteSensor.setLong(2, sensor.getSensorId().getLeastSignificantBits());
+            deleteSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to remove " + sensor, e);
+        }
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        updateSensors(List.of(sensor));
+    }
+
+    /**
+     * Updates all sensors and records their history in one batch per table, committed together.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        Timestamp now = Timestamp.from(Instant.now());
+        try {
+            connection.setAutoCommit(false);
+            for (Sensor sensor : sensors) {
+                UUID id = sensor.getSensorId();
+                boolean active = sensor.getActive();
+                updateSensor.setString(1, sensor.getName());
+                updateSensor.setString(2, sensor.getSensorType().name());
+                updateSensor.setBoolean(3, active);
+                updateSensor.setLong(4, id.getMostSignificantBits());
+                updateSensor.setLong(5, id.getLeastSignificantBits());
+                updateSensor.addBatch();
+                setHistory(now, "SENSOR", active ? "ACTIVE" : "INACTIVE", id);
+                insertHistory.addBatch();
+            }
+            updateSensor.executeBatch();
+            insertHistory.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(e);
+            throw new IllegalStateException("Unable to update " + sensors.size() + " sensors", e);
+        } finally {
+            restoreAutoCommit();
+        }
+    }
+
+    private void rollback(SQLException cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void restoreAutoCommit() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to restore auto-commit", e);
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        saveState("ALARM", alarmStatus.name());
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        saveState("ARMING", armingStatus.name());
+    }
+
+    private void saveState(String kind, String status) {
+        try {
+            updateState.setString(1, alarmStatus.name());
+            updateState.setString(2, armingStatus.name());
+            updateState.executeUpdate();
+            addHistory(kind, status, null);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to save " + kind + " status " + status, e);
+        }
+    }
+
+    private void addHistory(String kind, String status, UUID sensorId) throws SQLException {
+        setHistory(Timestamp.from(Instant.now()), kind, status, sensorId);
+        insertHistory.executeUpdate();
+    }
+
+    private void setHistory(Timestamp changedAt, String kind, String status, UUID sensorId) throws SQLException {
+        insertHistory.setTimestamp(1, changedAt);
+        insertHistory.setString(2, kind);
+        insertHistory.setString(3, status);
+        if (sensorId == null) {
+            insertHistory.setNull(4, java.sql.Types.BIGINT);
+            insertHistory.setNull(5, java.sql.Types.BIGINT);
+        } else {
+            insertHistory.setLong(4, sensorId.getMostSignificantBits());
+            insertHistory.setLong(5, sensorId.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Loads every sensor; prefer the query methods for large installations.
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return new TreeSet<>(query("SELECT " + SENSOR_COLUMNS + " FROM sensor"));
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sensor")) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to count sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isSensorActive(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT active FROM sensor WHERE id_msb = ? AND id_lsb = ?")) {
+            statement.setLong(1, id.getMostSignificantBits());
+            statement.setLong(2, id.getLeastSignificantBits());
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read sensor " + id, e);
+        }
+    }
+
+    @Override
+    public synchronized List<Sensor> getActiveSensors() {
+        return query("SELECT " + SENSOR_COLUMNS + " FROM sensor WHERE active = TRUE" + DISPLAY_ORDER);
+    }
+
+    @Override
+    public synchronized List<Sensor> getSensorsByType(SensorType sensorType) {
+        return query("SELECT " + SENSOR_COLUMNS + " FROM sensor WHERE sensor_type = ?" + DISPLAY_ORDER, sensorType.name());
+    }
+
+    @Override
+    public synchronized List<Sensor> getSensorsByNamePrefix(String prefix) {
+        //escape LIKE wildcards so the prefix is matched literally
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return query("SELECT " + SENSOR_COLUMNS + " FROM sensor WHERE name LIKE ? ESCAPE '\\'" + DISPLAY_ORDER, pattern);
+    }
+
+    /**
+     * Keyset pagination over the display order index, so every page costs the same however deep it is.
+     */
+    @Override
+    public synchronized List<Sensor> getSensorsPage(Sensor after, int limit) {
+        if (after == null) {
+            return query("SELECT " + SENSOR_COLUMNS + " FROM sensor" + DISPLAY_ORDER + " LIMIT ?", limit);
+        }
+        UUID id = after.getSensorId();
+        return query("SELECT " + SENSOR_COLUMNS + " FROM sensor WHERE (name, sensor_type, id_msb, id_lsb) > (?, ?, ?, ?)"
+                        + DISPLAY_ORDER + " LIMIT ?",
+                after.getName(), after.getSensorType().name(), id.getMostSignificantBits(), id.getLeastSignificantBits(), limit);
+    }
+
+    private List<Sensor> query(String sql, Object... parameters) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            List<Sensor> sensors = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Sensor sensor = new Sensor();
+                    sensor.setSensorId(new UUID(rs.getLong(1), rs.getLong(2)));
+                    sensor.setName(rs.getString(3));
+                    sensor.setSensorType(SensorType.valueOf(rs.getString(4)));
+                    sensor.setActive(rs.getBoolean(5));
+                    sensors.add(sensor);
+                }
+            }
+            return sensors;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to query sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        connection.close();
+    }
+}
@@ -0,0 +1,19 @@
+package com.cat.data;
+
+import java.util.Properties;
+
+/**
+ * "preferences": a {@link PretendDatabaseSecurityRepositoryImpl} keeping the state in user preferences.
+ */
+public class PreferencesRepositoryProvider implements SecurityRepositoryProvider {
+
+    @Override
+    public String name() {
+        return "preferences";
+    }
+
+    @Override
+    public SecurityRepository create(Properties config) {
+        return new PretendDatabaseSecurityRepositoryImpl();
+    }
+}
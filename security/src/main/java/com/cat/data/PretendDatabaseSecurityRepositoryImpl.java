@@ -3,7 +3,11 @@ package com.cat.data;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.prefs.Preferences;
@@ -15,52 +19,151 @@ import java.util.prefs.Preferences;
  */
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
 
-    private Set<Sensor> sensors;
+    private TreeSet<Sensor> sensors;
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
+    private int deltaCount;
+
     //preference keys
-    private static final String SENSORS = "SENSORS";
+    private static final String SENSORS = "SENSORS"; //JSON written by older versions, migrated on load
+    private static final String SNAPSHOT_CHUNKS = "SENSOR_SNAPSHOT_CHUNKS";
+    private static final String SNAPSHOT_CHUNK = "SENSOR_SNAPSHOT_";
+    private static final String DELTA_COUNT = "SENSOR_DELTAS";
+    private static final String DELTA = "SENSOR_DELTA_";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    //largest byte array a preference value can hold once base64 encoded
+    private static final int MAX_CHUNK = Preferences.MAX_VALUE_LENGTH * 3 / 4;
+    private static final int MIN_DELTAS_BEFORE_COMPACTION = 64;
+
+    private final Preferences prefs;
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * Keeps the state in the given preferences node instead of the default one, so several systems
+     * can be stored side by side.
+     *
+     * @param prefs
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
-        //we've serialized our sensor objects for storage, which should be a good warning sign that
-        // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+        //sensors are stored as a binary snapshot split over several keys, plus one key per change
+        // made since; still an impractical solution for a real system
+        sensors = new TreeSet<>();
+        String legacySensors = prefs.get(SENSORS, null);
+        if (legacySensors != null) {
+            sensors.addAll(readLegacySensors(legacySensors));
+            compact();
+            prefs.remove(SENSORS);
+            return;
         }
+        int chunks = prefs.getInt(SNAPSHOT_CHUNKS, 0);
+        if (chunks > 0) {
+            ByteArrayOutputStream snapshot = new ByteArrayOutputStream(chunks * MAX_CHUNK);
+            for (int i = 0; i < chunks; i++) {
+                snapshot.writeBytes(prefs.getByteArray(SNAPSHOT_CHUNK + i, new byte[0]));
+            }
+            sensors.addAll(SensorCodec.decodeSnapshot(snapshot.toByteArray()).sensors());
+        }
+        deltaCount = prefs.getInt(DELTA_COUNT, 0);
+        for (int i = 0; i < deltaCount; i++) {
+            SensorCodec.Delta delta = SensorCodec.decodeDelta(prefs.getByteArray(DELTA + i, new byte[0]));
+            switch (delta.kind()) {
+                case UPSERT_SENSOR -> {
+                    sensors.remove(delta.sensor());
+                    sensors.add(delta.sensor());
+                }
+                case REMOVE_SENSOR -> sensors.removeIf(sensor -> sensor.getSensorId().equals(delta.sensorId()));
+                default -> {
+                    //statuses have their own keys
+                }
+            }
+        }
+    }
+
+    private static Set<Sensor> readLegacySensors(String json) {
+        Type type = new TypeToken<Set<Sensor>>() {
+        }.getType();
+        return new Gson().fromJson(json, type);
     }
 
     @Override
     public void addSensor(Sensor sensor) {
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        appendDelta(SensorCodec.Delta.upsert(sensor));
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
         sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        appendDelta(SensorCodec.Delta.remove(sensor.getSensorId()));
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
         sensors.remove(sensor);
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        appendDelta(SensorCodec.Delta.upsert(sensor));
+    }
+
+    /**
+     * Large batches, such as every sensor being reset on arming, are written as one new snapshot
+     * rather than a delta per sensor.
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> updated) {
+        if (updated.size() < MIN_DELTAS_BEFORE_COMPACTION) {
+            updated.forEach(this::updateSensor);
+            return;
+        }
+        for (Sensor sensor : updated) {
+            sensors.remove(sensor);
+            sensors.add(sensor);
+        }
+        compact();
+    }
+
+    /**
+     * Stores one change under its own key. Once there are more changes than sensors, they are folded
+     * into a new snapshot, so each write costs O(1) amortized instead of rewriting every sensor.
+     */
+    private void appendDelta(SensorCodec.Delta delta) {
+        byte[] bytes = SensorCodec.encodeDelta(delta);
+        if (bytes.length > MAX_CHUNK || deltaCount >= Math.max(MIN_DELTAS_BEFORE_COMPACTION, sensors.size())) {
+            compact();
+            return;
+        }
+        prefs.putByteArray(DELTA + deltaCount, bytes);
+        deltaCount++;
+        prefs.putInt(DELTA_COUNT, deltaCount);
+    }
+
+    private void compact() {
+        byte[] snapshot = SensorCodec.encodeSnapshot(sensors, alarmStatus, armingStatus);
+        int oldChunks = prefs.getInt(SNAPSHOT_CHUNKS, 0);
+        int chunks = (snapshot.length + MAX_CHUNK - 1) / MAX_CHUNK;
+        for (int i = 0; i < chunks; i++) {
+            prefs.putByteArray(SNAPSHOT_CHUNK + i, Arrays.copyOfRange(snapshot, i * MAX_CHUNK, Math.min(snapshot.length, (i + 1) * MAX_CHUNK)));
+        }
+        prefs.putInt(SNAPSHOT_CHUNKS, chunks);
+        for (int i = chunks; i < oldChunks; i++) {
+            prefs.remove(SNAPSHOT_CHUNK + i);
+        }
+        //replaying deltas already in the snapshot is harmless, so they are only dropped now
+        for (int i = 0; i < deltaCount; i++) {
+            prefs.remove(DELTA + i);
+        }
+        deltaCount = 0;
+        prefs.putInt(DELTA_COUNT, 0);
     }
 
     @Override
@@ -80,6 +183,16 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
         return sensors;
     }
 
+    @Override
+    public boolean isSensorActive(Sensor sensor) {
+        return SortedSensors.isActive(sensors, sensor);
+    }
+
+    @Override
+    public List<Sensor> getSensorsPage(Sensor after, int limit) {
+        return SortedSensors.page(sensors, after, limit);
+    }
+
     @Override
     public AlarmStatus getAlarmStatus() {
         return alarmStatus;
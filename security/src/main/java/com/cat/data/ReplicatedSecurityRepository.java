@@ -0,0 +1,399 @@
+package com.cat.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository for the primary node of a hot standby pair. Every change is applied to the delegate and
+ * then streamed over TCP to any number of {@link StandbyReplica}s, each of which keeps an up-to-date
+ * copy of the state and can take over as soon as the primary goes away.
+ *
+ * A standby that connects first gets a snapshot of the whole state and then every change after it,
+ * each numbered with a sequence. Changes are queued per standby and written by a sender thread that
+ * flushes whatever has queued up in one go, so callers never wait on the network. Standbys
+ * acknowledge in batches; {@link #awaitAcknowledged(long, Duration)} lets a caller wait until a
+ * change is safe on a standby. A standby that falls more than maxPendingFrames changes behind is
+ * sent a fresh snapshot instead of the backlog.
+ *
+ * Like the other repositories, this one expects to be changed from a single thread.
+ */
+public class ReplicatedSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    public static final Duration DEFAULT_HEARTBEAT_INTERVAL = Duration.ofMillis(100);
+    public static final int DEFAULT_MAX_PENDING_FRAMES = 65536;
+    //batch updates of at least this many sensors are sent as a new snapshot rather than a delta each
+    private static final int MIN_SENSORS_FOR_SNAPSHOT = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SecurityRepository delegate;
+    private final ServerSocket serverSocket;
+    private final long heartbeatNanos;
+    private final int maxPendingFrames;
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+    //held while the delegate changes, so a snapshot never sees half a change
+    private final Object lock = new Object();
+    private final Object acknowledgements = new Object();
+    private final Thread acceptor;
+    //guarded by lock
+    private long sequence;
+    private long snapshotsSent;
+    private volatile boolean closed;
+
+    /**
+     * Accepts standbys on the loopback interface.
+     *
+     * @param delegate Repository the state is kept in on this node
+     * @param port Port to listen on, or 0 for any free port
+     */
+    public ReplicatedSecurityRepository(SecurityRepository delegate, int port) throws IOException {
+        this(delegate, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), DEFAULT_HEARTBEAT_INTERVAL,
+                DEFAULT_MAX_PENDING_FRAMES);
+    }
+
+    /**
+     * @param delegate Repository the state is kept in on this node
+     * @param bindAddress Address to accept standbys on
+     * @param heartbeatInterval How often an idle standby hears from the primary; standbys should allow
+     *                          a few intervals before deciding the primary is gone
+     * @param maxPendingFrames Changes queued for a standby before it is sent a snapshot instead
+     */
+    public ReplicatedSecurityRepository(SecurityRepository delegate, InetSocketAddress bindAddress, Duration heartbeatInterval,
+                                        int maxPendingFrames) throws IOException {
+        this.delegate = delegate;
+        this.heartbeatNanos = heartbeatInterval.toNanos();
+        this.maxPendingFrames = maxPendingFrames;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(bindAddress);
+        acceptor = Thread.ofVirtual().name("replication-accept").start(this::acceptStandbys);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Sequence of the latest change, 0 before the first one
+     */
+    public long getSequence() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    /**
+     * @return The latest sequence any connected standby has applied, or -1 if none has applied anything
+     */
+    public long getAcknowledgedSequence() {
+        long acknowledged = -1;
+        for (Link link : links) {
+            acknowledged = Math.max(acknowledged, link.acknowledged);
+        }
+        return acknowledged;
+    }
+
+    public int getStandbyCount() {
+        return links.size();
+    }
+
+    /**
+     * @return Number of snapshots sent, to standbys connecting or falling behind and for large batch updates
+     */
+    public long getSnapshotsSent() {
+        synchronized (lock) {
+            return snapshotsSent;
+        }
+    }
+
+    /**
+     * Waits until at least one standby has applied the change with the given sequence.
+     *
+     * @return False if that didn't happen within the timeout
+     */
+    public boolean awaitAcknowledged(long sequence, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (acknowledgements) {
+            while (getAcknowledgedSequence() < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(acknowledgements, remaining);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        synchronized (lock) {
+            delegate.addSensor(sensor);
+            replicate(SensorCodec.Delta.upsert(sensor));
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        synchronized (lock) {
+            delegate.removeSensor(sensor);
+            replicate(SensorCodec.Delta.remove(sensor.getSensorId()));
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        synchronized (lock) {
+            delegate.updateSensor(sensor);
+            replicate(SensorCodec.Delta.upsert(sensor));
+        }
+    }
+
+    @Override
+    public void addSensors(Collection<Sensor> sensors) {
+        synchronized (lock) {
+            delegate.addSensors(sensors);
+            replicate(sensors);
+        }
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        synchronized (lock) {
+            delegate.updateSensors(sensors);
+            replicate(sensors);
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        synchronized (lock) {
+            delegate.setAlarmStatus(alarmStatus);
+            replicate(SensorCodec.Delta.alarmStatus(alarmStatus));
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        synchronized (lock) {
+            delegate.setArmingStatus(armingStatus);
+            replicate(SensorCodec.Delta.armingStatus(armingStatus));
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    @Override
+    public int getSensorCount() {
+        return delegate.getSensorCount();
+    }
+
+    @Override
+    public boolean isSensorActive(Sensor sensor) {
+        return delegate.isSensorActive(sensor);
+    }
+
+    @Override
+    public List<Sensor> getActiveSensors() {
+        return delegate.getActiveSensors();
+    }
+
+    @Override
+    public List<Sensor> getSensorsByType(SensorType sensorType) {
+        return delegate.getSensorsByType(sensorType);
+    }
+
+    @Override
+    public List<Sensor> getSensorsByNamePrefix(String prefix) {
+        return delegate.getSensorsByNamePrefix(prefix);
+    }
+
+    @Override
+    public List<Sensor> getSensorsPage(Sensor after, int limit) {
+        return delegate.getSensorsPage(after, limit);
+    }
+
+    //called holding lock
+    private void replicate(SensorCodec.Delta delta) {
+        long next = ++sequence;
+        if (links.isEmpty()) {
+            return;
+        }
+        ReplicationFrames.Frame frame = new ReplicationFrames.Frame(ReplicationFrames.DELTA, next, SensorCodec.encodeDelta(delta));
+        ReplicationFrames.Frame snapshot = null;
+        for (Link link : links) {
+            if (link.queue.size() < maxPendingFrames) {
+                link.queue.add(frame);
+            } else {
+                //the backlog is worth less than the state it leads to
+                if (snapshot == null) {
+                    snapshot = snapshot();
+                }
+                link.queue.clear();
+                link.queue.add(snapshot);
+            }
+        }
+    }
+
+    //called holding lock
+    private void replicate(Collection<Sensor> sensors) {
+        if (sensors.size() < MIN_SENSORS_FOR_SNAPSHOT) {
+            for (Sensor sensor : sensors) {
+                replicate(SensorCodec.Delta.upsert(sensor));
+            }
+            return;
+        }
+        ++sequence;
+        if (links.isEmpty()) {
+            return;
+        }
+        ReplicationFrames.Frame snapshot = snapshot();
+        for (Link link : links) {
+            link.queue.clear();
+            link.queue.add(snapshot);
+        }
+    }
+
+    //called holding lock
+    private ReplicationFrames.Frame snapshot() {
+        snapshotsSent++;
+        return new ReplicationFrames.Frame(ReplicationFrames.SNAPSHOT, sequence,
+                SensorCodec.encodeSnapshot(delegate.getSensors(), delegate.getAlarmStatus(), delegate.getArmingStatus()));
+    }
+
+    private void acceptStandbys() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                //closed, or the connection went away before it was set up
+                continue;
+            }
+            Link link;
+            try {
+                link = new Link(socket);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                continue;
+            }
+            synchronized (lock) {
+                link.queue.add(snapshot());
+                links.add(link);
+            }
+            Thread.ofVirtual().name("replication-send-" + socket.getRemoteSocketAddress()).start(link::send);
+            Thread.ofVirtual().name("replication-ack-" + socket.getRemoteSocketAddress()).start(link::receiveAcknowledgements);
+        }
+    }
+
+    /**
+     * Stops accepting standbys and disconnects the connected ones. Standbys see the primary go away.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        for (Link link : links) {
+            link.close();
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            //nothing left to do with it
+        }
+    }
+
+    /**
+     * Connection to one standby.
+     */
+    private class Link {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final BlockingQueue<ReplicationFrames.Frame> queue = new LinkedBlockingQueue<>();
+        private volatile long acknowledged = -1;
+
+        Link(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        void send() {
+            try {
+                while (!closed) {
+                    ReplicationFrames.Frame frame = queue.poll(heartbeatNanos, TimeUnit.NANOSECONDS);
+                    ReplicationFrames.write(out, frame != null ? frame : ReplicationFrames.Frame.empty(ReplicationFrames.HEARTBEAT, 0));
+                    //everything queued meanwhile goes out with the same flush
+                    for (frame = queue.poll(); frame != null; frame = queue.poll()) {
+                        ReplicationFrames.write(out, frame);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                //the standby went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            close();
+        }
+
+        void receiveAcknowledgements() {
+            try {
+                while (!closed) {
+                    ReplicationFrames.Frame frame = ReplicationFrames.read(in);
+                    if (frame.type() != ReplicationFrames.ACK) {
+                        throw new IOException("Unexpected replication frame type " + frame.type());
+                    }
+                    synchronized (acknowledgements) {
+                        acknowledged = frame.sequence();
+                        acknowledgements.notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                //the standby went away
+            }
+            close();
+        }
+
+        void close() {
+            links.remove(this);
+            closeQuietly(socket);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.cat.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Frames exchanged between a {@link ReplicatedSecurityRepository} and its {@link StandbyReplica}s.
+ * Every frame is a type byte, a big-endian sequence number and a length-prefixed payload:
+ * <pre>
+ * SNAPSHOT  primary to standby: the state after the change with the sequence, from SensorCodec.encodeSnapshot
+ * DELTA     primary to standby: the change with the sequence, from SensorCodec.encodeDelta
+ * HEARTBEAT primary to standby, when there has been nothing else to send for a while; no payload
+ * ACK       standby to primary: every change up to the sequence has been applied; no payload
+ * </pre>
+ */
+final class ReplicationFrames {
+
+    static final byte SNAPSHOT = 1;
+    static final byte DELTA = 2;
+    static final byte HEARTBEAT = 3;
+    static final byte ACK = 4;
+
+    //well above the snapshot of any real installation, but stops a corrupt length from exhausting the heap
+    private static final int MAX_PAYLOAD = 256 << 20;
+    private static final byte[] EMPTY = new byte[0];
+
+    private ReplicationFrames() {
+    }
+
+    record Frame(byte type, long sequence, byte[] payload) {
+
+        static Frame empty(byte type, long sequence) {
+            return new Frame(type, sequence, EMPTY);
+        }
+    }
+
+    static void write(DataOutputStream out, Frame frame) throws IOException {
+        out.writeByte(frame.type());
+        out.writeLong(frame.sequence());
+        out.writeInt(frame.payload().length);
+        out.write(frame.payload());
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Bad replication frame length " + length);
+        }
+        byte[] payload = length == 0 ? EMPTY : new byte[length];
+        in.readFully(payload);
+        return new Frame(type, sequence, payload);
+    }
+}
@@ -1,9 +1,14 @@
 package com.cat.data;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
- * Interface showing the methods our security repository will need to support
+ * Interface showing the methods our security repository will need to support.
+ * The query methods have default implementations that scan {@link #getSensors()}; repositories
+ * backed by a database override them so callers never need to load every sensor.
  */
 public interface SecurityRepository {
     void addSensor(Sensor sensor);
@@ -15,5 +20,57 @@ public interface SecurityRepository {
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * Adds several sensors at once.
+     */
+    default void addSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::addSensor);
+    }
 
+    /**
+     * Persists changes to several sensors at once.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    default int getSensorCount() {
+        return getSensors().size();
+    }
+
+    /**
+     * Returns the stored activation status of a sensor, which a caller's copy of it may no longer match.
+     * False if the sensor is not stored.
+     */
+    default boolean isSensorActive(Sensor sensor) {
+        for (Sensor stored : getSensors()) {
+            if (stored.equals(sensor)) {
+                return stored.getActive();
+            }
+        }
+        return false;
+    }
+
+    default List<Sensor> getActiveSensors() {
+        return getSensors().stream().filter(Sensor::getActive).sorted().collect(Collectors.toList());
+    }
+
+    default List<Sensor> getSensorsByType(SensorType sensorType) {
+        return getSensors().stream().filter(s -> s.getSensorType() == sensorType).sorted().collect(Collectors.toList());
+    }
+
+    default List<Sensor> getSensorsByNamePrefix(String prefix) {
+        return getSensors().stream().filter(s -> s.getName().startsWith(prefix)).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Returns sensors in display order, a page at a time.
+     *
+     * @param after Last sensor of the previous page, or null for the first page
+     * @param limit Maximum number of sensors to return
+     */
+    default List<Sensor> getSensorsPage(Sensor after, int limit) {
+        return getSensors().stream().filter(s -> after == null || s.compareTo(after) > 0).sorted().limit(limit)
+                .collect(Collectors.toList());
+    }
 }
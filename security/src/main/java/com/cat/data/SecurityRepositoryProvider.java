@@ -0,0 +1,91 @@
+package com.cat.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.ServiceLoader;
+
+/**
+ * Creates one kind of SecurityRepository. Providers are found with {@link ServiceLoader}, so a module
+ * can add its own with a {@code provides} clause and a node picks one by name in its configuration,
+ * without code changes. Built in are "preferences", "jdbc" and "memory".
+ */
+public interface SecurityRepositoryProvider {
+
+    /** Configuration key naming the provider to use */
+    String PROVIDER_PROPERTY = "catpoint.repository";
+
+    /** Configuration key naming the database a standby keeps its copy in */
+    String STANDBY_URL_PROPERTY = "catpoint.standby.db.url";
+
+    /**
+     * @return Name the provider is selected by
+     */
+    String name();
+
+    /**
+     * @param config Settings of the node, such as the system properties
+     */
+    SecurityRepository create(Properties config);
+
+    /**
+     * Creates a repository of the same kind that starts empty and is thrown away after use, e.g. to
+     * warm up a node. By default one kept in memory.
+     *
+     * @param config Settings of the node, such as the system properties
+     */
+    default SecurityRepository createScratch(Properties config) {
+        return new InMemorySecurityRepository();
+    }
+
+    /**
+     * Creates the repository the configuration selects with catpoint.repository. Without it, the
+     * jdbc repository is used if catpoint.db.url is set and the preferences repository otherwise.
+     *
+     * @throws IllegalArgumentException if no provider has the name
+     */
+    static SecurityRepository open(Properties config) {
+        return select(config).create(config);
+    }
+
+    /**
+     * Creates a scratch repository of the kind the configuration selects, see {@link #createScratch}.
+     *
+     * @throws IllegalArgumentException if no provider has the name
+     */
+    static SecurityRepository openScratch(Properties config) {
+        return select(config).createScratch(config);
+    }
+
+    /**
+     * Creates the local repository of a standby. Replication only listens on loopback, so a standby runs
+     * on the same machine as its primary and must not share the primary's store: the copy is kept in the
+     * database catpoint.standby.db.url names, or in memory without it.
+     *
+     * @param config Settings of the node, such as the system properties
+     */
+    static SecurityRepository openStandby(Properties config) {
+        Properties standby = new Properties();
+        String url = config.getProperty(STANDBY_URL_PROPERTY);
+        if (url == null) {
+            standby.setProperty(PROVIDER_PROPERTY, "memory");
+        } else {
+            standby.setProperty(PROVIDER_PROPERTY, "jdbc");
+            standby.setProperty(JdbcRepositoryProvider.URL_PROPERTY, url);
+        }
+        return open(standby);
+    }
+
+    private static SecurityRepositoryProvider select(Properties config) {
+        String name = config.getProperty(PROVIDER_PROPERTY,
+                config.getProperty(JdbcRepositoryProvider.URL_PROPERTY) != null ? "jdbc" : "preferences");
+        List<String> names = new ArrayList<>();
+        for (SecurityRepositoryProvider provider : ServiceLoader.load(SecurityRepositoryProvider.class)) {
+            if (provider.name().equals(name)) {
+                return provider;
+            }
+            names.add(provider.name());
+        }
+        throw new IllegalArgumentException("No repository provider named " + name + ", only " + names);
+    }
+}
@@ -0,0 +1,295 @@
+package com.cat.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary format for sensor and system state, used instead of reflective JSON. Every record
+ * starts with a header: the magic bytes "CATS", a format version and the record kind. Then:
+ * <pre>
+ * snapshot: alarm status, arming status, sensor count, sensors
+ * delta:    delta kind, then a sensor (UPSERT_SENSOR), a sensor id (REMOVE_SENSOR),
+ *           an alarm status (ALARM_STATUS) or an arming status (ARMING_STATUS)
+ * sensor:   id, name, sensor type, active (0 or 1)
+ * </pre>
+ * Counts, string lengths and enum ordinals are unsigned varints, ids are two big-endian longs and
+ * names are UTF-8.
+ */
+public final class SensorCodec {
+
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'C', 'A', 'T', 'S'};
+    private static final int KIND_SNAPSHOT = 0;
+    private static final int KIND_DELTA = 1;
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final Delta.Kind[] DELTA_KINDS = Delta.Kind.values();
+
+    private SensorCodec() {
+    }
+
+    /**
+     * Full state of the system.
+     */
+    public record Snapshot(List<Sensor> sensors, AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+    }
+
+    /**
+     * A single change to the state of the system. Only the fields belonging to the kind are set.
+     */
+    public record Delta(Kind kind, Sensor sensor, UUID sensorId, AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+
+        public enum Kind {
+            UPSERT_SENSOR, REMOVE_SENSOR, ALARM_STATUS, ARMING_STATUS
+        }
+
+        public static Delta upsert(Sensor sensor) {
+            return new Delta(Kind.UPSERT_SENSOR, sensor, sensor.getSensorId(), null, null);
+        }
+
+        public static Delta remove(UUID sensorId) {
+            return new Delta(Kind.REMOVE_SENSOR, null, sensorId, null, null);
+        }
+
+        public static Delta alarmStatus(AlarmStatus alarmStatus) {
+            return new Delta(Kind.ALARM_STATUS, null, null, alarmStatus, null);
+        }
+
+        public static Delta armingStatus(ArmingStatus armingStatus) {
+            return new Delta(Kind.ARMING_STATUS, null, null, null, armingStatus);
+        }
+    }
+
+    public static byte[] encodeSnapshot(Collection<Sensor> sensors, AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        //ids and flags take 18 bytes, names are usually short
+        Output out = new Output(16 + sensors.size() * 32);
+        out.header(KIND_SNAPSHOT);
+        out.varint(alarmStatus.ordinal());
+        out.varint(armingStatus.ordinal());
+        out.varint(sensors.size());
+        for (Sensor sensor : sensors) {
+            out.sensor(sensor);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes aren't a snapshot in a supported version
+     */
+    public static Snapshot decodeSnapshot(byte[] bytes) {
+        Input in = new Input(bytes);
+        in.header(KIND_SNAPSHOT);
+        AlarmStatus alarmStatus = in.ordinal(ALARM_STATUSES);
+        ArmingStatus armingStatus = in.ordinal(ARMING_STATUSES);
+        int count = in.varint();
+        List<Sensor> sensors = new ArrayList<>(Math.min(count, bytes.length / 19));
+        for (int i = 0; i < count; i++) {
+            sensors.add(in.sensor());
+        }
+        in.end();
+        return new Snapshot(sensors, alarmStatus, armingStatus);
+    }
+
+    public static byte[] encodeDelta(Delta delta) {
+        Output out = new Output(delta.kind() == Delta.Kind.UPSERT_SENSOR ? 48 : 24);
+        out.header(KIND_DELTA);
+        out.varint(delta.kind().ordinal());
+        switch (delta.kind()) {
+            case UPSERT_SENSOR -> out.sensor(delta.sensor());
+            case REMOVE_SENSOR -> out.uuid(delta.sensorId());
+            case ALARM_STATUS -> out.varint(delta.alarmStatus().ordinal());
+            case ARMING_STATUS -> out.varint(delta.armingStatus().ordinal());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes aren't a delta in a supported version
+     */
+    public static Delta decodeDelta(byte[] bytes) {
+        Input in = new Input(bytes);
+        in.header(KIND_DELTA);
+        Delta delta = switch (in.ordinal(DELTA_KINDS)) {
+            case UPSERT_SENSOR -> Delta.upsert(in.sensor());
+            case REMOVE_SENSOR -> Delta.remove(in.uuid());
+            case ALARM_STATUS -> Delta.alarmStatus(in.ordinal(ALARM_STATUSES));
+            case ARMING_STATUS -> Delta.armingStatus(in.ordinal(ARMING_STATUSES));
+        };
+        in.end();
+        return delta;
+    }
+
+    private static final class Output {
+        private byte[] buffer;
+        private int size;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void header(int kind) {
+            ensure(MAGIC.length + 2);
+            System.arraycopy(MAGIC, 0, buffer, size, MAGIC.length);
+            size += MAGIC.length;
+            buffer[size++] = VERSION;
+            buffer[size++] = (byte) kind;
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void longValue(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void uuid(UUID id) {
+            longValue(id.getMostSignificantBits());
+            longValue(id.getLeastSignificantBits());
+        }
+
+        void string(String value) {
+            int length = value.length();
+            //plain ASCII names are copied char by char without an intermediate byte array
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                varint(length);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer[size++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                varint(utf8.length);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, buffer, size, utf8.length);
+                size += utf8.length;
+            }
+        }
+
+        void sensor(Sensor sensor) {
+            uuid(sensor.getSensorId());
+            string(sensor.getName());
+            varint(sensor.getSensorType().ordinal());
+            ensure(1);
+            buffer[size++] = (byte) (sensor.getActive() ? 1 : 0);
+        }
+
+        byte[] toByteArray() {
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        void header(int expectedKind) {
+            require(MAGIC.length + 2);
+            for (byte b : MAGIC) {
+                if (buffer[position++] != b) {
+                    throw new IllegalArgumentException("Not sensor data");
+                }
+            }
+            int version = buffer[position++];
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported sensor data version " + version);
+            }
+            int kind = buffer[position++];
+            if (kind != expectedKind) {
+                throw new IllegalArgumentException("Expected record kind " + expectedKind + ", got " + kind);
+            }
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                require(1);
+                byte b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + position);
+        }
+
+        <E extends Enum<E>> E ordinal(E[] values) {
+            int ordinal = varint();
+            if (ordinal < 0 || ordinal >= values.length) {
+                throw new IllegalArgumentException("Unknown " + values.getClass().getComponentType().getSimpleName() + " " + ordinal);
+            }
+            return values[ordinal];
+        }
+
+        long longValue() {
+            require(Long.BYTES);
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        UUID uuid() {
+            return new UUID(longValue(), longValue());
+        }
+
+        String string() {
+            int length = varint();
+            require(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        Sensor sensor() {
+            Sensor sensor = new Sensor();
+            sensor.setSensorId(uuid());
+            sensor.setName(string());
+            sensor.setSensorType(ordinal(SENSOR_TYPES));
+            require(1);
+            sensor.setActive(buffer[position++] != 0);
+            return sensor;
+        }
+
+        void end() {
+            if (position != buffer.length) {
+                throw new IllegalArgumentException((buffer.length - position) + " unexpected trailing bytes");
+            }
+        }
+
+        private void require(int bytes) {
+            if (bytes < 0 || position + bytes > buffer.length) {
+                throw new IllegalArgumentException("Truncated sensor data");
+            }
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.cat.data;
 
 /**
- * List of available sensor types. Not currently used by system, other than for display.
+ * List of available sensor types. Alarm rules can treat each type differently, e.g. ignore
+ * motion sensors while armed at home.
  */
 public enum SensorType {
     DOOR, WINDOW, MOTION
@@ -0,0 +1,36 @@
+package com.cat.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * Queries shared by the repositories that keep their sensors in a set sorted in display order.
+ */
+final class SortedSensors {
+
+    private SortedSensors() {
+    }
+
+    /**
+     * Looks the sensor up by its sort position instead of scanning the whole set.
+     */
+    static boolean isActive(NavigableSet<Sensor> sensors, Sensor sensor) {
+        Sensor stored = sensors.floor(sensor);
+        return stored != null && stored.equals(sensor) && stored.getActive();
+    }
+
+    /**
+     * Walks the sorted set from the previous page's last sensor, so a page costs its own size, not the sensors before it.
+     */
+    static List<Sensor> page(NavigableSet<Sensor> sensors, Sensor after, int limit) {
+        List<Sensor> page = new ArrayList<>(Math.min(limit, sensors.size()));
+        for (Sensor sensor : after == null ? sensors : sensors.tailSet(after, false)) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(sensor);
+        }
+        return page;
+    }
+}
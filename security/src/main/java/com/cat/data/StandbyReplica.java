@@ -0,0 +1,253 @@
+package com.cat.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Standby side of a {@link ReplicatedSecurityRepository}: follows the primary's changes into a local
+ * repository, so that when the primary goes away this node can carry on with the same state straight
+ * away. The primary is considered gone when the connection closes, breaks, or stays silent for longer
+ * than the primary timeout; onPrimaryLost is then called once, on the replication thread, and the
+ * caller takes over by calling {@link #promote()}.
+ *
+ * Snapshots only write what differs from the local state, so a standby that reconnects after a short
+ * outage catches up quickly. Until it is promoted, the local repository must not be used by anyone else.
+ */
+public class StandbyReplica implements AutoCloseable {
+
+    public static final Duration DEFAULT_PRIMARY_TIMEOUT = Duration.ofMillis(500);
+    //acknowledged at least this often while a backlog is applied
+    private static final int MAX_UNACKNOWLEDGED = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SecurityRepository repository;
+    private final Runnable onPrimaryLost;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    //the repository's sensors by id, since upserts may change the fields the repository sorts by
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private final CountDownLatch snapshotApplied = new CountDownLatch(1);
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final Thread follower;
+    private volatile long appliedSequence = -1;
+
+    public StandbyReplica(SecurityRepository repository, InetSocketAddress primary, Runnable onPrimaryLost) throws IOException {
+        this(repository, primary, DEFAULT_PRIMARY_TIMEOUT, onPrimaryLost);
+    }
+
+    /**
+     * Connects to the primary and starts following it.
+     *
+     * @param repository Local repository the primary's state is copied into
+     * @param primary Address the primary accepts standbys on
+     * @param primaryTimeout How long the primary may stay silent, a few of its heartbeat intervals
+     * @param onPrimaryLost Called once when the primary goes away, unless this replica was closed first
+     */
+    public StandbyReplica(SecurityRepository repository, InetSocketAddress primary, Duration primaryTimeout,
+                          Runnable onPrimaryLost) throws IOException {
+        this.repository = repository;
+        this.onPrimaryLost = onPrimaryLost;
+        for (Sensor sensor : repository.getSensors()) {
+            sensors.put(sensor.getSensorId(), sensor);
+        }
+        socket = new Socket();
+        try {
+            socket.connect(primary, (int) primaryTimeout.toMillis());
+            socket.setSoTimeout((int) primaryTimeout.toMillis());
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        follower = Thread.ofVirtual().name("replication-follow").start(this::follow);
+    }
+
+    /**
+     * @return Sequence of the latest change applied, or -1 before the first snapshot
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Waits until the state has been caught up from the primary's first snapshot.
+     *
+     * @return False if that didn't happen within the timeout
+     */
+    public boolean awaitSnapshot(Duration timeout) throws InterruptedException {
+        return snapshotApplied.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return True until the primary is gone or this replica was closed
+     */
+    public boolean isFollowing() {
+        return !stopped.get();
+    }
+
+    /**
+     * Stops following the primary and hands over the local repository, which then holds every change
+     * this replica acknowledged.
+     */
+    public SecurityRepository promote() {
+        close();
+        return repository;
+    }
+
+    private void follow() {
+        int unacknowledged = 0;
+        try {
+            while (true) {
+                ReplicationFrames.Frame frame = ReplicationFrames.read(in);
+                switch (frame.type()) {
+                    case ReplicationFrames.SNAPSHOT -> {
+                        applySnapshot(SensorCodec.decodeSnapshot(frame.payload()));
+                        appliedSequence = frame.sequence();
+                        snapshotApplied.countDown();
+                        unacknowledged++;
+                    }
+                    case ReplicationFrames.DELTA -> {
+                        if (frame.sequence() != appliedSequence + 1) {
+                            throw new IOException("Expected change " + (appliedSequence + 1) + ", got " + frame.sequence());
+                        }
+                        applyDelta(SensorCodec.decodeDelta(frame.payload()));
+                        appliedSequence = frame.sequence();
+                        unacknowledged++;
+                    }
+                    case ReplicationFrames.HEARTBEAT -> {
+                        //nothing to apply, but changes behind it may still need acknowledging
+                    }
+                    default -> throw new IOException("Unexpected replication frame type " + frame.type());
+                }
+                //acknowledged once everything that has arrived is applied, so a burst costs one acknowledgement
+                if (unacknowledged > 0 && (unacknowledged >= MAX_UNACKNOWLEDGED || in.available() == 0)) {
+                    ReplicationFrames.write(out, ReplicationFrames.Frame.empty(ReplicationFrames.ACK, appliedSequence));
+                    out.flush();
+                    unacknowledged = 0;
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            //closed, broken, silent for too long, or sent something this replica can't apply
+        }
+        if (stopped.compareAndSet(false, true)) {
+            closeSocket();
+            onPrimaryLost.run();
+        }
+    }
+
+    private void applySnapshot(SensorCodec.Snapshot snapshot) {
+        Map<UUID, Sensor> incoming = new HashMap<>();
+        for (Sensor sensor : snapshot.sensors()) {
+            incoming.put(sensor.getSensorId(), sensor);
+        }
+        for (Sensor sensor : List.copyOf(sensors.values())) {
+            if (!incoming.containsKey(sensor.getSensorId())) {
+                repository.removeSensor(sensor);
+                sensors.remove(sensor.getSensorId());
+            }
+        }
+        List<Sensor> added = new ArrayList<>();
+        List<Sensor> updated = new ArrayList<>();
+        for (Sensor sensor : snapshot.sensors()) {
+            Sensor current = sensors.get(sensor.getSensorId());
+            if (current == null) {
+                added.add(sensor);
+                sensors.put(sensor.getSensorId(), sensor);
+            } else if (!sameSortKey(current, sensor)) {
+                repository.removeSensor(current);
+                added.add(sensor);
+                sensors.put(sensor.getSensorId(), sensor);
+            } else if (current.getActive() != sensor.getActive()) {
+                current.setActive(sensor.getActive());
+                updated.add(current);
+            }
+        }
+        if (!added.isEmpty()) {
+            repository.addSensors(added);
+        }
+        if (!updated.isEmpty()) {
+            repository.updateSensors(updated);
+        }
+        if (repository.getAlarmStatus() != snapshot.alarmStatus()) {
+            repository.setAlarmStatus(snapshot.alarmStatus());
+        }
+        if (repository.getArmingStatus() != snapshot.armingStatus()) {
+            repository.setArmingStatus(snapshot.armingStatus());
+        }
+    }
+
+    private void applyDelta(SensorCodec.Delta delta) {
+        switch (delta.kind()) {
+            case UPSERT_SENSOR -> {
+                Sensor sensor = delta.sensor();
+                Sensor current = sensors.get(sensor.getSensorId());
+                if (current == null) {
+                    repository.addSensor(sensor);
+                    sensors.put(sensor.getSensorId(), sensor);
+                } else if (!sameSortKey(current, sensor)) {
+                    repository.removeSensor(current);
+                    repository.addSensor(sensor);
+                    sensors.put(sensor.getSensorId(), sensor);
+                } else {
+                    current.setActive(sensor.getActive());
+                    repository.updateSensor(current);
+                }
+            }
+            case REMOVE_SENSOR -> {
+                Sensor current = sensors.remove(delta.sensorId());
+                if (current != null) {
+                    repository.removeSensor(current);
+                }
+            }
+            case ALARM_STATUS -> repository.setAlarmStatus(delta.alarmStatus());
+            case ARMING_STATUS -> repository.setArmingStatus(delta.armingStatus());
+        }
+    }
+
+    //repositories keep sensors in display order, so a renamed sensor has to be removed and added again
+    private static boolean sameSortKey(Sensor current, Sensor sensor) {
+        return current.getName().equals(sensor.getName()) && current.getSensorType() == sensor.getSensorType();
+    }
+
+    /**
+     * Stops following the primary without calling onPrimaryLost. Waits for a change being applied to finish.
+     */
+    @Override
+    public void close() {
+        if (stopped.compareAndSet(false, true)) {
+            closeSocket();
+        }
+        if (Thread.currentThread() != follower) {
+            try {
+                follower.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //already broken
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+
+import java.time.Duration;
+
+/**
+ * What a matching alarm rule does: move the alarm to a new status, or keep the current one, and
+ * how long the entry delay is before a pending alarm escalates on its own. Outcomes are created
+ * once when rules are compiled and shared by every event that hits them.
+ */
+public final class AlarmRuleOutcome {
+
+    /**
+     * Leaves the alarm status as it is.
+     */
+    public static final AlarmRuleOutcome KEEP = new AlarmRuleOutcome(null, Duration.ZERO);
+
+    private final AlarmStatus targetStatus;
+    private final Duration entryDelay;
+
+    /**
+     * @param targetStatus Status to move to, null to keep the current one
+     * @param entryDelay Time to wait before a pending alarm escalates, zero for none
+     */
+    public AlarmRuleOutcome(AlarmStatus targetStatus, Duration entryDelay) {
+        this.targetStatus = targetStatus;
+        this.entryDelay = entryDelay;
+    }
+
+    /**
+     * @param current The current alarm status
+     * @return The alarm status after this outcome
+     */
+    public AlarmStatus apply(AlarmStatus current) {
+        return targetStatus == null ? current : targetStatus;
+    }
+
+    /**
+     * @return Status the rule moves to, null if it keeps the current one
+     */
+    public AlarmStatus getTargetStatus() {
+        return targetStatus;
+    }
+
+    public Duration getEntryDelay() {
+        return entryDelay;
+    }
+
+    @Override
+    public String toString() {
+        String target = targetStatus == null ? "KEEP" : targetStatus.name();
+        return entryDelay.isZero() ? target : target + " delay=" + entryDelay.toMillis() + "ms";
+    }
+}
@@ -0,0 +1,174 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.SensorType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Declarative rules deciding how the alarm status changes when a sensor is activated. Rules are
+ * written one per line:
+ * <pre>
+ * &lt;arming status|*&gt;  &lt;alarm status|*&gt;  &lt;sensor type|*&gt;  -&gt;  &lt;KEEP|alarm status&gt;  [delay=&lt;n&gt;s|&lt;n&gt;ms]
+ * </pre>
+ * Blank lines and anything after a {@code #} are ignored. Each rule sets the outcome for every
+ * combination it matches, so later rules override earlier ones; combinations no rule matches keep
+ * the current alarm status.
+ *
+ * Rules are compiled into a table with one entry per (arming status, alarm status, sensor type), so
+ * evaluating an event is a single array lookup.
+ */
+public final class AlarmRules {
+
+    private static final String DEFAULT_RULES = "default-alarm-rules.txt";
+    private static final ArmingStatus[] ARMING = ArmingStatus.values();
+    private static final AlarmStatus[] ALARM = AlarmStatus.values();
+    private static final SensorType[] TYPES = SensorType.values();
+
+    private final AlarmRuleOutcome[] table;
+
+    private AlarmRules(AlarmRuleOutcome[] table) {
+        this.table = table;
+    }
+
+    /**
+     * The built-in rules: activating any sensor while armed moves the alarm from no alarm to pending
+     * and from pending to alarm.
+     */
+    public static AlarmRules defaults() {
+        try (InputStream in = AlarmRules.class.getResourceAsStream(DEFAULT_RULES)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + DEFAULT_RULES);
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses and compiles rules.
+     *
+     * @throws IllegalArgumentException if a line isn't a valid rule
+     */
+    public static AlarmRules parse(Reader rules) throws IOException {
+        AlarmRuleOutcome[] table = new AlarmRuleOutcome[ARMING.length * ALARM.length * TYPES.length];
+        Arrays.fill(table, AlarmRuleOutcome.KEEP);
+        //identical outcomes share one instance
+        Map<String, AlarmRuleOutcome> outcomes = new HashMap<>();
+        outcomes.put(AlarmRuleOutcome.KEEP.toString(), AlarmRuleOutcome.KEEP);
+
+        BufferedReader reader = new BufferedReader(rules);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String rule = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            try {
+                compileRule(rule, table, outcomes);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return new AlarmRules(table);
+    }
+
+    /**
+     * Parses and compiles rules held in a string.
+     */
+    public static AlarmRules parse(String rules) {
+        try {
+            return parse(new StringReader(rules));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Looks up what happens when a sensor is activated.
+     *
+     * @param armingStatus Current arming status
+     * @param alarmStatus Current alarm status
+     * @param sensorType Type of the activated sensor
+     * @return The outcome of the last rule matching the event
+     */
+    public AlarmRuleOutcome onSensorActivated(ArmingStatus armingStatus, AlarmStatus alarmStatus, SensorType sensorType) {
+        return table[index(armingStatus.ordinal(), alarmStatus.ordinal(), sensorType.ordinal())];
+    }
+
+    private static void compileRule(String rule, AlarmRuleOutcome[] table, Map<String, AlarmRuleOutcome> outcomes) {
+        String[] tokens = rule.split("\\s+");
+        if (tokens.length < 5 || tokens.length > 6 || !tokens[3].equals("->")) {
+            throw new IllegalArgumentException("Expected '<arming> <alarm> <sensor type> -> <outcome> [delay=..]', got '" + rule + "'");
+        }
+        ArmingStatus arming = tokens[0].equals("*") ? null : parseEnum(ArmingStatus.class, tokens[0]);
+        AlarmStatus alarm = tokens[1].equals("*") ? null : parseEnum(AlarmStatus.class, tokens[1]);
+        SensorType type = tokens[2].equals("*") ? null : parseEnum(SensorType.class, tokens[2]);
+        AlarmStatus target = tokens[4].equals("KEEP") ? null : parseEnum(AlarmStatus.class, tokens[4]);
+        Duration delay = tokens.length == 6 ? parseDelay(tokens[5]) : Duration.ZERO;
+
+        AlarmRuleOutcome parsed = new AlarmRuleOutcome(target, delay);
+        AlarmRuleOutcome outcome = outcomes.computeIfAbsent(parsed.toString(), k -> parsed);
+
+        for (ArmingStatus a : ARMING) {
+            if (arming != null && a != arming) {
+                continue;
+            }
+            for (AlarmStatus s : ALARM) {
+                if (alarm != null && s != alarm) {
+                    continue;
+                }
+                for (SensorType t : TYPES) {
+                    if (type == null || t == type) {
+                        table[index(a.ordinal(), s.ordinal(), t.ordinal())] = outcome;
+                    }
+                }
+            }
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String token) {
+        try {
+            return Enum.valueOf(type, token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " '" + token + "'");
+        }
+    }
+
+    private static Duration parseDelay(String token) {
+        if (!token.startsWith("delay=")) {
+            throw new IllegalArgumentException("Expected delay=<n>s or delay=<n>ms, got '" + token + "'");
+        }
+        String value = token.substring("delay=".length());
+        try {
+            if (value.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+            } else if (value.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+            }
+        } catch (NumberFormatException e) {
+            //reported below
+        }
+        throw new IllegalArgumentException("Expected delay=<n>s or delay=<n>ms, got '" + token + "'");
+    }
+
+    private static int index(int arming, int alarm, int type) {
+        return (arming * ALARM.length + alarm) * TYPES.length + type;
+    }
+}
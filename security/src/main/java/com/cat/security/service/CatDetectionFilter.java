@@ -0,0 +1,109 @@
+package com.cat.security.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Smooths per-frame cat detection results so a flickering detector doesn't toggle the alarm.
+ * Each camera keeps a sliding window of its last {@code windowSize} results; a camera starts
+ * reporting a cat once {@code votesToDetect} frames in the window contained one, and stops once
+ * {@code votesToClear} frames in the window didn't. A cat is detected while any camera reports one.
+ */
+public class CatDetectionFilter {
+
+    private final int windowSize;
+    private final int votesToDetect;
+    private final int votesToClear;
+    private final Map<String, CameraWindow> cameras = new HashMap<>();
+    private int camerasReportingCat;
+
+    /**
+     * @param windowSize Number of recent frames per camera that vote
+     * @param votesToDetect Frames in the window that must show a cat before a cat is reported
+     * @param votesToClear Frames in the window that must show no cat before the cat is cleared
+     */
+    public CatDetectionFilter(int windowSize, int votesToDetect, int votesToClear) {
+        if (votesToDetect < 1 || votesToClear < 1 || votesToDetect > windowSize || votesToClear > windowSize) {
+            throw new IllegalArgumentException("Votes must be between 1 and the window size");
+        }
+        this.windowSize = windowSize;
+        this.votesToDetect = votesToDetect;
+        this.votesToClear = votesToClear;
+    }
+
+    /**
+     * A filter that reports every frame's result as is.
+     */
+    public static CatDetectionFilter passThrough() {
+        return new CatDetectionFilter(1, 1, 1);
+    }
+
+    /**
+     * Records the result for one frame.
+     *
+     * @param cameraId Camera the frame came from
+     * @param catInFrame Whether the image service found a cat in the frame
+     * @return Whether a cat is detected on any camera after this frame
+     */
+    public boolean update(String cameraId, boolean catInFrame) {
+        CameraWindow camera = cameras.get(cameraId);
+        if (camera == null) {
+            camera = new CameraWindow(windowSize);
+            cameras.put(cameraId, camera);
+        }
+        boolean before = camera.reportingCat;
+        camera.add(catInFrame, votesToDetect, votesToClear);
+        if (camera.reportingCat != before) {
+            camerasReportingCat += camera.reportingCat ? 1 : -1;
+        }
+        return isCatDetected();
+    }
+
+    /**
+     * @return Whether a cat is detected on any camera
+     */
+    public boolean isCatDetected() {
+        return camerasReportingCat > 0;
+    }
+
+    /**
+     * Forgets all history.
+     */
+    public void reset() {
+        cameras.clear();
+        camerasReportingCat = 0;
+    }
+
+    private static class CameraWindow {
+        private final boolean[] results;
+        private int position;
+        private int count;
+        private int catVotes;
+        private boolean reportingCat;
+
+        CameraWindow(int windowSize) {
+            results = new boolean[windowSize];
+        }
+
+        void add(boolean catInFrame, int votesToDetect, int votesToClear) {
+            if (count == results.length) {
+                if (results[position]) {
+                    catVotes--;
+                }
+            } else {
+                count++;
+            }
+            results[position] = catInFrame;
+            if (catInFrame) {
+                catVotes++;
+            }
+            position = (position + 1) % results.length;
+
+            if (!reportingCat && catVotes >= votesToDetect) {
+                reportingCat = true;
+            } else if (reportingCat && count - catVotes >= votesToClear) {
+                reportingCat = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cat.security.service;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring assigning keys to members. Every member is placed on the ring at
+ * many points, so keys spread evenly and adding or removing a member only moves the keys that
+ * belong to it afterwards or belonged to it before, about 1/n of them.
+ *
+ * @param <M> Member type; its toString() decides where it is placed, so it must be unique and stable
+ */
+public final class ConsistentHashRing<M extends Comparable<M>> {
+
+    public static final int DEFAULT_POINTS_PER_MEMBER = 128;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int pointsPerMember;
+    private final TreeMap<Long, M> points;
+    private final Set<M> members;
+
+    public ConsistentHashRing() {
+        this(DEFAULT_POINTS_PER_MEMBER);
+    }
+
+    public ConsistentHashRing(int pointsPerMember) {
+        this(pointsPerMember, new TreeMap<>(), new TreeSet<>());
+    }
+
+    private ConsistentHashRing(int pointsPerMember, TreeMap<Long, M> points, Set<M> members) {
+        this.pointsPerMember = pointsPerMember;
+        this.points = points;
+        this.members = members;
+    }
+
+    /**
+     * @return A ring that also contains the member
+     */
+    public ConsistentHashRing<M> withMember(M member) {
+        TreeMap<Long, M> newPoints = new TreeMap<>(points);
+        Set<M> newMembers = new TreeSet<>(members);
+        if (newMembers.add(member)) {
+            for (int i = 0; i < pointsPerMember; i++) {
+                //on the rare collision the member that sorts first keeps the point, whatever the order of joining
+                newPoints.merge(hash(member + "#" + i), member, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+        return new ConsistentHashRing<>(pointsPerMember, newPoints, newMembers);
+    }
+
+    /**
+     * @return A ring without the member
+     */
+    public ConsistentHashRing<M> withoutMember(M member) {
+        ConsistentHashRing<M> ring = new ConsistentHashRing<>(pointsPerMember);
+        for (M remaining : members) {
+            if (!remaining.equals(member)) {
+                ring = ring.withMember(remaining);
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * @return The member the key belongs to, or null if the ring is empty
+     */
+    public M memberFor(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, M> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public Set<M> getMembers() {
+        return Set.copyOf(members);
+    }
+
+    private static long hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+}
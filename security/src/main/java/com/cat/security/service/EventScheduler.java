@@ -0,0 +1,256 @@
+package com.cat.security.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owner thread of a SecurityService that takes the calls into it from one bounded queue per
+ * {@link Lane}, always from the most urgent lane that has any. A sensor event therefore waits for
+ * the sensor events ahead of it and at most one task that is already running, however many image
+ * results are queued. Lower lanes only get the thread while the lanes above them are empty.
+ *
+ * Every lane has a latency objective, measured from submitting a task to it having run; tasks that
+ * take longer are counted as misses in the lane's {@link LaneMetrics}. A lane that is full rejects
+ * new tasks rather than delaying everything behind it.
+ *
+ * Wire a service to it with {@code setResultExecutor(scheduler.executor(Lane.IMAGE))} and a
+ * TimingWheel whose callback executor is {@code scheduler.executor(Lane.HOUSEKEEPING)}.
+ */
+public class EventScheduler implements AutoCloseable {
+
+    /**
+     * Kinds of work, most urgent first.
+     */
+    public enum Lane {
+        /** Sensor activations and deactivations, which decide whether the alarm goes off. */
+        SENSOR(1024, Duration.ofMillis(10)),
+        /** Arming and disarming. */
+        ARMING(256, Duration.ofMillis(50)),
+        /** Frames handed in for analysis and the recognition results coming back. */
+        IMAGE(256, Duration.ofMillis(500)),
+        /** Entry and exit delay timers and other bookkeeping. */
+        HOUSEKEEPING(1024, Duration.ofSeconds(1));
+
+        private final Limits defaults;
+
+        Lane(int capacity, Duration latencyObjective) {
+            this.defaults = new Limits(capacity, latencyObjective);
+        }
+
+        public Limits getDefaults() {
+            return defaults;
+        }
+    }
+
+    /**
+     * How many tasks a lane holds, and how soon after submitting each should have run.
+     */
+    public record Limits(int capacity, Duration latencyObjective) {
+        public Limits {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive");
+            }
+            if (latencyObjective.isZero() || latencyObjective.isNegative()) {
+                throw new IllegalArgumentException("Latency objective must be positive");
+            }
+        }
+    }
+
+    /**
+     * Counts of a lane since the scheduler started.
+     *
+     * @param queued Tasks waiting now
+     * @param maxQueued Most tasks that were ever waiting at once
+     * @param latencyObjectiveMisses Tasks that ran later than the lane's latency objective
+     * @param latency Time from submitting to having run, in microseconds
+     */
+    public record LaneMetrics(long submitted, long rejected, long completed, long failed, int queued, int maxQueued,
+                              long latencyObjectiveMisses, LatencyHistogram.Snapshot latency) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final LaneState[] lanes = new LaneState[Lane.values().length];
+    private final Thread owner;
+    private boolean closed;
+
+    /**
+     * Runs tasks on a daemon platform thread, with the default limits of every lane.
+     */
+    public EventScheduler() {
+        this(runnable -> {
+            Thread thread = new Thread(runnable, "security-events");
+            thread.setDaemon(true);
+            return thread;
+        }, Map.of());
+    }
+
+    /**
+     * @param threadFactory Creates the owner thread
+     * @param limits Limits of the lanes that shouldn't use their defaults
+     */
+    public EventScheduler(ThreadFactory threadFactory, Map<Lane, Limits> limits) {
+        Map<Lane, Limits> laneLimits = new EnumMap<>(Lane.class);
+        laneLimits.putAll(limits);
+        for (Lane lane : Lane.values()) {
+            lanes[lane.ordinal()] = new LaneState(laneLimits.getOrDefault(lane, lane.defaults));
+        }
+        owner = threadFactory.newThread(this::run);
+        owner.start();
+    }
+
+    /**
+     * Queues a task on a lane, unless the lane is full or the scheduler is closed.
+     *
+     * @return True if the task was queued
+     */
+    public boolean offer(Lane lane, Runnable task) {
+        LaneState state = lanes[lane.ordinal()];
+        lock.lock();
+        try {
+            if (closed || state.queue.size() >= state.limits.capacity()) {
+                state.rejected++;
+                return false;
+            }
+            state.queue.add(new Task(task, System.nanoTime()));
+            state.submitted++;
+            state.maxQueued = Math.max(state.maxQueued, state.queue.size());
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Executor queuing its tasks on the lane, throwing RejectedExecutionException when it is full
+     */
+    public Executor executor(Lane lane) {
+        return task -> {
+            if (!offer(lane, task)) {
+                throw new RejectedExecutionException(lane + " lane is full");
+            }
+        };
+    }
+
+    public boolean isOwnerThread() {
+        return Thread.currentThread() == owner;
+    }
+
+    public LaneMetrics getMetrics(Lane lane) {
+        LaneState state = lanes[lane.ordinal()];
+        LatencyHistogram.Snapshot latency = new LatencyHistogram.Snapshot();
+        state.latency.copyTo(latency);
+        lock.lock();
+        try {
+            return new LaneMetrics(state.submitted, state.rejected, state.completed, state.failed, state.queue.size(),
+                    state.maxQueued, state.latencyObjectiveMisses, latency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        Task task;
+        LaneState lane;
+        while (true) {
+            lock.lock();
+            try {
+                lane = null;
+                while (lane == null) {
+                    for (LaneState state : lanes) {
+                        if (!state.queue.isEmpty()) {
+                            lane = state;
+                            break;
+                        }
+                    }
+                    if (lane == null) {
+                        if (closed) {
+                            return;
+                        }
+                        notEmpty.awaitUninterruptibly();
+                    }
+                }
+                task = lane.queue.poll();
+            } finally {
+                lock.unlock();
+            }
+
+            boolean failed = false;
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                //the owner thread carries on with the next task; the failure is reported like an uncaught one
+                failed = true;
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+            long latencyNanos = System.nanoTime() - task.submittedAt;
+            lane.latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+            lock.lock();
+            try {
+                lane.completed++;
+                if (failed) {
+                    lane.failed++;
+                }
+                if (latencyNanos > lane.latencyObjectiveNanos) {
+                    lane.latencyObjectiveMisses++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting tasks. Tasks already queued still run; unless called on the owner thread,
+     * waits for them.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (!isOwnerThread()) {
+            try {
+                owner.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record Task(Runnable runnable, long submittedAt) {
+    }
+
+    //counts are guarded by the lock; the histogram records without it
+    private static class LaneState {
+        final Limits limits;
+        final long latencyObjectiveNanos;
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+        final LatencyHistogram latency = new LatencyHistogram();
+        long submitted;
+        long rejected;
+        long completed;
+        long failed;
+        int maxQueued;
+        long latencyObjectiveMisses;
+
+        LaneState(Limits limits) {
+            this.limits = limits;
+            this.latencyObjectiveNanos = limits.latencyObjective().toNanos();
+        }
+    }
+}
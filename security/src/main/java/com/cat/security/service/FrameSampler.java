@@ -0,0 +1,160 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.image.service.ImageService;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which camera frames are worth sending for image analysis. While the system is disarmed
+ * only the occasional frame is analyzed (the result only feeds the cat-detected flag), while armed
+ * with nothing going on frames are analyzed at the idle interval, and as soon as a sensor is active
+ * or the alarm is pending or sounding every frame is analyzed. Full rate is held for a while after
+ * things calm down so a cat moving in and out of view isn't missed.
+ *
+ * Also tracks how many frames were offered and analyzed, and the effective analysis rate over the
+ * last completed reporting window.
+ */
+public class FrameSampler {
+
+    private static final long REPORT_WINDOW_NANOS = Duration.ofSeconds(10).toNanos();
+
+    private final long disarmedIntervalNanos;
+    private final long idleIntervalNanos;
+    private final long holdNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, CameraClock> cameras = new HashMap<>();
+    private long lastHotAt;
+    private boolean hotSeen;
+
+    private long framesOffered;
+    private long framesAnalyzed;
+    private long windowStart;
+    private long windowOffered;
+    private long windowAnalyzed;
+    private double analysisRate;
+    private double offeredRate;
+
+    /**
+     * @param disarmedInterval Minimum time between analyzed frames while disarmed
+     * @param idleInterval Minimum time between analyzed frames while armed and quiet
+     * @param hold How long to keep analyzing every frame after the last sensor activity or pending alarm
+     */
+    public FrameSampler(Duration disarmedInterval, Duration idleInterval, Duration hold) {
+        this(disarmedInterval, idleInterval, hold, System::nanoTime);
+    }
+
+    FrameSampler(Duration disarmedInterval, Duration idleInterval, Duration hold, LongSupplier nanoClock) {
+        this.disarmedIntervalNanos = disarmedInterval.toNanos();
+        this.idleIntervalNanos = idleInterval.toNanos();
+        this.holdNanos = hold.toNanos();
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * A sampler that analyzes every frame.
+     */
+    public static FrameSampler fullRate() {
+        return new FrameSampler(Duration.ZERO, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * Records an offered frame from the default camera and decides whether it should be analyzed.
+     *
+     * @param armingStatus Current arming status
+     * @param alarmStatus Current alarm status
+     * @param sensorActive True if any sensor is currently active
+     * @return True if the frame should be sent for analysis
+     */
+    public boolean shouldAnalyze(ArmingStatus armingStatus, AlarmStatus alarmStatus, boolean sensorActive) {
+        return shouldAnalyze(ImageService.DEFAULT_CAMERA, armingStatus, alarmStatus, sensorActive);
+    }
+
+    /**
+     * Records an offered frame and decides whether it should be analyzed. The interval between
+     * analyzed frames applies to each camera separately.
+     *
+     * @param cameraId Camera the frame came from
+     * @param armingStatus Current arming status
+     * @param alarmStatus Current alarm status
+     * @param sensorActive True if any sensor is currently active
+     * @return True if the frame should be sent for analysis
+     */
+    public boolean shouldAnalyze(String cameraId, ArmingStatus armingStatus, AlarmStatus alarmStatus, boolean sensorActive) {
+        long now = nanoClock.getAsLong();
+        rollWindow(now);
+        framesOffered++;
+        windowOffered++;
+
+        if (armingStatus != ArmingStatus.DISARMED && (sensorActive || alarmStatus != AlarmStatus.NO_ALARM)) {
+            lastHotAt = now;
+            hotSeen = true;
+        }
+
+        long interval;
+        if (armingStatus == ArmingStatus.DISARMED) {
+            interval = disarmedIntervalNanos;
+        } else if (hotSeen && now - lastHotAt <= holdNanos) {
+            interval = 0;
+        } else {
+            interval = idleIntervalNanos;
+        }
+
+        CameraClock camera = cameras.get(cameraId);
+        if (camera == null) {
+            camera = new CameraClock();
+            cameras.put(cameraId, camera);
+        } else if (now - camera.lastAnalyzedAt < interval) {
+            return false;
+        }
+        camera.lastAnalyzedAt = now;
+        framesAnalyzed++;
+        windowAnalyzed++;
+        return true;
+    }
+
+    /**
+     * @return Analyzed frames per second over the last completed reporting window
+     */
+    public double getAnalysisRate() {
+        return analysisRate;
+    }
+
+    /**
+     * @return Offered frames per second over the last completed reporting window
+     */
+    public double getOfferedRate() {
+        return offeredRate;
+    }
+
+    public long getFramesOffered() {
+        return framesOffered;
+    }
+
+    public long getFramesAnalyzed() {
+        return framesAnalyzed;
+    }
+
+    private void rollWindow(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < REPORT_WINDOW_NANOS) {
+            return;
+        }
+        double seconds = elapsed / 1e9;
+        analysisRate = windowAnalyzed / seconds;
+        offeredRate = windowOffered / seconds;
+        windowStart = now;
+        windowOffered = 0;
+        windowAnalyzed = 0;
+    }
+
+    private static class CameraClock {
+        private long lastAnalyzedAt;
+    }
+}
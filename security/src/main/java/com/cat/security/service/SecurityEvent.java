@@ -0,0 +1,54 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.Sensor;
+
+/**
+ * A change to the state of the security system, as published by {@link SecurityEventPublisher}.
+ * Only the field matching the kind is meaningful.
+ *
+ * @param kind What changed
+ * @param alarmStatus The new alarm status, for ALARM_STATUS events
+ * @param armingStatus The new arming status, for ARMING_STATUS events
+ * @param catDetected Whether a cat is now detected, for CAT_DETECTED events
+ * @param sensor The sensor that was added, removed or changed, or null if several sensors changed at once
+ */
+public record SecurityEvent(Kind kind, AlarmStatus alarmStatus, ArmingStatus armingStatus, boolean catDetected,
+                            Sensor sensor) {
+
+    public enum Kind {
+        ALARM_STATUS, ARMING_STATUS, CAT_DETECTED, SENSOR_CHANGED
+    }
+
+    public static SecurityEvent alarmStatus(AlarmStatus alarmStatus) {
+        return new SecurityEvent(Kind.ALARM_STATUS, alarmStatus, null, false, null);
+    }
+
+    public static SecurityEvent armingStatus(ArmingStatus armingStatus) {
+        return new SecurityEvent(Kind.ARMING_STATUS, null, armingStatus, false, null);
+    }
+
+    public static SecurityEvent catDetected(boolean catDetected) {
+        return new SecurityEvent(Kind.CAT_DETECTED, null, null, catDetected, null);
+    }
+
+    public static SecurityEvent sensorChanged(Sensor sensor) {
+        return new SecurityEvent(Kind.SENSOR_CHANGED, null, null, false, sensor);
+    }
+
+    /**
+     * Event telling subscribers that any number of sensors may have changed, e.g. when arming resets them all.
+     */
+    public static SecurityEvent sensorsChanged() {
+        return new SecurityEvent(Kind.SENSOR_CHANGED, null, null, false, null);
+    }
+
+    /**
+     * A pending event is replaced by a newer one with the same key: status events by kind,
+     * sensor events by sensor.
+     */
+    Object conflationKey() {
+        return sensor == null ? kind : sensor.getSensorId();
+    }
+}
@@ -0,0 +1,262 @@
+package com.cat.security.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes {@link SecurityEvent}s to any number of {@link Flow.Subscriber}s. Publishing never blocks:
+ * each subscriber has its own queue of pending events, drained on the executor as fast as the
+ * subscriber requests them. Subscribers only care about the latest state, so a pending event is
+ * replaced by a newer one with the same key instead of queueing behind it, and a subscriber that
+ * falls far behind on sensor changes gets a single "sensors changed" event in their place. Pending
+ * events are delivered in the order they first became pending.
+ */
+public class SecurityEventPublisher implements Flow.Publisher<SecurityEvent>, AutoCloseable {
+
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    private final Executor executor;
+    private final int maxPending;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Delivers on the common pool with up to {@link #DEFAULT_MAX_PENDING} pending events per subscriber.
+     */
+    public SecurityEventPublisher() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param executor Runs the tasks delivering events to subscribers; each subscriber is called by one task at a time
+     * @param maxPending Pending events per subscriber after which pending sensor changes are merged into one
+     */
+    public SecurityEventPublisher(Executor executor, int maxPending) {
+        if (maxPending < SecurityEvent.Kind.values().length) {
+            throw new IllegalArgumentException("maxPending must be at least " + SecurityEvent.Kind.values().length);
+        }
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Subscribes to events published from now on. Subscribing after the publisher is closed completes at once.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super SecurityEvent> subscriber) {
+        Objects.requireNonNull(subscriber);
+        EventSubscription subscription = new EventSubscription(subscriber);
+        if (closed) {
+            subscription.complete();
+            return;
+        }
+        subscriptions.add(subscription);
+        subscription.signal();
+    }
+
+    /**
+     * Hands an event to every current subscriber.
+     */
+    public void publish(SecurityEvent event) {
+        Objects.requireNonNull(event);
+        if (closed) {
+            return;
+        }
+        published.increment();
+        for (EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return Number of events published so far
+     */
+    public long getPublishedEvents() {
+        return published.sum();
+    }
+
+    /**
+     * @return Number of times an event pending for a subscriber was replaced by a newer one, summed over subscribers
+     */
+    public long getConflatedEvents() {
+        return conflated.sum();
+    }
+
+    /**
+     * Stops publishing. Subscribers receive their pending events as they request them and then onComplete.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (EventSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private final class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super SecurityEvent> subscriber;
+        //number of signals not yet handled by the drain loop; only the caller moving it from 0 starts a drain
+        private final AtomicInteger wip = new AtomicInteger();
+
+        //guarded by this
+        private final LinkedHashMap<Object, SecurityEvent> pending = new LinkedHashMap<>();
+        private long demand;
+        private boolean completing;
+        private Throwable error;
+
+        //only touched by the drain loop
+        private boolean started;
+        private boolean done;
+
+        private volatile boolean cancelled;
+
+        EventSubscription(Flow.Subscriber<? super SecurityEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(SecurityEvent event) {
+            synchronized (this) {
+                if (cancelled || completing) {
+                    return;
+                }
+                if (pending.put(event.conflationKey(), event) != null) {
+                    conflated.increment();
+                } else if (pending.size() > maxPending) {
+                    mergeSensorChanges();
+                }
+            }
+            signal();
+        }
+
+        /**
+         * Replaces every pending sensor change with a single event saying sensors changed.
+         */
+        private void mergeSensorChanges() {
+            int merged = 0;
+            for (Iterator<SecurityEvent> it = pending.values().iterator(); it.hasNext(); ) {
+                if (it.next().kind() == SecurityEvent.Kind.SENSOR_CHANGED) {
+                    it.remove();
+                    merged++;
+                }
+            }
+            SecurityEvent sensorsChanged = SecurityEvent.sensorsChanged();
+            pending.put(sensorsChanged.conflationKey(), sensorsChanged);
+            conflated.add(merged - 1);
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Requested " + n + " events, must be positive");
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                pending.clear();
+            }
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            signal();
+        }
+
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                    wip.set(0);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            if (!started) {
+                started = true;
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (Throwable t) {
+                    cancel();
+                }
+            }
+            while (!done) {
+                SecurityEvent next = null;
+                Throwable failure;
+                boolean finished;
+                synchronized (this) {
+                    if (cancelled) {
+                        done = true;
+                        return;
+                    }
+                    failure = error;
+                    finished = completing && pending.isEmpty();
+                    if (failure == null && demand > 0 && !pending.isEmpty()) {
+                        Iterator<SecurityEvent> first = pending.values().iterator();
+                        next = first.next();
+                        first.remove();
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    cancel();
+                    done = true;
+                    subscriber.onError(failure);
+                    return;
+                }
+                if (next == null) {
+                    if (finished) {
+                        cancel();
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                try {
+                    subscriber.onNext(next);
+                } catch (Throwable t) {
+                    //a subscriber that throws is treated as having cancelled
+                    cancel();
+                    done = true;
+                }
+            }
+        }
+    }
+}
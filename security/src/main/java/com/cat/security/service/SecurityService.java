@@ -2,13 +2,23 @@ package com.cat.security.service;
 
 import com.cat.data.AlarmStatus;
 import com.cat.data.ArmingStatus;
+import com.cat.data.HistoryEvent;
+import com.cat.data.HistoryStore;
 import com.cat.data.SecurityRepository;
 import com.cat.data.Sensor;
+import com.cat.data.SensorType;
 import com.cat.image.service.ImageService;
 
 import java.awt.image.BufferedImage;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -18,16 +28,47 @@ import java.util.stream.Collectors;
  */
 public class SecurityService {
 
+    private static final int SENSOR_PAGE_SIZE = 500;
+    //below this many active sensors, arming resets them on the calling thread
+    private static final int PARALLEL_ARMING_THRESHOLD = 8192;
+    //shared by every service; a virtual thread per recognition costs next to nothing while it waits on I/O
+    private static final Executor VIRTUAL_THREADS =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cat-detection-", 1).factory());
+
+    private static final StatusListener[] NO_LISTENERS = new StatusListener[0];
+
     private final ImageService imageService;
     private final SecurityRepository securityRepository;
-    private final Set<StatusListener> statusListeners = new HashSet<>();
-    private final List<Sensor> sensors;
-    private Boolean isCatDetected = false;
+    //copied on every change so notifying them needs no iterator
+    private StatusListener[] statusListeners = NO_LISTENERS;
+    //number of active sensors, counted in the repository the first time it is needed and kept up to date after that
+    private int activeSensorCount = -1;
+    private boolean isCatDetected = false;
+    private FrameSampler frameSampler = FrameSampler.fullRate();
+    private CatDetectionFilter catDetectionFilter = CatDetectionFilter.passThrough();
+    private AlarmRules alarmRules = AlarmRules.defaults();
+    private TimingWheel timingWheel;
+    private HistoryStore historyStore;
+    private SecurityEventPublisher eventPublisher;
+    private ForkJoinPool armingPool = ForkJoinPool.commonPool();
+    private Executor recognitionExecutor = VIRTUAL_THREADS;
+    //no default: results must be applied on the thread that owns this service, which only the caller knows
+    private Executor resultExecutor;
+    private Duration exitDelay = Duration.ZERO;
+    private TimingWheel.Timeout entryDelayTimeout;
+    private TimingWheel.Timeout exitDelayTimeout;
+    //bumped whenever a delay is started or cancelled, so callbacks already queued can tell they are stale
+    private long entryDelayGeneration;
+    private long exitDelayGeneration;
+    //smoothed cat detection result listeners were last told about, null before the first
+    private Boolean notifiedCatDetected;
+    private long suppressedAlarmWrites;
+    private long suppressedArmingWrites;
+    private long suppressedSensorWrites;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
-        sensors = new ArrayList<>(securityRepository.getSensors());
     }
 
     /**
@@ -36,17 +77,22 @@ public class SecurityService {
      *
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
-        List<Sensor> activeSensors = getActiveSensors();
-
-        if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (activeSensors.isEmpty()) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        } else {
+    private void catDetected(boolean cat) {
+        boolean catWhileArmedHome = cat && getArmingStatus() == ArmingStatus.ARMED_HOME;
+        if (!catWhileArmedHome && hasActiveSensors()) {
             return;
         }
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        applyAlarmStatus(catWhileArmedHome ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+        if (notifiedCatDetected != null && notifiedCatDetected == cat) {
+            return;
+        }
+        notifiedCatDetected = cat;
+        if (eventPublisher != null) {
+            eventPublisher.publish(SecurityEvent.catDetected(cat));
+        }
+        for (StatusListener statusListener : statusListeners) {
+            statusListener.catDetected(cat);
+        }
     }
 
     /**
@@ -55,101 +101,432 @@ public class SecurityService {
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        if (indexOf(statusListener) < 0) {
+            statusListeners = Arrays.copyOf(statusListeners, statusListeners.length + 1);
+            statusListeners[statusListeners.length - 1] = statusListener;
+        }
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        int index = indexOf(statusListener);
+        if (index < 0) {
+            return;
+        }
+        StatusListener[] remaining = new StatusListener[statusListeners.length - 1];
+        System.arraycopy(statusListeners, 0, remaining, 0, index);
+        System.arraycopy(statusListeners, index + 1, remaining, index, remaining.length - index);
+        statusListeners = remaining.length == 0 ? NO_LISTENERS : remaining;
+    }
+
+    private int indexOf(StatusListener statusListener) {
+        for (int i = 0; i < statusListeners.length; i++) {
+            if (statusListeners[i].equals(statusListener)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Internal method computing the alarm status after a sensor has been activated, as decided by the alarm rules.
+     * Activations are ignored during the exit delay. If the rule going to a pending alarm has an entry delay,
+     * the alarm escalates on its own once the delay has passed.
      */
-    private void handleSensorActivated() {
-        if (securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
+    private AlarmStatus alarmStatusAfterSensorActivated(Sensor sensor, AlarmStatus alarmStatus) {
+        if (exitDelayTimeout != null) {
+            return alarmStatus;
         }
-        switch (securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+        AlarmRuleOutcome outcome = alarmRules.onSensorActivated(getArmingStatus(), alarmStatus, sensor.getSensorType());
+        AlarmStatus next = outcome.apply(alarmStatus);
+        if (next == AlarmStatus.PENDING_ALARM && alarmStatus != AlarmStatus.PENDING_ALARM
+                && timingWheel != null && !outcome.getEntryDelay().isZero()) {
+            cancelEntryDelay();
+            long generation = ++entryDelayGeneration;
+            entryDelayTimeout = timingWheel.schedule(() -> entryDelayExpired(generation), outcome.getEntryDelay());
         }
-
+        return next;
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Internal method escalating a pending alarm whose entry delay ran out without the system being disarmed.
      */
-    private void handleSensorDeactivated() {
-        List<Sensor> activeSensors = getActiveSensors();
-        if (activeSensors.size() > 0)
+    private void entryDelayExpired(long generation) {
+        if (generation != entryDelayGeneration) {
             return;
+        }
+        entryDelayTimeout = null;
+        if (getAlarmStatus() == AlarmStatus.PENDING_ALARM && getArmingStatus() != ArmingStatus.DISARMED) {
+            applyAlarmStatus(AlarmStatus.ALARM);
+        }
+    }
+
+    private void exitDelayExpired(long generation) {
+        if (generation == exitDelayGeneration) {
+            exitDelayTimeout = null;
+        }
+    }
 
-        if (Objects.requireNonNull(securityRepository.getAlarmStatus()) == AlarmStatus.PENDING_ALARM) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+    private void cancelEntryDelay() {
+        if (entryDelayTimeout != null) {
+            entryDelayTimeout.cancel();
+            entryDelayTimeout = null;
+            entryDelayGeneration++;
         }
     }
 
-    private List<Sensor> getActiveSensors() {
-        return sensors.stream().filter(Sensor::getActive).collect(Collectors.toList());
+    private void cancelExitDelay() {
+        if (exitDelayTimeout != null) {
+            exitDelayTimeout.cancel();
+            exitDelayTimeout = null;
+            exitDelayGeneration++;
+        }
+    }
+
+    /**
+     * Internal method computing the alarm status after a sensor has been deactivated
+     */
+    private AlarmStatus alarmStatusAfterSensorDeactivated(AlarmStatus alarmStatus) {
+        if (alarmStatus == AlarmStatus.PENDING_ALARM && !hasActiveSensors()) {
+            return AlarmStatus.NO_ALARM;
+        }
+        return alarmStatus;
+    }
+
+    private int activeSensorCount() {
+        if (activeSensorCount < 0) {
+            activeSensorCount = securityRepository.getActiveSensors().size();
+        }
+        return activeSensorCount;
+    }
+
+    private boolean hasActiveSensors() {
+        return activeSensorCount() > 0;
+    }
+
+    private void countActivation(boolean active) {
+        if (activeSensorCount < 0) {
+            return; //counted in the repository, which is already up to date, when first needed
+        }
+        activeSensorCount += active ? 1 : -1;
     }
 
     /**
      * Change the activation status for the specified sensor and update alarm status if necessary.
+     * The sensor is only persisted if its activation status actually changed.
      *
      * @param sensor
      * @param active
      */
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if (!sensor.getActive() && active) {
-            sensor.setActive(active);
-            handleSensorActivated();
-        } else if (sensor.getActive() && !active) {
-            sensor.setActive(active);
-            handleSensorDeactivated();
-        } else if (!sensor.getActive() && !active) {
-            sensor.setActive(active);
-            handleSensorDeactivated();
+    public void changeSensorActivationStatus(Sensor sensor, boolean active) {
+        //the caller's sensor may be a stale copy, e.g. one the panel held while arming reset the stored one
+        boolean wasActive = securityRepository.isSensorActive(sensor);
+        sensor.setActive(active);
+        //persisted before the alarm status is worked out, which needs the active sensors to be up to date
+        if (wasActive != active) {
+            securityRepository.updateSensor(sensor);
+            countActivation(active);
+            if (historyStore != null) {
+                historyStore.record(HistoryEvent.sensorActivation(System.currentTimeMillis(), sensor.getSensorId(), active));
+            }
+            if (eventPublisher != null) {
+                eventPublisher.publish(SecurityEvent.sensorChanged(sensor));
+            }
+        } else {
+            suppressedSensorWrites++;
+        }
+
+        AlarmStatus alarmStatus = getAlarmStatus();
+        if (!wasActive && active) {
+            alarmStatus = alarmStatusAfterSensorActivated(sensor, alarmStatus);
+        } else if (!active) {
+            alarmStatus = alarmStatusAfterSensorDeactivated(alarmStatus);
         }
-        securityRepository.updateSensor(sensor);
+        applyAlarmStatus(alarmStatus);
     }
 
     /**
      * Send an image to the SecurityService for processing. The securityService will use it's provided
      * ImageService to analyze the image for cats and update the alarm status accordingly.
+     * Frames the FrameSampler decides to skip are dropped without changing any state.
      *
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        isCatDetected = imageService.imageContainsCat(currentCameraImage, 50.0f);
+        if (!frameSampler.shouldAnalyze(getArmingStatus(), getAlarmStatus(), hasActiveSensors())) {
+            return;
+        }
+        applyCatDetection(ImageService.DEFAULT_CAMERA, imageService.imageContainsCat(currentCameraImage, 50.0f));
+    }
+
+    /**
+     * Send an image from a specific camera for processing. Sampling and detection smoothing are
+     * applied per camera; a cat is detected while any camera sees one.
+     *
+     * @param cameraId The camera the image came from
+     * @param currentCameraImage
+     */
+    public void processImage(String cameraId, BufferedImage currentCameraImage) {
+        if (!frameSampler.shouldAnalyze(cameraId, getArmingStatus(), getAlarmStatus(), hasActiveSensors())) {
+            return;
+        }
+        applyCatDetection(cameraId, imageService.imageContainsCat(cameraId, currentCameraImage, 50.0f));
+    }
+
+    /**
+     * Same as {@link #processImage(String, BufferedImage)}, but the ImageService is called on the
+     * recognition executor so the caller never waits on it. The result is applied on the result
+     * executor; results of frames analyzed at the same time are applied in the order they finish.
+     *
+     * @param cameraId The camera the image came from
+     * @param currentCameraImage
+     * @return Completes once the result has been applied, or exceptionally if recognition failed
+     * @throws IllegalStateException if no result executor was set
+     */
+    public CompletableFuture<Void> processImageAsync(String cameraId, BufferedImage currentCameraImage) {
+        if (resultExecutor == null) {
+            throw new IllegalStateException("Set a result executor before processing images asynchronously");
+        }
+        if (!frameSampler.shouldAnalyze(cameraId, getArmingStatus(), getAlarmStatus(), hasActiveSensors())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture
+                .supplyAsync(() -> imageService.imageContainsCat(cameraId, currentCameraImage, 50.0f), recognitionExecutor)
+                .thenAcceptAsync(catInFrame -> applyCatDetection(cameraId, catInFrame), resultExecutor);
+    }
+
+    /**
+     * Runs a frame result through the CatDetectionFilter and decides the alarm status on the smoothed
+     * result. Listeners and the publisher only hear about it when it differs from what they were last told.
+     */
+    private void applyCatDetection(String cameraId, boolean catInFrame) {
+        isCatDetected = catDetectionFilter.update(cameraId, catInFrame);
         catDetected(isCatDetected);
     }
 
+    /**
+     * Replace the sampler deciding which frames passed to processImage are analyzed. By default every frame is.
+     *
+     * @param frameSampler
+     */
+    public void setFrameSampler(FrameSampler frameSampler) {
+        this.frameSampler = frameSampler;
+    }
+
+    public FrameSampler getFrameSampler() {
+        return frameSampler;
+    }
+
+    /**
+     * Replace the filter that smooths per-frame detection results. By default every result counts.
+     *
+     * @param catDetectionFilter
+     */
+    public void setCatDetectionFilter(CatDetectionFilter catDetectionFilter) {
+        this.catDetectionFilter = catDetectionFilter;
+        notifiedCatDetected = null;
+    }
+
+    /**
+     * Replace the rules deciding how sensor activations change the alarm status. By default
+     * any sensor activated while armed raises the alarm.
+     *
+     * @param alarmRules
+     */
+    public void setAlarmRules(AlarmRules alarmRules) {
+        this.alarmRules = alarmRules;
+    }
+
+    public AlarmRules getAlarmRules() {
+        return alarmRules;
+    }
+
+    /**
+     * Set the timer driving entry and exit delays. Its callback executor must run tasks on the thread
+     * that calls into this service. Without a timer, delays have no effect.
+     *
+     * @param timingWheel
+     */
+    public void setTimingWheel(TimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
+    }
+
+    /**
+     * Set the pool that resets sensors in parallel when a system with many active sensors is armed.
+     * By default the common pool is used.
+     *
+     * @param armingPool
+     */
+    public void setArmingPool(ForkJoinPool armingPool) {
+        this.armingPool = armingPool;
+    }
+
+    /**
+     * Set where processImageAsync calls the ImageService. By default every call gets its own virtual thread.
+     *
+     * @param recognitionExecutor
+     */
+    public void setRecognitionExecutor(Executor recognitionExecutor) {
+        this.recognitionExecutor = recognitionExecutor;
+    }
+
+    /**
+     * Set where processImageAsync applies recognition results: an executor running tasks on the thread
+     * that owns this service, such as the event dispatch thread. Required before processImageAsync is used.
+     *
+     * @param resultExecutor
+     */
+    public void setResultExecutor(Executor resultExecutor) {
+        this.resultExecutor = resultExecutor;
+    }
+
+    /**
+     * Set the store that alarm status, arming status and sensor activation changes are recorded in.
+     * By default no history is kept.
+     *
+     * @param historyStore
+     */
+    public void setHistoryStore(HistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    /**
+     * Set the publisher that alarm, arming, cat detection and sensor changes are published to, for
+     * subscribers that should not run on the thread calling this service. By default nothing is published.
+     *
+     * @param eventPublisher
+     */
+    public void setEventPublisher(SecurityEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Set how long after arming sensor activations are ignored, so people can leave. Needs a timing wheel.
+     *
+     * @param exitDelay
+     */
+    public void setExitDelay(Duration exitDelay) {
+        this.exitDelay = exitDelay;
+    }
+
     public AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
     }
 
     /**
-     * Change the alarm status of the system and notify all listeners.
+     * Change the alarm status of the system and notify all listeners. Nothing is persisted
+     * and no one is notified if the status doesn't change.
      *
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
+        applyAlarmStatus(status);
+    }
+
+    /**
+     * Single point where a computed alarm status is committed: persisted and announced at most
+     * once, and only if it differs from the current one.
+     */
+    private void applyAlarmStatus(AlarmStatus status) {
+        if (status == securityRepository.getAlarmStatus()) {
+            suppressedAlarmWrites++;
+            return;
+        }
+        if (status != AlarmStatus.PENDING_ALARM) {
+            cancelEntryDelay();
+        }
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        //events are only built when someone takes them, so a plain alarm change allocates nothing
+        if (historyStore != null) {
+            historyStore.record(HistoryEvent.alarmStatus(System.currentTimeMillis(), status));
+        }
+        if (eventPublisher != null) {
+            eventPublisher.publish(SecurityEvent.alarmStatus(status));
+        }
+        for (StatusListener statusListener : statusListeners) {
+            statusListener.notify(status);
+        }
+    }
+
+    /**
+     * @return Number of alarm status changes that were skipped because the status was already set
+     */
+    public long getSuppressedAlarmWrites() {
+        return suppressedAlarmWrites;
+    }
+
+    /**
+     * @return Number of arming status changes that were skipped because the status was already set
+     */
+    public long getSuppressedArmingWrites() {
+        return suppressedArmingWrites;
+    }
+
+    /**
+     * @return Number of sensor writes that were skipped because the activation status didn't change
+     */
+    public long getSuppressedSensorWrites() {
+        return suppressedSensorWrites;
     }
 
+    /**
+     * Loads every sensor. For large installations prefer {@link #streamSensors()} or the filtered views.
+     *
+     * @return A read-only view of the sensors
+     */
     public Set<Sensor> getSensors() {
-        return securityRepository.getSensors();
+        return Collections.unmodifiableSet(securityRepository.getSensors());
+    }
+
+    public int getSensorCount() {
+        return securityRepository.getSensorCount();
+    }
+
+    /**
+     * Streams the sensors in display order, loading them from the repository a page at a time as the
+     * stream is consumed.
+     */
+    public Stream<Sensor> streamSensors() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new SensorCursor(securityRepository, SENSOR_PAGE_SIZE),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns sensors in display order, a page at a time.
+     *
+     * @param after Last sensor of the previous page, or null for the first page
+     * @param limit Maximum number of sensors to return
+     */
+    public List<Sensor> getSensorsPage(Sensor after, int limit) {
+        return Collections.unmodifiableList(securityRepository.getSensorsPage(after, limit));
+    }
+
+    public List<Sensor> getSensorsByType(SensorType sensorType) {
+        return Collections.unmodifiableList(securityRepository.getSensorsByType(sensorType));
+    }
+
+    public List<Sensor> getActiveSensors() {
+        return Collections.unmodifiableList(securityRepository.getActiveSensors());
     }
 
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
         securityRepository.addSensor(sensor);
+        if (sensor.getActive()) {
+            countActivation(true);
+        }
+        if (eventPublisher != null) {
+            eventPublisher.publish(SecurityEvent.sensorChanged(sensor));
+        }
     }
 
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
+        boolean wasActive = securityRepository.isSensorActive(sensor);
         securityRepository.removeSensor(sensor);
+        if (wasActive) {
+            countActivation(false);
+        }
+        if (eventPublisher != null) {
+            eventPublisher.publish(SecurityEvent.sensorChanged(sensor));
+        }
     }
 
     public ArmingStatus getArmingStatus() {
@@ -158,19 +535,145 @@ public class SecurityService {
 
     /**
      * Sets the current arming status for the system. Changing the arming status
-     * may update both the alarm status.
+     * may update both the alarm status. Arming resets all sensors to inactive.
+     * The final alarm status is worked out first and then applied once.
      *
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
+        AlarmStatus alarmStatus = getAlarmStatus();
         if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+            alarmStatus = AlarmStatus.NO_ALARM;
         } else {
-            sensors.forEach(sensor -> changeSensorActivationStatus(sensor, false));
+            //-1 means not counted yet; the active sensors are fetched to reset them either way
+            if (activeSensorCount != 0) {
+                deactivateAll(securityRepository.getActiveSensors());
+                activeSensorCount = 0;
+            }
+            if (securityRepository.getSensorCount() > 0) {
+                alarmStatus = alarmStatusAfterSensorDeactivated(alarmStatus);
+            }
         }
         if (isCatDetected && armingStatus == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
+            alarmStatus = AlarmStatus.ALARM;
+        }
+
+        ArmingStatus previousArmingStatus = securityRepository.getArmingStatus();
+        if (armingStatus == ArmingStatus.DISARMED) {
+            cancelExitDelay();
+            cancelEntryDelay();
+        } else if (previousArmingStatus == ArmingStatus.DISARMED && timingWheel != null && !exitDelay.isZero()) {
+            cancelExitDelay();
+            long generation = ++exitDelayGeneration;
+            exitDelayTimeout = timingWheel.schedule(() -> exitDelayExpired(generation), exitDelay);
+        }
+
+        if (armingStatus != previousArmingStatus) {
+            securityRepository.setArmingStatus(armingStatus);
+            if (historyStore != null) {
+                historyStore.record(HistoryEvent.armingStatus(System.currentTimeMillis(), armingStatus));
+            }
+            if (eventPublisher != null) {
+                eventPublisher.publish(SecurityEvent.armingStatus(armingStatus));
+            }
+        } else {
+            suppressedArmingWrites++;
+        }
+        applyAlarmStatus(alarmStatus);
+    }
+
+    /**
+     * Internal method resetting every active sensor when the system is armed. Large sets are split
+     * across the arming pool; the changes are then persisted in one bulk update.
+     */
+    private void deactivateAll(List<Sensor> active) {
+        if (active.isEmpty()) {
+            return;
+        }
+        if (active.size() >= PARALLEL_ARMING_THRESHOLD) {
+            armingPool.invoke(new DeactivateTask(active, 0, active.size()));
+        } else {
+            for (Sensor sensor : active) {
+                sensor.setActive(false);
+            }
+        }
+        securityRepository.updateSensors(active);
+        if (eventPublisher != null) {
+            eventPublisher.publish(SecurityEvent.sensorsChanged());
+        }
+        if (historyStore != null) {
+            long now = System.currentTimeMillis();
+            for (Sensor sensor : active) {
+                historyStore.record(HistoryEvent.sensorActivation(now, sensor.getSensorId(), false));
+            }
+        }
+    }
+
+    /**
+     * Clears the active flag of a range of sensors, splitting the range until it is small enough.
+     */
+    @SuppressWarnings("serial")
+    private static class DeactivateTask extends RecursiveAction {
+        private static final int LEAF_SIZE = 2048;
+
+        private final List<Sensor> sensors;
+        private final int from;
+        private final int to;
+
+        DeactivateTask(List<Sensor> sensors, int from, int to) {
+            this.sensors = sensors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    sensors.get(i).setActive(false);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DeactivateTask(sensors, from, middle), new DeactivateTask(sensors, middle, to));
+        }
+    }
+
+    /**
+     * Walks the repository's sensors in display order, fetching the next page when the current one runs out.
+     */
+    private static class SensorCursor implements Iterator<Sensor> {
+        private final SecurityRepository repository;
+        private final int pageSize;
+        private List<Sensor> page = List.of();
+        private int position;
+        private boolean lastPage;
+
+        SensorCursor(SecurityRepository repository, int pageSize) {
+            this.repository = repository;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < page.size()) {
+                return true;
+            }
+            if (lastPage) {
+                return false;
+            }
+            page = repository.getSensorsPage(page.isEmpty() ? null : page.get(page.size() - 1), pageSize);
+            position = 0;
+            lastPage = page.size() < pageSize;
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Sensor next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(position++);
         }
-        securityRepository.setArmingStatus(armingStatus);
     }
 }
@@ -0,0 +1,94 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import com.cat.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the hot paths of a node before it accepts events, so the JIT has compiled them by the time the
+ * first real sensor event arrives. The events go through a throwaway SecurityService, which should be
+ * wired like the node's own: code compiled for a service without listeners or a publisher, say, is
+ * thrown away again when the real service takes a branch the warm-up never did.
+ */
+public final class ServiceWarmup {
+
+    /** Configuration key for the number of rounds to run before accepting events, 0 or missing for none */
+    public static final String ITERATIONS_PROPERTY = "catpoint.warmup.iterations";
+
+    private static final int SENSORS = 16;
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private ServiceWarmup() {
+    }
+
+    /**
+     * Image service for the throwaway service. It never calls a real recognizer, which may be remote
+     * and charge per call, and finds a cat in every other frame, so both outcomes get compiled.
+     */
+    public static ImageService recognizer() {
+        return new AlternatingRecognizer();
+    }
+
+    /**
+     * Adds sensors to the service, trips and resets them in every arming status and feeds it a frame
+     * while they are active and another after they are reset, then removes the sensors again and
+     * restores its alarm and arming status.
+     *
+     * @param service A service wired like the node's own (same listeners, rules and collaborators)
+     *                but over a scratch repository, since it is changed thousands of times
+     * @param iterations Rounds to run; a few thousand are enough for the C2 compiler to take over
+     * @return Time spent
+     */
+    public static Duration run(SecurityService service, int iterations) {
+        long start = System.nanoTime();
+        if (iterations <= 0) {
+            return Duration.ZERO;
+        }
+        AlarmStatus alarmStatus = service.getAlarmStatus();
+        ArmingStatus armingStatus = service.getArmingStatus();
+        List<Sensor> sensors = new ArrayList<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("Warmup " + i, types[i % types.length]);
+            service.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+        for (int i = 0; i < iterations; i++) {
+            service.setArmingStatus(ARMING_STATUSES[i % ARMING_STATUSES.length]);
+            for (Sensor sensor : sensors) {
+                service.changeSensorActivationStatus(sensor, true);
+            }
+            service.processImage(ImageService.DEFAULT_CAMERA, frame);
+            for (Sensor sensor : sensors) {
+                service.changeSensorActivationStatus(sensor, false);
+            }
+            //with no sensor active, a frame without a cat reaches the alarm and the listeners too
+            service.processImage(ImageService.DEFAULT_CAMERA, frame);
+            service.setAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+
+        sensors.forEach(service::removeSensor);
+        service.setArmingStatus(armingStatus);
+        service.setAlarmStatus(alarmStatus);
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private static class AlternatingRecognizer implements ImageService {
+        private boolean catInFrame;
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            catInFrame = !catInFrame;
+            return catInFrame;
+        }
+    }
+}
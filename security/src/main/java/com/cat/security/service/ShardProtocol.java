@@ -0,0 +1,94 @@
+package com.cat.security.service;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Requests a {@link ShardRouter} sends to a {@link ShardWorker}. Every request is a type byte and the
+ * premises id, followed by:
+ * <pre>
+ * ADD_SENSOR        a SensorCodec upsert delta, length-prefixed
+ * SENSOR_ACTIVATION sensor id as two longs, active as a boolean
+ * ARMING_STATUS     arming status ordinal
+ * IMAGE             camera id, width, height and the RGB pixels as ints
+ * STATUS            nothing
+ * RELEASE           nothing; the worker answers with the premises' snapshot and forgets it
+ * ADOPT             a SensorCodec snapshot, length-prefixed, that the worker takes the premises over from
+ * </pre>
+ * Every reply starts with OK or FAILED. FAILED is followed by a message. OK is followed by the
+ * premises' alarm and arming status ordinals, except for RELEASE, where it is followed by the
+ * length-prefixed snapshot, or length -1 if the worker didn't have the premises.
+ */
+final class ShardProtocol {
+
+    static final byte ADD_SENSOR = 1;
+    static final byte SENSOR_ACTIVATION = 2;
+    static final byte ARMING_STATUS = 3;
+    static final byte IMAGE = 4;
+    static final byte STATUS = 5;
+    static final byte RELEASE = 6;
+    static final byte ADOPT = 7;
+
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+
+    //well above the snapshot of any real installation, but stops a corrupt length from exhausting the heap
+    private static final int MAX_BYTES = 256 << 20;
+
+    private ShardProtocol() {
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return The bytes, or null if the length was -1
+     */
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_BYTES) {
+            throw new IOException("Bad length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeImage(DataOutputStream out, BufferedImage image) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        out.writeInt(width);
+        out.writeInt(height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int pixel : row) {
+                out.writeInt(pixel);
+            }
+        }
+    }
+
+    static BufferedImage readImage(DataInputStream in) throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        if (width <= 0 || height <= 0 || (long) width * height * Integer.BYTES > MAX_BYTES) {
+            throw new IOException("Bad image size " + width + "x" + height);
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = in.readInt();
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
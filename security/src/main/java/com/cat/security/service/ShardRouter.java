@@ -0,0 +1,339 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.Sensor;
+import com.cat.data.SensorCodec;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spreads premises over {@link ShardWorker} processes. Sensor, arming and image events are routed by
+ * premises id on a {@link ConsistentHashRing} of the workers. When a worker joins or leaves, only the
+ * premises whose owner changes are moved: the old owner releases each one as a SensorCodec snapshot
+ * and the new owner adopts it, while events wait for the move to finish. A change either moves all
+ * of them or none: if a worker fails part way, the snapshots released so far go back to their old
+ * owners and the change fails, leaving the ring as it was.
+ *
+ * Calls to different workers proceed in parallel; calls to one worker share its connection and
+ * take turns. A worker that can't be reached makes calls fail with an UncheckedIOException;
+ * removing it moves its premises to the remaining workers, starting from an empty state since the
+ * snapshot can't be fetched.
+ */
+public class ShardRouter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    /**
+     * State of a premises after an event was applied.
+     */
+    public record Status(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+    }
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    //every premises routed so far, so a membership change knows what to move
+    private final Set<String> premises = ConcurrentHashMap.newKeySet();
+    //events take the read lock, membership changes the write lock
+    private final ReadWriteLock membership = new ReentrantReadWriteLock();
+    private volatile ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+    private long premisesMoved;
+
+    public ShardRouter(Collection<InetSocketAddress> workers) throws IOException {
+        for (InetSocketAddress worker : workers) {
+            String id = memberId(worker);
+            connections.put(id, new Connection(worker));
+            ring = ring.withMember(id);
+        }
+    }
+
+    public Status addSensor(String premisesId, Sensor sensor) {
+        byte[] delta = SensorCodec.encodeDelta(SensorCodec.Delta.upsert(sensor));
+        return route(premisesId, ShardProtocol.ADD_SENSOR, out -> ShardProtocol.writeBytes(out, delta));
+    }
+
+    public Status changeSensorActivationStatus(String premisesId, UUID sensorId, boolean active) {
+        return route(premisesId, ShardProtocol.SENSOR_ACTIVATION, out -> {
+            out.writeLong(sensorId.getMostSignificantBits());
+            out.writeLong(sensorId.getLeastSignificantBits());
+            out.writeBoolean(active);
+        });
+    }
+
+    public Status setArmingStatus(String premisesId, ArmingStatus armingStatus) {
+        return route(premisesId, ShardProtocol.ARMING_STATUS, out -> out.writeByte(armingStatus.ordinal()));
+    }
+
+    public Status processImage(String premisesId, String cameraId, BufferedImage image) {
+        return route(premisesId, ShardProtocol.IMAGE, out -> {
+            out.writeUTF(cameraId);
+            ShardProtocol.writeImage(out, image);
+        });
+    }
+
+    public Status getStatus(String premisesId) {
+        return route(premisesId, ShardProtocol.STATUS, out -> {
+        });
+    }
+
+    /**
+     * @return Address of the worker the premises currently belongs to
+     */
+    public InetSocketAddress ownerOf(String premisesId) {
+        return owner(premisesId).address;
+    }
+
+    /**
+     * @return Number of premises moved between workers by membership changes so far
+     */
+    public long getPremisesMoved() {
+        membership.readLock().lock();
+        try {
+            return premisesMoved;
+        } finally {
+            membership.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a worker and moves the premises that now belong to it over from their old owners.
+     *
+     * @return Number of premises moved
+     */
+    public int addWorker(InetSocketAddress worker) throws IOException {
+        String id = memberId(worker);
+        Connection connection = new Connection(worker);
+        membership.writeLock().lock();
+        try {
+            if (connections.putIfAbsent(id, connection) != null) {
+                connection.close();
+                return 0;
+            }
+            try {
+                return rebalance(ring.withMember(id));
+            } catch (RuntimeException e) {
+                connections.remove(id);
+                connection.close();
+                throw e;
+            }
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a worker, moving its premises to the workers that own them now. A worker that can't be
+     * reached any more loses its premises' state.
+     *
+     * @return Number of premises moved
+     */
+    public int removeWorker(InetSocketAddress worker) {
+        String id = memberId(worker);
+        membership.writeLock().lock();
+        try {
+            if (!connections.containsKey(id)) {
+                return 0;
+            }
+            if (connections.size() == 1 && !premises.isEmpty()) {
+                throw new IllegalStateException("The last worker can't be removed while it has premises");
+            }
+            int moved = rebalance(ring.withoutMember(id));
+            connections.remove(id).close();
+            return moved;
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    //called holding the write lock; every premises whose owner changes is released first, then adopted
+    private int rebalance(ConsistentHashRing<String> next) {
+        Map<String, byte[]> released = new LinkedHashMap<>();
+        List<String> adopted = new ArrayList<>();
+        try {
+            for (String premisesId : premises) {
+                String from = ring.memberFor(premisesId);
+                if (!from.equals(next.memberFor(premisesId))) {
+                    released.put(premisesId, release(connections.get(from), premisesId));
+                }
+            }
+            for (Map.Entry<String, byte[]> move : released.entrySet()) {
+                byte[] snapshot = move.getValue();
+                if (snapshot != null) {
+                    connections.get(next.memberFor(move.getKey()))
+                            .call(ShardProtocol.ADOPT, move.getKey(), out -> ShardProtocol.writeBytes(out, snapshot));
+                    adopted.add(move.getKey());
+                }
+            }
+        } catch (RuntimeException e) {
+            restore(released, adopted, next, e);
+            throw e;
+        }
+        ring = next;
+        premisesMoved += released.size();
+        return released.size();
+    }
+
+    /**
+     * Undoes a failed rebalance: premises already adopted are released by their new owners again and
+     * every snapshot goes back to the old owner. Failures on the way are added to the cause.
+     */
+    private void restore(Map<String, byte[]> released, List<String> adopted, ConsistentHashRing<String> next,
+                         RuntimeException cause) {
+        for (String premisesId : adopted) {
+            try {
+                connections.get(next.memberFor(premisesId)).release(premisesId);
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        released.forEach((premisesId, snapshot) -> {
+            if (snapshot == null) {
+                return;
+            }
+            try {
+                connections.get(ring.memberFor(premisesId))
+                        .call(ShardProtocol.ADOPT, premisesId, out -> ShardProtocol.writeBytes(out, snapshot));
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        });
+    }
+
+    /**
+     * @return The premises' snapshot, or null if its owner didn't have it or is gone, and with it the state
+     */
+    private static byte[] release(Connection owner, String premisesId) {
+        try {
+            return owner.release(premisesId);
+        } catch (UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    private Status route(String premisesId, byte type, Body body) {
+        membership.readLock().lock();
+        try {
+            premises.add(premisesId);
+            return owner(premisesId).call(type, premisesId, body);
+        } finally {
+            membership.readLock().unlock();
+        }
+    }
+
+    private Connection owner(String premisesId) {
+        String member = ring.memberFor(premisesId);
+        if (member == null) {
+            throw new IllegalStateException("No workers");
+        }
+        return connections.get(member);
+    }
+
+    private static String memberId(InetSocketAddress worker) {
+        return worker.getHostString() + ":" + worker.getPort();
+    }
+
+    @Override
+    public void close() {
+        connections.values().forEach(Connection::close);
+        connections.clear();
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Connection to one worker, used by one call at a time. A lock rather than synchronized, so
+     * virtual threads waiting on the worker don't pin their carriers.
+     */
+    private static class Connection {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final InetSocketAddress address;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.address = address;
+            socket = new Socket();
+            try {
+                socket.connect(address);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        Status call(byte type, String premisesId, Body body) {
+            lock.lock();
+            try {
+                send(type, premisesId, body);
+                int alarmStatus = in.readUnsignedByte();
+                int armingStatus = in.readUnsignedByte();
+                if (alarmStatus >= ALARM_STATUSES.length || armingStatus >= ARMING_STATUSES.length) {
+                    throw new IOException("Unknown status " + alarmStatus + "/" + armingStatus);
+                }
+                return new Status(ALARM_STATUSES[alarmStatus], ARMING_STATUSES[armingStatus]);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Worker " + address + " failed", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        byte[] release(String premisesId) {
+            lock.lock();
+            try {
+                send(ShardProtocol.RELEASE, premisesId, out -> {
+                });
+                return ShardProtocol.readBytes(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Worker " + address + " failed", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //called holding the lock; reads the reply's outcome
+        private void send(byte type, String premisesId, Body body) throws IOException {
+            out.writeByte(type);
+            out.writeUTF(premisesId);
+            body.write(out);
+            out.flush();
+            if (in.readByte() == ShardProtocol.FAILED) {
+                throw new IllegalStateException("Worker " + address + " rejected the request: " + in.readUTF());
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //already broken
+            }
+        }
+    }
+}
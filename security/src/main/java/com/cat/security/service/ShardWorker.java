@@ -0,0 +1,253 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.SecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorCodec;
+import com.cat.image.service.FakeImageService;
+import com.cat.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Worker process hosting the premises a {@link ShardRouter} assigns to it, each with its own
+ * SecurityService and repository. Premises are created on their first event and handed over to
+ * another worker as a SensorCodec snapshot when the router rebalances.
+ *
+ * Every router connection is served on its own virtual thread; events for one premises are applied
+ * one at a time under its lock, since a SecurityService expects a single caller.
+ */
+public class ShardWorker implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private final ServerSocket serverSocket;
+    private final ImageService imageService;
+    private final Supplier<SecurityRepository> repositories;
+    private final Map<String, Premises> premises = new ConcurrentHashMap<>();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * Runs a worker on the given port of the loopback interface, with premises kept in memory and
+     * the fake image service.
+     */
+    public static void main(String[] args) throws IOException {
+        ShardWorker worker = new ShardWorker(Integer.parseInt(args[0]), new FakeImageService(), InMemorySecurityRepository::new);
+        System.out.println("worker listening on " + worker.getPort());
+        //every thread of a worker is virtual, so the main thread keeps the process alive
+        try {
+            worker.acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param port Port to accept routers on, on the loopback interface, or 0 for any free port
+     * @param imageService Image service shared by every premises
+     * @param repositories Creates the repository of a premises new to this worker
+     */
+    public ShardWorker(int port, ImageService imageService, Supplier<SecurityRepository> repositories) throws IOException {
+        this.imageService = imageService;
+        this.repositories = repositories;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        acceptor = Thread.ofVirtual().name("shard-accept").start(this::acceptRouters);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getPremisesCount() {
+        return premises.size();
+    }
+
+    /**
+     * One installation: its service, and its sensors by id so events can name them.
+     */
+    private class Premises {
+        final SecurityRepository repository;
+        final SecurityService securityService;
+        final Map<UUID, Sensor> sensors = new HashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+
+        Premises(SecurityRepository repository) {
+            this.repository = repository;
+            this.securityService = new SecurityService(repository, imageService);
+            for (Sensor sensor : repository.getSensors()) {
+                sensors.put(sensor.getSensorId(), sensor);
+            }
+        }
+    }
+
+    private void acceptRouters() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread.ofVirtual().name("shard-serve-" + socket.getRemoteSocketAddress()).start(() -> serve(socket));
+            } catch (IOException e) {
+                //closed, or the connection went away before it was set up
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            while (!closed) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                String premisesId = in.readUTF();
+                try {
+                    handle(type, premisesId, in, out);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    out.writeByte(ShardProtocol.FAILED);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            //the router went away
+        }
+    }
+
+    private void handle(byte type, String premisesId, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (type) {
+            case ShardProtocol.ADD_SENSOR -> {
+                SensorCodec.Delta delta = SensorCodec.decodeDelta(ShardProtocol.readBytes(in));
+                if (delta.kind() != SensorCodec.Delta.Kind.UPSERT_SENSOR) {
+                    throw new IllegalArgumentException("Expected a sensor, got a " + delta.kind() + " delta");
+                }
+                Premises p = premises(premisesId);
+                applyAndReply(p, () -> {
+                    p.securityService.addSensor(delta.sensor());
+                    p.sensors.put(delta.sensorId(), delta.sensor());
+                }, out);
+            }
+            case ShardProtocol.SENSOR_ACTIVATION -> {
+                UUID sensorId = new UUID(in.readLong(), in.readLong());
+                boolean active = in.readBoolean();
+                Premises p = premises(premisesId);
+                applyAndReply(p, () -> {
+                    Sensor sensor = p.sensors.get(sensorId);
+                    if (sensor == null) {
+                        throw new IllegalArgumentException("Unknown sensor " + sensorId);
+                    }
+                    p.securityService.changeSensorActivationStatus(sensor, active);
+                }, out);
+            }
+            case ShardProtocol.ARMING_STATUS -> {
+                int ordinal = in.readUnsignedByte();
+                if (ordinal >= ARMING_STATUSES.length) {
+                    throw new IllegalArgumentException("Unknown arming status " + ordinal);
+                }
+                Premises p = premises(premisesId);
+                applyAndReply(p, () -> p.securityService.setArmingStatus(ARMING_STATUSES[ordinal]), out);
+            }
+            case ShardProtocol.IMAGE -> {
+                String cameraId = in.readUTF();
+                BufferedImage image = ShardProtocol.readImage(in);
+                Premises p = premises(premisesId);
+                applyAndReply(p, () -> p.securityService.processImage(cameraId, image), out);
+            }
+            case ShardProtocol.STATUS -> applyAndReply(premises(premisesId), () -> {
+            }, out);
+            case ShardProtocol.RELEASE -> {
+                Premises p = premises.remove(premisesId);
+                out.writeByte(ShardProtocol.OK);
+                if (p == null) {
+                    out.writeInt(-1);
+                    return;
+                }
+                p.lock.lock();
+                try {
+                    ShardProtocol.writeBytes(out, SensorCodec.encodeSnapshot(p.repository.getSensors(),
+                            p.repository.getAlarmStatus(), p.repository.getArmingStatus()));
+                } finally {
+                    p.lock.unlock();
+                }
+            }
+            case ShardProtocol.ADOPT -> {
+                SensorCodec.Snapshot snapshot = SensorCodec.decodeSnapshot(ShardProtocol.readBytes(in));
+                SecurityRepository repository = repositories.get();
+                repository.addSensors(snapshot.sensors());
+                repository.setAlarmStatus(snapshot.alarmStatus());
+                repository.setArmingStatus(snapshot.armingStatus());
+                Premises p = new Premises(repository);
+                premises.put(premisesId, p);
+                applyAndReply(p, () -> {
+                }, out);
+            }
+            default -> throw new IOException("Unknown request type " + type);
+        }
+    }
+
+    /**
+     * Applies a change to a premises and replies with its status. A lock rather than synchronized,
+     * so a virtual thread waiting on the image service doesn't pin its carrier.
+     */
+    private static void applyAndReply(Premises p, Runnable change, DataOutputStream out) throws IOException {
+        p.lock.lock();
+        try {
+            change.run();
+            replyStatus(out, p);
+        } finally {
+            p.lock.unlock();
+        }
+    }
+
+    private Premises premises(String premisesId) {
+        return premises.computeIfAbsent(premisesId, id -> new Premises(repositories.get()));
+    }
+
+    private static void replyStatus(DataOutputStream out, Premises p) throws IOException {
+        AlarmStatus alarmStatus = p.repository.getAlarmStatus();
+        ArmingStatus armingStatus = p.repository.getArmingStatus();
+        out.writeByte(ShardProtocol.OK);
+        out.writeByte(alarmStatus.ordinal());
+        out.writeByte(armingStatus.ordinal());
+    }
+
+    /**
+     * Stops accepting routers. Connections already open are served until the routers close them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+            acceptor.join();
+        } catch (IOException e) {
+            //already closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
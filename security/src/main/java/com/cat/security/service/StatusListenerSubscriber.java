@@ -0,0 +1,52 @@
+package com.cat.security.service;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Adapts a {@link StatusListener} to a {@link SecurityEventPublisher}, so existing listeners can be
+ * moved off the thread that changes the system state. The listener is called from the publisher's
+ * executor, one event at a time. Arming status changes have no StatusListener method and are skipped.
+ */
+public class StatusListenerSubscriber implements Flow.Subscriber<SecurityEvent> {
+
+    private final StatusListener statusListener;
+    private volatile Flow.Subscription subscription;
+
+    public StatusListenerSubscriber(StatusListener statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(SecurityEvent event) {
+        switch (event.kind()) {
+            case ALARM_STATUS -> statusListener.notify(event.alarmStatus());
+            case CAT_DETECTED -> statusListener.catDetected(event.catDetected());
+            case SENSOR_CHANGED -> statusListener.sensorStatusChanged();
+            case ARMING_STATUS -> {
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    /**
+     * Stops calling the listener.
+     */
+    public void cancel() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.cat.security.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel for large numbers of timers such as entry and exit delays. Time advances
+ * in fixed ticks; four levels of 256 buckets cover 2^32 ticks, with timers in a higher level moved
+ * down a level when its bucket comes round. Scheduling and cancelling are O(1) from any thread: they
+ * only enqueue the request, and the single ticking thread links and unlinks timers in their buckets.
+ *
+ * Timers fire at the first tick at or after their deadline, so they are late by up to one tick.
+ * Expired tasks are handed to the callback executor; with a direct executor they run on the ticking
+ * thread and must be quick. Tasks the executor rejects, e.g. because its queue is full, are handed
+ * to it again at the next tick, in the order they expired.
+ */
+public class TimingWheel implements AutoCloseable {
+
+    private static final int LEVELS = 4;
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickNanos;
+    private final Executor callbackExecutor;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS];
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    //expired tasks the callback executor rejected, only touched by the ticking thread
+    private final Queue<Runnable> rejected = new ArrayDeque<>();
+    private long currentTick;
+    private Thread thread;
+
+    /**
+     * @param tick Resolution of the wheel
+     * @param callbackExecutor Runs expired tasks, e.g. the thread owning the state the tasks change
+     */
+    public TimingWheel(Duration tick, Executor callbackExecutor) {
+        this(tick, callbackExecutor, System::nanoTime);
+        thread = new Thread(this::run, "timing-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * A wheel without a ticking thread; time only advances through {@link #advanceTo}.
+     */
+    TimingWheel(Duration tick, Executor callbackExecutor, LongSupplier nanoClock) {
+        if (tick.isZero() || tick.isNegative()) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickNanos = tick.toNanos();
+        this.callbackExecutor = callbackExecutor;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Runs a task once the delay has passed.
+     *
+     * @return Handle to cancel the task with
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        long deadline = nanoClock.getAsLong() + delay.toNanos() - startNanos;
+        //round up so a timer never fires early
+        Timeout timeout = new Timeout(this, task, (deadline + tickNanos - 1) / tickNanos);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return Number of timers scheduled that have neither fired nor been cancelled
+     */
+    public long getPendingTimers() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the ticking thread. Timers that haven't fired are dropped.
+     */
+    @Override
+    public void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long nextTickAt = startNanos + (currentTick + 1) * tickNanos;
+            long wait = nextTickAt - nanoClock.getAsLong();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            advanceTo(nanoClock.getAsLong());
+        }
+    }
+
+    /**
+     * Processes every tick up to the given time. Only called by the ticking thread, or by tests
+     * driving a wheel without one.
+     */
+    void advanceTo(long nowNanos) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        while (currentTick < targetTick) {
+            currentTick++;
+            transferCancelled();
+            transferScheduled();
+            retryRejected();
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (BITS * level)) & MASK);
+                }
+            }
+            expire((int) currentTick & MASK);
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state == Timeout.PENDING) {
+                place(timeout);
+            }
+        }
+    }
+
+    private void transferCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            timeout.unlink();
+        }
+    }
+
+    private void place(Timeout timeout) {
+        //anything already due goes into the bucket of the tick being processed
+        long deadlineTick = Math.max(timeout.deadlineTick, currentTick);
+        long delta = deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        timeout.link(wheels[level], (int) (deadlineTick >>> (BITS * level)) & MASK);
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout timeout = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void expire(int slot) {
+        Timeout timeout = wheels[0][slot];
+        wheels[0][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+            if (Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+                pending.decrementAndGet();
+                //behind any task still waiting for the executor, so tasks run in the order they expired
+                if (rejected.isEmpty()) {
+                    handOver(timeout.task);
+                } else {
+                    rejected.add(timeout.task);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void retryRejected() {
+        Runnable task;
+        while ((task = rejected.peek()) != null) {
+            try {
+                callbackExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+            rejected.poll();
+        }
+    }
+
+    private void handOver(Runnable task) {
+        try {
+            callbackExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.add(task);
+        }
+    }
+
+    /**
+     * A scheduled task.
+     */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private volatile int state;
+        //bucket links, only touched by the ticking thread
+        private Timeout[] bucket;
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancels the task if it hasn't fired yet.
+         *
+         * @return True if the task was cancelled by this call
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void link(Timeout[] bucket, int slot) {
+            this.bucket = bucket;
+            this.slot = slot;
+            next = bucket[slot];
+            if (next != null) {
+                next.prev = this;
+            }
+            bucket[slot] = this;
+        }
+
+        private void unlink() {
+            if (bucket == null) {
+                return;
+            }
+            if (prev != null) {
+                prev.next = next;
+            } else {
+                bucket[slot] = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            bucket = null;
+            prev = null;
+            next = null;
+        }
+    }
+}
@@ -6,5 +6,11 @@ module security {
     requires com.google.common;
     requires com.google.gson;
     requires java.prefs;
+    requires java.sql;
     opens com.cat.data to com.google.gson;
+    uses com.cat.data.SecurityRepositoryProvider;
+    provides com.cat.data.SecurityRepositoryProvider with
+            com.cat.data.PreferencesRepositoryProvider,
+            com.cat.data.JdbcRepositoryProvider,
+            com.cat.data.InMemoryRepositoryProvider;
 }
\ No newline at end of file
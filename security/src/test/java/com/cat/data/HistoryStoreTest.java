@@ -0,0 +1,111 @@
+package com.cat.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+class HistoryStoreTest {
+
+    @Test
+    public void query_eventsAcrossBlocksAndDays_rangeAndAggregateQueries(@TempDir Path directory) throws IOException {
+        UUID door = UUID.randomUUID();
+        Instant midnight = Instant.parse("2024-03-02T00:00:00Z");
+        try (HistoryStore history = new HistoryStore(directory, 4)) {
+            history.record(HistoryEvent.alarmStatus(midnight.minusSeconds(600).toEpochMilli(), AlarmStatus.ALARM));
+            history.record(HistoryEvent.alarmStatus(midnight.minusSeconds(300).toEpochMilli(), AlarmStatus.NO_ALARM));
+            for (int i = 0; i < 10; i++) {
+                history.record(HistoryEvent.sensorActivation(midnight.plusSeconds(i * 1200L).toEpochMilli(), door, i % 2 == 0));
+            }
+            history.record(HistoryEvent.alarmStatus(midnight.plusSeconds(3600).toEpochMilli(), AlarmStatus.ALARM));
+            history.record(HistoryEvent.alarmStatus(midnight.plusSeconds(5400).toEpochMilli(), AlarmStatus.PENDING_ALARM));
+        }
+
+        try (HistoryStore history = new HistoryStore(directory, 4)) {
+            Assertions.assertEquals(10, history.query(midnight.minusSeconds(3600), midnight.plusSeconds(7200)).size());
+            Assertions.assertEquals(3, history.query(midnight, midnight.plusSeconds(3600)).size());
+            Assertions.assertArrayEquals(new long[]{2, 1, 2}, history.activationsPerHour(midnight, midnight.plusSeconds(3 * 3600)).get(door));
+            Assertions.assertEquals(Duration.ofMinutes(30), history.timeInAlarm(midnight, midnight.plusSeconds(7200)));
+            Assertions.assertEquals(Duration.ofMinutes(15), history.timeInAlarm(midnight.plusSeconds(4500), midnight.plusSeconds(7200)));
+            Assertions.assertEquals(Duration.ofMinutes(5), history.timeInAlarm(midnight.minusSeconds(3600), midnight));
+
+            history.dropBefore(LocalDate.of(2024, 3, 2));
+            Assertions.assertEquals(8, history.query(midnight.minusSeconds(3600), midnight.plusSeconds(7200)).size());
+        }
+    }
+
+    @Test
+    public void query_blocksSlightlyOutOfOrder_rangeStillFindsEveryEvent(@TempDir Path directory) throws IOException {
+        try (HistoryStore history = new HistoryStore(directory, 2)) {
+            history.record(HistoryEvent.alarmStatus(1000, AlarmStatus.ALARM));
+            history.record(HistoryEvent.alarmStatus(2000, AlarmStatus.NO_ALARM));
+            //a late event from before the previous block
+            history.record(HistoryEvent.alarmStatus(500, AlarmStatus.PENDING_ALARM));
+            history.record(HistoryEvent.alarmStatus(3000, AlarmStatus.ALARM));
+            history.record(HistoryEvent.alarmStatus(4000, AlarmStatus.NO_ALARM));
+            history.record(HistoryEvent.alarmStatus(5000, AlarmStatus.ALARM));
+            history.flush();
+
+            Assertions.assertEquals(List.of(HistoryEvent.alarmStatus(500, AlarmStatus.PENDING_ALARM)),
+                    history.query(Instant.ofEpochMilli(400), Instant.ofEpochMilli(600)));
+            Assertions.assertEquals(List.of(HistoryEvent.alarmStatus(3000, AlarmStatus.ALARM)),
+                    history.query(Instant.ofEpochMilli(2500), Instant.ofEpochMilli(3500)));
+            Assertions.assertEquals(Duration.ofMillis(500), history.timeInAlarm(Instant.ofEpochMilli(3500), Instant.ofEpochMilli(4500)));
+        }
+    }
+
+    @Test
+    public void record_noFurtherEvents_writtenOutAfterMaxBufferAge(@TempDir Path directory) throws Exception {
+        Instant now = Instant.now();
+        try (HistoryStore history = new HistoryStore(directory, 4096, Duration.ofMillis(100))) {
+            history.record(HistoryEvent.alarmStatus(now.toEpochMilli(), AlarmStatus.ALARM));
+
+            //what another process, or this one after a crash, would find on disk; blocks are written
+            //under the store's lock, so holding it keeps the reader from seeing one half-written
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            int found;
+            do {
+                Thread.sleep(50);
+                synchronized (history) {
+                    try (HistoryStore reopened = new HistoryStore(directory)) {
+                        found = reopened.query(now, now.plusSeconds(1)).size();
+                    }
+                }
+            } while (found == 0 && System.nanoTime() < deadline);
+            Assertions.assertEquals(1, found);
+        }
+    }
+
+    @Test
+    public void open_partitionLeftEmptyOrShortByCrash_startedOverAndWritable(@TempDir Path directory) throws IOException {
+        Files.createFile(directory.resolve("2024-03-01.hist"));
+        Files.write(directory.resolve("2024-03-02.hist"), new byte[]{0x43, 0x41});
+        Instant noon = Instant.parse("2024-03-02T12:00:00Z");
+
+        try (HistoryStore history = new HistoryStore(directory)) {
+            Assertions.assertEquals(List.of(), history.query(noon.minusSeconds(86400 * 2), noon));
+            history.record(HistoryEvent.alarmStatus(noon.toEpochMilli(), AlarmStatus.ALARM));
+        }
+
+        try (HistoryStore history = new HistoryStore(directory)) {
+            Assertions.assertEquals(List.of(HistoryEvent.alarmStatus(noon.toEpochMilli(), AlarmStatus.ALARM)),
+                    history.query(noon, noon.plusSeconds(1)));
+        }
+    }
+
+    @Test
+    public void open_fileWithOtherContents_rejected(@TempDir Path directory) throws IOException {
+        Files.write(directory.resolve("2024-03-01.hist"), "not a history file".getBytes(StandardCharsets.UTF_8));
+
+        Assertions.assertThrows(IOException.class, () -> new HistoryStore(directory));
+    }
+}
@@ -0,0 +1,46 @@
+package com.cat.data;
+
+import com.cat.security.service.SecurityService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+
+class JdbcSecurityRepositoryTest {
+
+    @Test
+    public void queriesAndArming_useIndexedSensorTable() throws Exception {
+        try (JdbcSecurityRepository repository = new JdbcSecurityRepository("jdbc:h2:mem:" + UUID.randomUUID())) {
+            SecurityService service = new SecurityService(repository, (image, threshold) -> false);
+            List<Sensor> added = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                added.add(new Sensor(String.format("Zone %02d", i), i % 2 == 0 ? SensorType.DOOR : SensorType.MOTION));
+            }
+            added.add(new Sensor("Zone_A", SensorType.WINDOW));
+            repository.addSensors(added);
+            service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            service.changeSensorActivationStatus(repository.getSensorsByNamePrefix("Zone 03").get(0), true);
+
+            Assertions.assertEquals(26, service.getSensorCount());
+            Assertions.assertEquals(13, repository.getSensorsByType(SensorType.DOOR).size());
+            Assertions.assertEquals(List.of("Zone_A"), repository.getSensorsByNamePrefix("Zone_").stream().map(Sensor::getName).toList());
+            Assertions.assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+            Assertions.assertEquals(1, repository.getActiveSensors().size());
+
+            List<Sensor> paged = new ArrayList<>();
+            List<Sensor> page = repository.getSensorsPage(null, 10);
+            while (!page.isEmpty()) {
+                paged.addAll(page);
+                page = repository.getSensorsPage(page.get(page.size() - 1), 10);
+            }
+            Assertions.assertEquals(List.copyOf(new TreeSet<>(added)), paged);
+
+            service.setArmingStatus(ArmingStatus.ARMED_HOME);
+            Assertions.assertTrue(repository.getActiveSensors().isEmpty());
+            Assertions.assertEquals(AlarmStatus.NO_ALARM, service.getAlarmStatus());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.cat.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class PretendDatabaseSecurityRepositoryImplTest {
+
+    private final SecurityRepository repository = new PretendDatabaseSecurityRepositoryImpl();
+    private final List<Sensor> added = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        added.forEach(repository::removeSensor);
+    }
+
+    @Test
+    public void reloaded_sensorsRestoredFromStoredChanges() {
+        Sensor garden = add(new Sensor("Garden", SensorType.MOTION));
+        add(new Sensor("Door", SensorType.DOOR));
+        garden.setActive(true);
+        repository.updateSensor(garden);
+
+        SecurityRepository reloaded = new PretendDatabaseSecurityRepositoryImpl();
+
+        Assertions.assertEquals(repository.getSensors(), reloaded.getSensors());
+        Assertions.assertTrue(reloaded.getSensors().stream()
+                .filter(sensor -> sensor.getSensorId().equals(garden.getSensorId())).findFirst().orElseThrow().getActive());
+    }
+
+    @Test
+    public void getSensorsPage_pagedToTheEnd_allSensorsInDisplayOrder() {
+        for (int i = 0; i < 25; i++) {
+            add(new Sensor("Paged " + i, SensorType.values()[i % 3]));
+        }
+
+        List<Sensor> paged = new ArrayList<>();
+        List<Sensor> page = repository.getSensorsPage(null, 7);
+        while (!page.isEmpty()) {
+            Assertions.assertTrue(page.size() <= 7);
+            paged.addAll(page);
+            page = repository.getSensorsPage(page.get(page.size() - 1), 7);
+        }
+
+        Assertions.assertEquals(List.copyOf(repository.getSensors()), paged);
+    }
+
+    private Sensor add(Sensor sensor) {
+        repository.addSensor(sensor);
+        added.add(sensor);
+        return sensor;
+    }
+}
@@ -0,0 +1,63 @@
+package com.cat.data;
+
+import com.cat.image.service.ImageService;
+import com.cat.security.service.SecurityService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class ReplicatedSecurityRepositoryTest {
+
+    private static final ImageService IMAGE_SERVICE = (image, threshold) -> false;
+
+    @Test
+    public void standbyFollowsPrimary_takesOverWithItsState() throws Exception {
+        try (JdbcSecurityRepository primaryStore = new JdbcSecurityRepository("jdbc:h2:mem:" + UUID.randomUUID());
+             JdbcSecurityRepository standbyStore = new JdbcSecurityRepository("jdbc:h2:mem:" + UUID.randomUUID())) {
+            Sensor door = new Sensor("Door", SensorType.DOOR);
+            CountDownLatch primaryLost = new CountDownLatch(1);
+            StandbyReplica standby;
+            try (ReplicatedSecurityRepository primary = new ReplicatedSecurityRepository(primaryStore, 0)) {
+                SecurityService service = new SecurityService(primary, IMAGE_SERVICE);
+                service.addSensor(door);
+
+                //state from before the standby connected arrives in a snapshot, later changes one by one
+                standby = new StandbyReplica(standbyStore,
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), primary.getPort()), primaryLost::countDown);
+                Assertions.assertTrue(standby.awaitSnapshot(Duration.ofSeconds(5)));
+                Sensor window = new Sensor("Window", SensorType.WINDOW);
+                service.addSensor(window);
+                service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+                service.changeSensorActivationStatus(door, true);
+                List<Sensor> zones = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    zones.add(new Sensor(String.format("Zone %03d", i), SensorType.MOTION));
+                }
+                primary.addSensors(zones);
+                service.removeSensor(window);
+                Assertions.assertTrue(primary.awaitAcknowledged(primary.getSequence(), Duration.ofSeconds(5)));
+                Assertions.assertEquals(primary.getSequence(), standby.getAppliedSequence());
+            }
+
+            //the primary is closed now
+            Assertions.assertTrue(primaryLost.await(5, TimeUnit.SECONDS));
+            SecurityRepository promoted = standby.promote();
+            Assertions.assertEquals(101, promoted.getSensorCount());
+            Assertions.assertEquals(List.of(door), promoted.getActiveSensors());
+            Assertions.assertEquals(ArmingStatus.ARMED_AWAY, promoted.getArmingStatus());
+            Assertions.assertEquals(AlarmStatus.PENDING_ALARM, promoted.getAlarmStatus());
+
+            SecurityService takeover = new SecurityService(promoted, IMAGE_SERVICE);
+            takeover.changeSensorActivationStatus(promoted.getSensorsByNamePrefix("Zone 042").get(0), true);
+            Assertions.assertEquals(AlarmStatus.ALARM, takeover.getAlarmStatus());
+        }
+    }
+}
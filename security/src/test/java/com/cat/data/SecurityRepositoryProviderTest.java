@@ -0,0 +1,57 @@
+package com.cat.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Properties;
+
+class SecurityRepositoryProviderTest {
+
+    @Test
+    public void open_selectedByConfiguration_scratchOfSameKindAndEmpty() throws Exception {
+        Properties config = new Properties();
+        config.setProperty(SecurityRepositoryProvider.PROVIDER_PROPERTY, "memory");
+        Assertions.assertInstanceOf(InMemorySecurityRepository.class, SecurityRepositoryProvider.open(config));
+
+        config.remove(SecurityRepositoryProvider.PROVIDER_PROPERTY);
+        config.setProperty(JdbcRepositoryProvider.URL_PROPERTY, "jdbc:h2:mem:providers");
+        try (JdbcSecurityRepository repository = (JdbcSecurityRepository) SecurityRepositoryProvider.open(config);
+             JdbcSecurityRepository scratch = (JdbcSecurityRepository) SecurityRepositoryProvider.openScratch(config)) {
+            scratch.addSensor(new Sensor("Door", SensorType.DOOR));
+            Assertions.assertEquals(1, scratch.getSensorCount());
+            Assertions.assertEquals(0, repository.getSensorCount());
+        }
+
+        config.setProperty(SecurityRepositoryProvider.PROVIDER_PROPERTY, "missing");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SecurityRepositoryProvider.open(config));
+    }
+
+    @Test
+    public void primaryAndStandbyInOneJvm_defaultProvider_standbyKeepsItsOwnCopy() throws Exception {
+        Properties config = new Properties();
+        SecurityRepository primaryStore = SecurityRepositoryProvider.open(config);
+        Sensor door = new Sensor("Standby test door", SensorType.DOOR);
+        try (ReplicatedSecurityRepository primary = new ReplicatedSecurityRepository(primaryStore, 0)) {
+            SecurityRepository standbyStore = SecurityRepositoryProvider.openStandby(config);
+            Assertions.assertInstanceOf(InMemorySecurityRepository.class, standbyStore);
+            try (StandbyReplica standby = new StandbyReplica(standbyStore,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), primary.getPort()), () -> {
+            })) {
+                Assertions.assertTrue(standby.awaitSnapshot(Duration.ofSeconds(5)));
+                primary.addSensor(door);
+                door.setActive(true);
+                primary.updateSensor(door);
+                Assertions.assertTrue(primary.awaitAcknowledged(primary.getSequence(), Duration.ofSeconds(5)));
+
+                Assertions.assertTrue(standbyStore.isSensorActive(door));
+                //what the primary stored reloads unchanged, with nothing the standby wrote mixed in
+                Assertions.assertEquals(primaryStore.getSensors(), new PretendDatabaseSecurityRepositoryImpl().getSensors());
+            }
+        } finally {
+            primaryStore.removeSensor(door);
+        }
+    }
+}
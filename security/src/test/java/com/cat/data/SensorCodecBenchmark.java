@@ -0,0 +1,71 @@
+package com.cat.data;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares the binary SensorCodec with the Gson path the repository used to take, for 10k and 1M
+ * sensors: encode and decode time, and encoded size. Not a unit test; run the main method, ideally
+ * with a few GB of heap for the 1M case.
+ */
+public class SensorCodecBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        for (int count : new int[]{10_000, 1_000_000}) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) {
+        SensorType[] types = SensorType.values();
+        Set<Sensor> sensors = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            sensor.setActive(i % 7 == 0);
+            sensors.add(sensor);
+        }
+        Gson gson = new Gson();
+        Type type = new TypeToken<Set<Sensor>>() {
+        }.getType();
+
+        long gsonEncode = Long.MAX_VALUE, gsonDecode = Long.MAX_VALUE, codecEncode = Long.MAX_VALUE, codecDecode = Long.MAX_VALUE;
+        int gsonSize = 0, codecSize = 0;
+        List<Object> sink = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            String json = gson.toJson(sensors);
+            gsonEncode = Math.min(gsonEncode, System.nanoTime() - start);
+            start = System.nanoTime();
+            Set<Sensor> fromJson = gson.fromJson(json, type);
+            gsonDecode = Math.min(gsonDecode, System.nanoTime() - start);
+            gsonSize = json.length();
+
+            start = System.nanoTime();
+            byte[] bytes = SensorCodec.encodeSnapshot(sensors, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
+            codecEncode = Math.min(codecEncode, System.nanoTime() - start);
+            start = System.nanoTime();
+            SensorCodec.Snapshot snapshot = SensorCodec.decodeSnapshot(bytes);
+            codecDecode = Math.min(codecDecode, System.nanoTime() - start);
+            codecSize = bytes.length;
+
+            if (fromJson.size() != count || snapshot.sensors().size() != count) {
+                throw new IllegalStateException("Round trip lost sensors");
+            }
+            sink.clear();
+            sink.add(fromJson);
+            sink.add(snapshot);
+        }
+
+        System.out.printf("%,d sensors (best of %d)%n", count, ROUNDS);
+        System.out.printf("  gson   encode %8.1f ms  decode %8.1f ms  size %,12d bytes%n", gsonEncode / 1e6, gsonDecode / 1e6, gsonSize);
+        System.out.printf("  codec  encode %8.1f ms  decode %8.1f ms  size %,12d bytes%n", codecEncode / 1e6, codecDecode / 1e6, codecSize);
+    }
+}
@@ -0,0 +1,29 @@
+package com.cat.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class SensorCodecTest {
+
+    @Test
+    public void encodeAndDecode_snapshotAndDeltas_roundTrip() {
+        List<Sensor> sensors = List.of(new Sensor("Door", SensorType.DOOR), new Sensor("Window", SensorType.WINDOW),
+                new Sensor("Garden", SensorType.MOTION));
+        Sensor renamed = new Sensor("Küche", SensorType.WINDOW);
+        renamed.setActive(true);
+
+        SensorCodec.Snapshot snapshot = SensorCodec.decodeSnapshot(
+                SensorCodec.encodeSnapshot(sensors, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY));
+        SensorCodec.Delta upsert = SensorCodec.decodeDelta(SensorCodec.encodeDelta(SensorCodec.Delta.upsert(renamed)));
+
+        Assertions.assertEquals(sensors, snapshot.sensors());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, snapshot.alarmStatus());
+        Assertions.assertEquals(ArmingStatus.ARMED_AWAY, snapshot.armingStatus());
+        Assertions.assertEquals("Küche", upsert.sensor().getName());
+        Assertions.assertEquals(renamed.getSensorId(), upsert.sensor().getSensorId());
+        Assertions.assertTrue(upsert.sensor().getActive());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeDelta(new byte[]{'C', 'A', 'T', 'S', 9, 1}));
+    }
+}
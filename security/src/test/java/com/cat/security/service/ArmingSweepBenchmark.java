@@ -0,0 +1,120 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.SecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times arming a system whose sensors are all active, with arming pools of 1, 2, 4, ... threads up
+ * to the number of cores. The repository is kept in memory so the sweep itself is measured. Not a
+ * unit test; run the main method, optionally passing the sensor count.
+ */
+public class ArmingSweepBenchmark {
+
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        InMemoryRepository repository = new InMemoryRepository();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < count; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Arming with %,d active sensors, %d cores (best of %d)%n", count, cores, ROUNDS);
+        double single = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                repository.sensors.forEach(sensor -> sensor.setActive(true));
+                repository.setArmingStatus(ArmingStatus.DISARMED);
+                repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+                SecurityService securityService = new SecurityService(repository, (image, threshold) -> false);
+                securityService.setArmingPool(pool);
+
+                long start = System.nanoTime();
+                securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+                best = Math.min(best, System.nanoTime() - start);
+                if (securityService.getAlarmStatus() != AlarmStatus.NO_ALARM || !repository.getActiveSensors().isEmpty()) {
+                    throw new IllegalStateException("Arming left sensors active");
+                }
+            }
+            pool.shutdown();
+            if (threads == 1) {
+                single = best;
+            }
+            System.out.printf("  %2d threads: %8.1f ms  speedup %.2fx%n", threads, best / 1e6, single / best);
+        }
+    }
+
+    private static class InMemoryRepository implements SecurityRepository {
+        private final Set<Sensor> sensors = new LinkedHashSet<>();
+        private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+        @Override
+        public void addSensor(Sensor sensor) {
+            sensors.add(sensor);
+        }
+
+        @Override
+        public void removeSensor(Sensor sensor) {
+            sensors.remove(sensor);
+        }
+
+        @Override
+        public void updateSensor(Sensor sensor) {
+        }
+
+        @Override
+        public void updateSensors(Collection<Sensor> updated) {
+        }
+
+        @Override
+        public void setAlarmStatus(AlarmStatus alarmStatus) {
+            this.alarmStatus = alarmStatus;
+        }
+
+        @Override
+        public void setArmingStatus(ArmingStatus armingStatus) {
+            this.armingStatus = armingStatus;
+        }
+
+        @Override
+        public Set<Sensor> getSensors() {
+            return sensors;
+        }
+
+        @Override
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        @Override
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        @Override
+        public List<Sensor> getActiveSensors() {
+            List<Sensor> active = new ArrayList<>();
+            for (Sensor sensor : sensors) {
+                if (sensor.getActive()) {
+                    active.add(sensor);
+                }
+            }
+            return active;
+        }
+    }
+}
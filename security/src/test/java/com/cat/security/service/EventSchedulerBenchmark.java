@@ -0,0 +1,101 @@
+package com.cat.security.service;
+
+import com.cat.data.ArmingStatus;
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Sensor events at 200 a second while frames arrive in bursts of 100 every 250 ms, each analyzed on
+ * the owner thread for about a millisecond. Reports how long sensor events take from being submitted
+ * to being decided, first with one FIFO queue in front of the owner thread, then with an
+ * EventScheduler. Not a unit test; run the main method, optionally passing the seconds per run.
+ */
+public class EventSchedulerBenchmark {
+
+    private static final BufferedImage FRAME = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        ExecutorService fifo = Executors.newSingleThreadExecutor();
+        run("fifo queue", lane -> fifo, seconds);
+        fifo.shutdown();
+        try (EventScheduler scheduler = new EventScheduler()) {
+            run("event scheduler", scheduler::executor, seconds);
+            EventScheduler.LaneMetrics images = scheduler.getMetrics(EventScheduler.Lane.IMAGE);
+            System.out.printf("  image lane: %d run, %d rejected, at most %d queued%n", images.completed(),
+                    images.rejected(), images.maxQueued());
+        }
+    }
+
+    private static void run(String name, Function<EventScheduler.Lane, Executor> lanes, int seconds)
+            throws InterruptedException {
+        InMemorySecurityRepository repository = new InMemorySecurityRepository();
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            repository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return false;
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        LatencyHistogram sensorLatency = new LatencyHistogram();
+        AtomicLong rejected = new AtomicLong();
+        Thread frames = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    for (int i = 0; i < 100; i++) {
+                        String cameraId = "camera-" + i % 4;
+                        try {
+                            lanes.apply(EventScheduler.Lane.IMAGE).execute(() -> securityService.processImage(cameraId, FRAME));
+                        } catch (RejectedExecutionException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    Thread.sleep(250);
+                }
+            } catch (InterruptedException e) {
+                //run over
+            }
+        });
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int i = 0; System.nanoTime() < end; i++) {
+            Sensor sensor = sensors.get(i % sensors.size());
+            long submitted = System.nanoTime();
+            lanes.apply(EventScheduler.Lane.SENSOR).execute(() -> {
+                securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+                sensorLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submitted));
+            });
+            Thread.sleep(5);
+        }
+        frames.interrupt();
+        frames.join();
+        //let the owner thread catch up before the next run
+        Thread.sleep(1000);
+
+        LatencyHistogram.Snapshot latency = new LatencyHistogram.Snapshot();
+        sensorLatency.drainTo(latency);
+        System.out.printf("%s: %d sensor events, decided in p50 %.2f ms p99 %.2f ms max %.2f ms; %d frames rejected%n",
+                name, latency.count(), latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                latency.percentile(100) / 1e3, rejected.get());
+    }
+}
@@ -0,0 +1,69 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class EventSchedulerTest {
+
+    @Test
+    public void offer_imageLaneBacklog_sensorEventDecidedFirstAndFullLaneRejects() throws InterruptedException {
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), (image, threshold) -> false);
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        List<String> order = new ArrayList<>();
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EventScheduler scheduler = new EventScheduler(Thread.ofPlatform().daemon().factory(),
+                Map.of(EventScheduler.Lane.IMAGE, new EventScheduler.Limits(64, Duration.ofSeconds(1))));
+        try {
+            //keeps the owner thread busy while the lanes fill up
+            scheduler.offer(EventScheduler.Lane.HOUSEKEEPING, () -> {
+                busy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Assertions.assertTrue(busy.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 64; i++) {
+                Assertions.assertTrue(scheduler.offer(EventScheduler.Lane.IMAGE, () -> order.add("image")));
+            }
+            Assertions.assertFalse(scheduler.offer(EventScheduler.Lane.IMAGE, () -> order.add("image")));
+            Assertions.assertThrows(RejectedExecutionException.class,
+                    () -> scheduler.executor(EventScheduler.Lane.IMAGE).execute(() -> order.add("image")));
+            scheduler.offer(EventScheduler.Lane.SENSOR, () -> {
+                securityService.changeSensorActivationStatus(sensor, true);
+                order.add("sensor " + securityService.getAlarmStatus());
+            });
+        } finally {
+            release.countDown();
+            scheduler.close();
+        }
+
+        Assertions.assertEquals(65, order.size());
+        Assertions.assertEquals("sensor " + AlarmStatus.PENDING_ALARM, order.get(0));
+        EventScheduler.LaneMetrics image = scheduler.getMetrics(EventScheduler.Lane.IMAGE);
+        Assertions.assertEquals(64, image.completed());
+        Assertions.assertEquals(2, image.rejected());
+        Assertions.assertEquals(64, image.maxQueued());
+        EventScheduler.LaneMetrics sensorLane = scheduler.getMetrics(EventScheduler.Lane.SENSOR);
+        Assertions.assertEquals(1, sensorLane.completed());
+        Assertions.assertEquals(1, sensorLane.latency().count());
+        Assertions.assertFalse(scheduler.offer(EventScheduler.Lane.SENSOR, () -> order.add("after close")));
+    }
+}
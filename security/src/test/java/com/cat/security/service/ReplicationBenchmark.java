@@ -0,0 +1,129 @@
+package com.cat.security.service;
+
+import com.cat.data.JdbcSecurityRepository;
+import com.cat.data.ReplicatedSecurityRepository;
+import com.cat.data.SecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import com.cat.data.StandbyReplica;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a primary and a standby as two processes on localhost. The primary, started as a child
+ * process, measures how long a change takes to be acknowledged one at a time and how many changes a
+ * second get through pipelined, then crashes. The standby, this process, reports how long after the
+ * crash it noticed and how long until its own SecurityService made the first alarm decision on the
+ * state it took over. Not a unit test; run the main method, optionally passing the sensor count.
+ */
+public class ReplicationBenchmark {
+
+    private static final int ROUND_TRIPS = 10_000;
+    private static final int PIPELINED = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("primary")) {
+            runPrimary(Integer.parseInt(args[1]));
+            return;
+        }
+        int sensors = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ReplicationBenchmark.class.getName(), "primary", String.valueOf(sensors))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        BufferedReader primary = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        int port = Integer.parseInt(primary.readLine().split(" ")[1]);
+
+        CountDownLatch primaryLost = new CountDownLatch(1);
+        long[] lostAt = new long[1];
+        long connectStart = System.nanoTime();
+        StandbyReplica standby = new StandbyReplica(new JdbcSecurityRepository("jdbc:h2:mem:standby"),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), () -> {
+            lostAt[0] = epochMicros();
+            primaryLost.countDown();
+        });
+        standby.awaitSnapshot(Duration.ofSeconds(30));
+        System.out.printf("standby caught up on %,d sensors in %.1f ms%n", sensors, (System.nanoTime() - connectStart) / 1e6);
+
+        String line;
+        String[] crash = null;
+        while ((line = primary.readLine()) != null) {
+            if (line.startsWith("crash ")) {
+                crash = line.split(" ");
+                break;
+            }
+            System.out.println(line);
+        }
+        if (crash == null) {
+            throw new IllegalStateException("Primary exited without crashing");
+        }
+        primaryLost.await();
+        SecurityRepository repository = standby.promote();
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> false);
+        Sensor sensor = repository.getSensorsPage(null, 1).get(0);
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        long decidedAt = epochMicros();
+
+        long crashedAt = Long.parseLong(crash[1]);
+        System.out.printf("standby applied %d of %s changes, noticed the crash after %.2f ms, first decision after %.2f ms%n",
+                standby.getAppliedSequence(), crash[2], (lostAt[0] - crashedAt) / 1e3, (decidedAt - crashedAt) / 1e3);
+        process.waitFor();
+    }
+
+    private static void runPrimary(int count) throws Exception {
+        ReplicatedSecurityRepository repository = new ReplicatedSecurityRepository(new JdbcSecurityRepository("jdbc:h2:mem:primary"), 0);
+        List<Sensor> sensors = new ArrayList<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        repository.addSensors(sensors);
+        System.out.println("port " + repository.getPort());
+        while (repository.getAcknowledgedSequence() < repository.getSequence()) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> false);
+        long[] roundTrips = new long[ROUND_TRIPS];
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            Sensor sensor = sensors.get(i % count);
+            long start = System.nanoTime();
+            securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+            repository.awaitAcknowledged(repository.getSequence(), Duration.ofSeconds(5));
+            roundTrips[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(roundTrips);
+        System.out.printf("one at a time: p50 %.1f us, p99 %.1f us, max %.1f us per acknowledged change%n",
+                roundTrips[ROUND_TRIPS / 2] / 1e3, roundTrips[ROUND_TRIPS * 99 / 100] / 1e3, roundTrips[ROUND_TRIPS - 1] / 1e3);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PIPELINED; i++) {
+            Sensor sensor = sensors.get(i % count);
+            securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        }
+        repository.awaitAcknowledged(repository.getSequence(), Duration.ofSeconds(60));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("pipelined: %,.0f acknowledged changes/s, %d snapshots sent%n", PIPELINED / seconds,
+                repository.getSnapshotsSent());
+
+        System.out.println("crash " + epochMicros() + " " + repository.getSequence());
+        System.out.flush();
+        Runtime.getRuntime().halt(1);
+    }
+
+    private static long epochMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+}
@@ -0,0 +1,66 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+
+class SecurityEventPublisherTest {
+
+    @Test
+    public void subscribe_subscriberWithoutDemand_receivesLatestStateWhenItAsks() {
+        SecurityEventPublisher publisher = new SecurityEventPublisher(Runnable::run, 16);
+        List<SecurityEvent> received = new ArrayList<>();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+            }
+
+            public void onNext(SecurityEvent event) {
+                received.add(event);
+            }
+
+            public void onError(Throwable throwable) {
+            }
+
+            public void onComplete() {
+            }
+        });
+        List<AlarmStatus> notified = new ArrayList<>();
+        publisher.subscribe(new StatusListenerSubscriber(new StatusListener() {
+            public void notify(AlarmStatus status) {
+                notified.add(status);
+            }
+
+            public void catDetected(boolean catDetected) {
+            }
+
+            public void sensorStatusChanged() {
+            }
+        }));
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), (image, threshold) -> false);
+        Sensor garden = new Sensor("Garden", SensorType.MOTION);
+        securityService.addSensor(garden);
+        securityService.setEventPublisher(publisher);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(garden, true);
+        securityService.changeSensorActivationStatus(garden, false);
+        Assertions.assertTrue(received.isEmpty());
+
+        subscription.get().request(10);
+        Assertions.assertEquals(List.of(SecurityEvent.armingStatus(ArmingStatus.ARMED_AWAY), SecurityEvent.sensorChanged(garden),
+                SecurityEvent.alarmStatus(AlarmStatus.NO_ALARM)), received);
+        Assertions.assertEquals(List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.NO_ALARM), notified);
+        Assertions.assertEquals(2, publisher.getConflatedEvents());
+    }
+}
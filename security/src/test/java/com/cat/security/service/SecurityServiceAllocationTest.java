@@ -0,0 +1,101 @@
+package com.cat.security.service;
+
+import com.cat.data.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+/**
+ * Allocation budgets for the calls the GUI makes on every event. Each test warms a call up until the
+ * JIT has compiled it, then measures the bytes the current thread allocates over many more calls.
+ * Anything above the budget means something on the path started allocating per event again.
+ */
+class SecurityServiceAllocationTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int EVENTS = 100_000;
+
+    private SecurityService securityService;
+    private Sensor sensor;
+    private int notifications;
+
+    @BeforeEach
+    void init() {
+        InMemorySecurityRepository repository = new InMemorySecurityRepository();
+        sensor = new Sensor("Front door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService = new SecurityService(repository, (image, threshold) -> false);
+    }
+
+    @Test
+    void changeSensorActivationStatus_steadyState_allocatesNothing() {
+        //alternates between a pending alarm and no alarm, so every call also persists and announces a status
+        securityService.addStatusListener(new CountingListener());
+        long bytesPerEvent = allocatedPerEvent(i -> securityService.changeSensorActivationStatus(sensor, (i & 1) == 0));
+        Assertions.assertEquals(0, bytesPerEvent);
+        Assertions.assertTrue(notifications > 0);
+    }
+
+    @Test
+    void setAlarmStatus_steadyState_allocatesNothing() {
+        long bytesPerEvent = allocatedPerEvent(i -> securityService.setAlarmStatus((i & 1) == 0 ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM));
+        Assertions.assertEquals(0, bytesPerEvent);
+    }
+
+    @Test
+    void listenerDispatch_manyListeners_allocatesNothing() {
+        for (int i = 0; i < 8; i++) {
+            securityService.addStatusListener(new CountingListener());
+        }
+        long bytesPerEvent = allocatedPerEvent(i -> securityService.setAlarmStatus((i & 1) == 0 ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM));
+        Assertions.assertEquals(0, bytesPerEvent);
+        Assertions.assertEquals(8L * (WARMUP + EVENTS), notifications);
+    }
+
+    private interface Event {
+        void run(int i);
+    }
+
+    /**
+     * @return Bytes allocated per event after warm-up, rounded down, so 0 means less than one byte per event
+     */
+    private static long allocatedPerEvent(Event event) {
+        for (int i = 0; i < WARMUP; i++) {
+            event.run(i);
+        }
+        long before = currentThreadAllocatedBytes();
+        for (int i = 0; i < EVENTS; i++) {
+            event.run(i);
+        }
+        return (currentThreadAllocatedBytes() - before) / EVENTS;
+    }
+
+    //looked up reflectively: the security module doesn't read java.management, but tests run inside it
+    private static long currentThreadAllocatedBytes() {
+        try {
+            Object threads = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Method allocatedBytes = Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes");
+            return (long) allocatedBytes.invoke(threads);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Thread allocation counters are not available", e);
+        }
+    }
+
+    private class CountingListener implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+            notifications++;
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+    }
+}
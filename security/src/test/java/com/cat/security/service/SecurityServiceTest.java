@@ -2,8 +2,10 @@ package com.cat.security.service;
 
 import com.cat.data.*;
 import com.cat.image.service.ImageService;
+import com.cat.image.service.VirtualThreadImageService;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -16,10 +18,21 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
@@ -274,6 +287,24 @@ class SecurityServiceTest {
         Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
     }
 
+    @Test
+    public void systemArmed_sensorsTripAlarmAndAreDeactivated_nextScanNoCatNoAlarm() {
+        BufferedImage image = getBufferedImage(false);
+        Mockito.when(imageService.imageContainsCat(image, 50.0f)).thenReturn(false);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.processImage(image);
+
+        List<Sensor> tripped = new ArrayList<>(sensors.values()).subList(0, 2);
+        tripped.forEach(sensor -> securityService.changeSensorActivationStatus(sensor, true));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        tripped.forEach(sensor -> securityService.changeSensorActivationStatus(sensor, false));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        //the smoothed result is unchanged, but the decision is still made for every analyzed frame
+        securityService.processImage(image);
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
     @Test
     public void systemArmed_sensorsNotResetToInactive() {
         // Put all sensors to the active state when disarmed
@@ -300,6 +331,252 @@ class SecurityServiceTest {
         Assertions.assertEquals(securityService.getAlarmStatus(), AlarmStatus.ALARM);
     }
 
+    @Test
+    public void systemDisarmed_framesWithinSamplingInterval_onlyFirstFrameAnalyzed() {
+        AtomicLong clock = new AtomicLong();
+        securityService.setFrameSampler(new FrameSampler(Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ZERO, clock::get));
+
+        BufferedImage image = getBufferedImage(true);
+        Mockito.when(imageService.imageContainsCat(image, 50.0f)).thenReturn(true);
+        securityService.processImage(image);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        securityService.processImage(image);
+
+        Mockito.verify(imageService, Mockito.times(1)).imageContainsCat(image, 50.0f);
+    }
+
+    @Test
+    public void systemArmed_sensorActive_everyFrameAnalyzed() {
+        AtomicLong clock = new AtomicLong();
+        securityService.setFrameSampler(new FrameSampler(Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ZERO, clock::get));
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(sensors.get(gardenSensorId), true);
+
+        BufferedImage image = getBufferedImage(false);
+        securityService.processImage(image);
+        securityService.processImage(image);
+
+        Mockito.verify(imageService, Mockito.times(2)).imageContainsCat(image, 50.0f);
+        Assertions.assertEquals(2, securityService.getFrameSampler().getFramesAnalyzed());
+    }
+
+    @Test
+    public void systemArmedHome_flickeringDetection_alarmOnlyOnStableCat() {
+        securityService.setCatDetectionFilter(new CatDetectionFilter(4, 2, 4));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        StatusListener listener = Mockito.mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+
+        BufferedImage cat = getBufferedImage(true);
+        BufferedImage noCat = getBufferedImage(false);
+        Mockito.when(imageService.imageContainsCat(cat, 50.0f)).thenReturn(true);
+        Mockito.when(imageService.imageContainsCat(noCat, 50.0f)).thenReturn(false);
+
+        securityService.processImage(cat);
+        securityService.processImage(noCat);
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+
+        securityService.processImage(cat);
+        securityService.processImage(noCat);
+        securityService.processImage(cat);
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        Mockito.verify(listener, Mockito.times(1)).notify(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void unchangedStatus_noPersistenceOrNotification() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        StatusListener listener = Mockito.mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        long suppressedAlarmWrites = securityService.getSuppressedAlarmWrites();
+        long suppressedSensorWrites = securityService.getSuppressedSensorWrites();
+
+        securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+        securityService.changeSensorActivationStatus(sensors.get(gardenSensorId), false);
+
+        Mockito.verifyNoInteractions(listener);
+        Assertions.assertEquals(suppressedAlarmWrites + 2, securityService.getSuppressedAlarmWrites());
+        Assertions.assertEquals(suppressedSensorWrites + 1, securityService.getSuppressedSensorWrites());
+    }
+
+    @Test
+    public void pendingAlarmAndCatDetected_armedHome_alarmNotifiedOnce() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(sensors.get(gardenSensorId), true);
+        BufferedImage image = getBufferedImage(true);
+        Mockito.when(imageService.imageContainsCat(image, 50.0f)).thenReturn(true);
+        securityService.processImage(image);
+        StatusListener listener = Mockito.mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Mockito.verify(listener, Mockito.times(1)).notify(Mockito.any(AlarmStatus.class));
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void systemArmedHome_motionIgnoredByRule_doorStillRaisesAlarm() {
+        securityService.setAlarmRules(AlarmRules.parse("""
+                *         NO_ALARM       *       ->  PENDING_ALARM
+                *         PENDING_ALARM  *       ->  ALARM
+                DISARMED  *              *       ->  KEEP
+                ARMED_HOME *             MOTION  ->  KEEP
+                """));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        securityService.changeSensorActivationStatus(sensors.get(gardenSensorId), true);
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+
+        Sensor door = sensors.values().stream().filter(s -> s.getSensorType() == SensorType.DOOR).findFirst().orElseThrow();
+        securityService.changeSensorActivationStatus(door, true);
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void doorWithEntryDelay_notDisarmedInTime_alarmEscalates() {
+        AtomicLong now = new AtomicLong();
+        TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(100), Runnable::run, now::get);
+        securityService.setTimingWheel(timingWheel);
+        securityService.setAlarmRules(AlarmRules.parse("""
+                *         NO_ALARM       *     ->  PENDING_ALARM
+                *         PENDING_ALARM  *     ->  ALARM
+                DISARMED  *              *     ->  KEEP
+                *         NO_ALARM       DOOR  ->  PENDING_ALARM  delay=30s
+                """));
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor door = sensors.values().stream().filter(s -> s.getSensorType() == SensorType.DOOR).findFirst().orElseThrow();
+
+        securityService.changeSensorActivationStatus(door, true);
+        now.set(Duration.ofSeconds(29).toNanos());
+        timingWheel.advanceTo(now.get());
+        Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+        now.set(Duration.ofSeconds(30).toNanos());
+        timingWheel.advanceTo(now.get());
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        Assertions.assertEquals(0, timingWheel.getPendingTimers());
+    }
+
+    @Test
+    public void doorWithEntryDelay_disarmedInTime_noAlarm() {
+        AtomicLong now = new AtomicLong();
+        TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(100), Runnable::run, now::get);
+        securityService.setTimingWheel(timingWheel);
+        securityService.setAlarmRules(AlarmRules.parse("""
+                *         NO_ALARM       *     ->  PENDING_ALARM
+                DISARMED  *              *     ->  KEEP
+                *         NO_ALARM       DOOR  ->  PENDING_ALARM  delay=30s
+                """));
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor door = sensors.values().stream().filter(s -> s.getSensorType() == SensorType.DOOR).findFirst().orElseThrow();
+
+        securityService.changeSensorActivationStatus(door, true);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        now.set(Duration.ofMinutes(5).toNanos());
+        timingWheel.advanceTo(now.get());
+
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        Assertions.assertEquals(0, timingWheel.getPendingTimers());
+    }
+
+    @Test
+    public void streamSensors_manyPages_allSensorsInDisplayOrder() throws Exception {
+        try (JdbcSecurityRepository repository = new JdbcSecurityRepository("jdbc:h2:mem:" + UUID.randomUUID())) {
+            List<Sensor> added = new ArrayList<>();
+            for (int i = 0; i < 1234; i++) {
+                added.add(new Sensor("Sensor " + i, SensorType.values()[i % 3]));
+            }
+            repository.addSensors(added);
+            SecurityService service = new SecurityService(repository, imageService);
+
+            Assertions.assertEquals(List.copyOf(new TreeSet<>(added)), service.streamSensors().toList());
+            Assertions.assertEquals(5, service.streamSensors().limit(5).count());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> service.getSensors().clear());
+        }
+    }
+
+    @Test
+    public void staleSensorDeactivated_otherSensorStillActive_alarmStaysPending() throws Exception {
+        try (JdbcSecurityRepository repository = new JdbcSecurityRepository("jdbc:h2:mem:" + UUID.randomUUID())) {
+            SecurityService service = new SecurityService(repository, imageService);
+            service.addSensor(new Sensor("Door", SensorType.DOOR));
+            service.addSensor(new Sensor("Window", SensorType.WINDOW));
+            //held the way the sensor panel holds them; the repository hands out new instances on every read
+            List<Sensor> held = new ArrayList<>(service.getSensors());
+            Sensor door = held.get(0);
+            Sensor window = held.get(1);
+
+            service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            service.changeSensorActivationStatus(door, true);
+            //arming again resets the stored door, the held instance still says active
+            service.setArmingStatus(ArmingStatus.ARMED_HOME);
+            service.changeSensorActivationStatus(window, true);
+            Assertions.assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+
+            service.changeSensorActivationStatus(door, false);
+
+            Assertions.assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+        }
+    }
+
+    @Test
+    public void historyStore_setOnService_recordsTransitions(@TempDir Path directory) throws IOException {
+        try (HistoryStore history = new HistoryStore(directory)) {
+            securityService.setHistoryStore(history);
+            Instant start = Instant.now();
+
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            securityService.changeSensorActivationStatus(sensors.get(gardenSensorId), true);
+
+            List<HistoryEvent> events = history.query(start, Instant.now().plusSeconds(1));
+            Assertions.assertEquals(List.of(HistoryEvent.Kind.ARMING_STATUS, HistoryEvent.Kind.SENSOR_ACTIVATION, HistoryEvent.Kind.ALARM_STATUS),
+                    events.stream().map(HistoryEvent::kind).toList());
+            Assertions.assertEquals(gardenSensorId, events.get(1).sensorId());
+        }
+    }
+
+    @Test
+    public void processImageAsync_manyCameras_backendLimitedAndResultsAppliedByResultExecutor() throws InterruptedException {
+        AtomicInteger inBackend = new AtomicInteger();
+        AtomicInteger maxInBackend = new AtomicInteger();
+        ImageService slowBackend = (image, threshold) -> {
+            maxInBackend.accumulateAndGet(inBackend.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inBackend.decrementAndGet();
+            return true;
+        };
+        BlockingQueue<Runnable> results = new LinkedBlockingQueue<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        try (VirtualThreadImageService limited = new VirtualThreadImageService(slowBackend, 4)) {
+            SecurityService service = new SecurityService(securityRepository, limited);
+            service.setResultExecutor(results::add);
+            service.setArmingStatus(ArmingStatus.ARMED_HOME);
+            for (int i = 0; i < 200; i++) {
+                pending.add(service.processImageAsync("camera-" + i, getBufferedImage(false)));
+            }
+            for (int i = 0; i < 200; i++) {
+                results.take().run();
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            Assertions.assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+        }
+        Assertions.assertTrue(maxInBackend.get() <= 4, "at most 4 calls in the backend, saw " + maxInBackend.get());
+    }
+
+    @Test
+    public void processImageAsync_noResultExecutor_rejectedBeforeRecognition() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> securityService.processImageAsync("front", getBufferedImage(true)));
+        Mockito.verifyNoInteractions(imageService);
+    }
+
     private BufferedImage getBufferedImage(Boolean cat) {
         BufferedImage image;
         String path = cat ? "./src/test/resources/sample-cat.jpg" : "./src/test/resources/sample-not-cat.jpg";
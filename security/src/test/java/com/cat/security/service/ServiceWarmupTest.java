@@ -0,0 +1,40 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.SecurityRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+
+class ServiceWarmupTest {
+
+    @Test
+    public void run_wiredService_leftAsItWas() {
+        SecurityRepository scratch = new InMemorySecurityRepository();
+        SecurityService service = new SecurityService(scratch, (image, threshold) -> false);
+        service.addStatusListener(Mockito.mock(StatusListener.class));
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Assertions.assertTrue(ServiceWarmup.run(service, 50).compareTo(Duration.ZERO) > 0);
+        Assertions.assertEquals(0, scratch.getSensorCount());
+        Assertions.assertEquals(ArmingStatus.ARMED_HOME, service.getArmingStatus());
+        Assertions.assertEquals(AlarmStatus.NO_ALARM, service.getAlarmStatus());
+        Assertions.assertEquals(Duration.ZERO, ServiceWarmup.run(service, 0));
+    }
+
+    @Test
+    public void run_warmupRecognizer_bothDetectionOutcomesTaken() {
+        SecurityService service = new SecurityService(new InMemorySecurityRepository(), ServiceWarmup.recognizer());
+        StatusListener listener = Mockito.mock(StatusListener.class);
+        service.addStatusListener(listener);
+
+        ServiceWarmup.run(service, 50);
+
+        Mockito.verify(listener, Mockito.atLeastOnce()).catDetected(true);
+        Mockito.verify(listener, Mockito.atLeastOnce()).catDetected(false);
+    }
+}
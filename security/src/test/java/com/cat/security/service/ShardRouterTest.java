@@ -0,0 +1,107 @@
+package com.cat.security.service;
+
+import com.cat.data.AlarmStatus;
+import com.cat.data.ArmingStatus;
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ShardRouterTest {
+
+    @Test
+    public void addAndRemoveWorker_onlyMovedPremisesChangeOwnerAndKeepState() throws Exception {
+        List<ShardWorker> workers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            workers.add(new ShardWorker(0, (image, threshold) -> false, InMemorySecurityRepository::new));
+        }
+        List<InetSocketAddress> addresses = workers.stream()
+                .map(worker -> new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort())).toList();
+        try (ShardRouter router = new ShardRouter(addresses.subList(0, 3))) {
+            Map<String, InetSocketAddress> owners = new LinkedHashMap<>();
+            for (int i = 0; i < 200; i++) {
+                String premisesId = "premises-" + i;
+                Sensor door = new Sensor("Door", SensorType.DOOR);
+                router.addSensor(premisesId, door);
+                if (i % 2 == 0) {
+                    router.setArmingStatus(premisesId, ArmingStatus.ARMED_AWAY);
+                    Assertions.assertEquals(AlarmStatus.PENDING_ALARM,
+                            router.changeSensorActivationStatus(premisesId, door.getSensorId(), true).alarmStatus());
+                }
+                owners.put(premisesId, router.ownerOf(premisesId));
+            }
+
+            //only premises that now belong to the new worker move, about a quarter of them
+            int moved = router.addWorker(addresses.get(3));
+            Assertions.assertTrue(moved > 20 && moved < 90, "moved " + moved);
+            Assertions.assertEquals(moved, workers.get(3).getPremisesCount());
+            owners.forEach((premisesId, owner) -> {
+                InetSocketAddress newOwner = router.ownerOf(premisesId);
+                Assertions.assertTrue(newOwner.equals(owner) || newOwner.equals(addresses.get(3)));
+            });
+
+            router.removeWorker(addresses.get(0));
+            Assertions.assertEquals(0, workers.get(0).getPremisesCount());
+            Assertions.assertEquals(200, workers.stream().mapToInt(ShardWorker::getPremisesCount).sum());
+            for (int i = 0; i < 200; i++) {
+                ShardRouter.Status status = router.getStatus("premises-" + i);
+                Assertions.assertEquals(i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM, status.alarmStatus());
+                Assertions.assertEquals(i % 2 == 0 ? ArmingStatus.ARMED_AWAY : ArmingStatus.DISARMED, status.armingStatus());
+            }
+        } finally {
+            workers.forEach(ShardWorker::close);
+        }
+    }
+
+    @Test
+    public void addWorker_newWorkerFailsToAdopt_noPremisesLostAndRingUnchanged() throws Exception {
+        List<ShardWorker> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(new ShardWorker(0, (image, threshold) -> false, InMemorySecurityRepository::new));
+        }
+        //runs out of room after a few premises
+        AtomicInteger adopted = new AtomicInteger();
+        workers.add(new ShardWorker(0, (image, threshold) -> false, () -> {
+            if (adopted.incrementAndGet() > 5) {
+                throw new IllegalStateException("No room for another premises");
+            }
+            return new InMemorySecurityRepository();
+        }));
+        List<InetSocketAddress> addresses = workers.stream()
+                .map(worker -> new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort())).toList();
+        try (ShardRouter router = new ShardRouter(addresses.subList(0, 3))) {
+            Map<String, InetSocketAddress> owners = new LinkedHashMap<>();
+            for (int i = 0; i < 100; i++) {
+                String premisesId = "premises-" + i;
+                router.addSensor(premisesId, new Sensor("Door", SensorType.DOOR));
+                router.setArmingStatus(premisesId, ArmingStatus.ARMED_HOME);
+                owners.put(premisesId, router.ownerOf(premisesId));
+            }
+
+            Assertions.assertThrows(IllegalStateException.class, () -> router.addWorker(addresses.get(3)));
+
+            Assertions.assertEquals(0, workers.get(3).getPremisesCount());
+            Assertions.assertEquals(100, workers.stream().mapToInt(ShardWorker::getPremisesCount).sum());
+            Assertions.assertEquals(0, router.getPremisesMoved());
+            owners.forEach((premisesId, owner) -> {
+                Assertions.assertEquals(owner, router.ownerOf(premisesId));
+                ShardRouter.Status status = router.getStatus(premisesId);
+                Assertions.assertEquals(ArmingStatus.ARMED_HOME, status.armingStatus());
+                Assertions.assertEquals(AlarmStatus.NO_ALARM, status.alarmStatus());
+            });
+            //the failed worker was dropped, so adding it again connects anew
+            Assertions.assertThrows(IllegalStateException.class, () -> router.addWorker(addresses.get(3)));
+        } finally {
+            workers.forEach(ShardWorker::close);
+        }
+    }
+}
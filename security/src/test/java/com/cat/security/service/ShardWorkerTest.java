@@ -0,0 +1,42 @@
+package com.cat.security.service;
+
+import com.cat.data.InMemorySecurityRepository;
+import com.cat.data.Sensor;
+import com.cat.data.SensorCodec;
+import com.cat.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.UUID;
+
+class ShardWorkerTest {
+
+    @Test
+    public void addSensor_deltaOfAnotherKind_failedReplyAndConnectionKeepsWorking() throws IOException {
+        try (ShardWorker worker = new ShardWorker(0, (image, threshold) -> false, InMemorySecurityRepository::new);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), worker.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            addSensor(out, SensorCodec.Delta.remove(UUID.randomUUID()));
+            Assertions.assertEquals(ShardProtocol.FAILED, in.readByte());
+            Assertions.assertTrue(in.readUTF().contains("REMOVE_SENSOR"));
+
+            addSensor(out, SensorCodec.Delta.upsert(new Sensor("Door", SensorType.DOOR)));
+            Assertions.assertEquals(ShardProtocol.OK, in.readByte());
+            Assertions.assertEquals(1, worker.getPremisesCount());
+        }
+    }
+
+    private static void addSensor(DataOutputStream out, SensorCodec.Delta delta) throws IOException {
+        out.writeByte(ShardProtocol.ADD_SENSOR);
+        out.writeUTF("premises");
+        ShardProtocol.writeBytes(out, SensorCodec.encodeDelta(delta));
+        out.flush();
+    }
+}
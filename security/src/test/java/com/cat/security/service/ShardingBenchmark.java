@@ -0,0 +1,94 @@
+package com.cat.security.service;
+
+import com.cat.data.ArmingStatus;
+import com.cat.data.Sensor;
+import com.cat.data.SensorType;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Starts shard workers as separate local JVMs, spreads premises over them and drives sensor events
+ * from many virtual threads, then adds one more worker and times the rebalance. Not a unit test;
+ * run the main method, optionally passing the number of workers to start with and of premises.
+ */
+public class ShardingBenchmark {
+
+    private static final int EVENTS_PER_ROUND = 50_000;
+    private static final int SENSORS_PER_PREMISES = 10;
+
+    public static void main(String[] args) throws Exception {
+        int workerCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int premisesCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i <= workerCount; i++) {
+                Process process = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"),
+                        "-cp", System.getProperty("java.class.path"), ShardWorker.class.getName(), "0")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                String line = new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+                int port = Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+                workers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+
+            try (ShardRouter router = new ShardRouter(workers.subList(0, workerCount))) {
+                List<UUID[]> sensors = new ArrayList<>();
+                for (int p = 0; p < premisesCount; p++) {
+                    UUID[] ids = new UUID[SENSORS_PER_PREMISES];
+                    for (int s = 0; s < ids.length; s++) {
+                        Sensor sensor = new Sensor("Sensor " + s, SensorType.values()[s % SensorType.values().length]);
+                        router.addSensor("premises-" + p, sensor);
+                        ids[s] = sensor.getSensorId();
+                    }
+                    router.setArmingStatus("premises-" + p, ArmingStatus.ARMED_HOME);
+                    sensors.add(ids);
+                }
+                System.out.printf("%d premises on %d workers%n", premisesCount, workerCount);
+                round(router, sensors, "before rebalance");
+
+                long start = System.nanoTime();
+                int moved = router.addWorker(workers.get(workerCount));
+                System.out.printf("added a worker: moved %d of %d premises in %.1f ms%n", moved, premisesCount,
+                        (System.nanoTime() - start) / 1e6);
+                round(router, sensors, "after rebalance");
+            }
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+
+    private static void round(ShardRouter router, List<UUID[]> sensors, String label) throws Exception {
+        try (ExecutorService events = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            List<Future<?>> pending = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                Random random = new Random(t);
+                pending.add(events.submit(() -> {
+                    for (int i = 0; i < EVENTS_PER_ROUND / 64; i++) {
+                        int p = random.nextInt(sensors.size());
+                        UUID sensor = sensors.get(p)[random.nextInt(SENSORS_PER_PREMISES)];
+                        router.changeSensorActivationStatus("premises-" + p, sensor, random.nextBoolean());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %,.0f sensor events/s%n", label, EVENTS_PER_ROUND / 64 * 64 / seconds);
+        }
+    }
+}
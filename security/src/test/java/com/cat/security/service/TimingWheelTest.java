@@ -0,0 +1,61 @@
+package com.cat.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+class TimingWheelTest {
+
+    @Test
+    public void schedule_timersAcrossLevels_fireInOrderAtTheirDeadline() {
+        AtomicLong now = new AtomicLong();
+        TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(1), Runnable::run, now::get);
+        List<Long> fired = new ArrayList<>();
+        long[] delays = {1, 255, 256, 257, 65_535, 65_536, 70_000, 20_000_000};
+        for (int i = delays.length - 1; i >= 0; i--) {
+            long delay = delays[i];
+            timingWheel.schedule(() -> fired.add(delay), Duration.ofMillis(delay));
+        }
+        timingWheel.schedule(() -> fired.add(-1L), Duration.ofMillis(300)).cancel();
+
+        for (long delay : delays) {
+            now.set(Duration.ofMillis(delay).toNanos() - 1);
+            timingWheel.advanceTo(now.get());
+            Assertions.assertFalse(fired.contains(delay));
+            now.set(Duration.ofMillis(delay).toNanos());
+            timingWheel.advanceTo(now.get());
+            Assertions.assertEquals(delay, fired.get(fired.size() - 1));
+        }
+        Assertions.assertEquals(delays.length, fired.size());
+    }
+
+    @Test
+    public void advanceTo_callbackExecutorFull_expiredTasksRetriedInOrder() {
+        AtomicLong now = new AtomicLong();
+        AtomicBoolean full = new AtomicBoolean(true);
+        List<Integer> fired = new ArrayList<>();
+        TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(1), task -> {
+            if (full.get()) {
+                throw new RejectedExecutionException("full");
+            }
+            task.run();
+        }, now::get);
+        timingWheel.schedule(() -> fired.add(1), Duration.ofMillis(1));
+        timingWheel.schedule(() -> fired.add(2), Duration.ofMillis(2));
+
+        now.set(Duration.ofMillis(3).toNanos());
+        timingWheel.advanceTo(now.get());
+        Assertions.assertEquals(List.of(), fired);
+
+        full.set(false);
+        now.set(Duration.ofMillis(4).toNanos());
+        timingWheel.advanceTo(now.get());
+        Assertions.assertEquals(List.of(1, 2), fired);
+    }
+}